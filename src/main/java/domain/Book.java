@@ -59,8 +59,8 @@ public class Book extends Media {
             throw new IllegalStateException("Book is already borrowed");
         }
         this.borrowedBy = user;
-        this.available = false;
-        this.dueDate = LocalDate.now().plusDays(28);
+        setAvailable(false);
+        setDueDate(LocalDate.now().plusDays(28));
     }
 
     /**
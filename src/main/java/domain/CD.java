@@ -42,8 +42,8 @@ public class CD extends Media {
             throw new IllegalStateException("CD is already borrowed");
         }
         this.borrowedBy = user;
-        this.available = false;
-        this.dueDate = LocalDate.now().plusDays(7);
+        setAvailable(false);
+        setDueDate(LocalDate.now().plusDays(7));
     }
 
     /**
@@ -2,9 +2,7 @@ package domain;
 
 import service.BookService;
 import service.CDService;
-import service.MediaService;
-import service.MultiMediaService;
-import service.ReportFine;
+import service.FineAssessment;
 import service.UserService;
 import presentation.ConsoleColors;
 
@@ -13,8 +11,6 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
 
 /**
  * Represents a Librarian in the library.
@@ -41,6 +37,9 @@ public class Librarian extends Staff {
     /** Service for managing CDs */
     private CDService cdService;
 
+    /** Pipeline assessing and charging the fines */
+    private FineAssessment assessment = new FineAssessment();
+
     /** Last date fines were applied, to prevent multiple fines in a single day */
     private LocalDate lastFineDate = null;
 
@@ -104,70 +103,24 @@ public class Librarian extends Staff {
     /**
      * Applies fines for overdue books and CDs
      * and prints fine info to the console.
+     * Both catalogs are assessed in parallel and the fines charged in a single batch.
      *
      * @param userService service to apply fines
      * @since 1.0
      */
     private void applyFines(UserService userService) {
-
-        applyFinesForMedia(
-                bookService.getOverdueMedia(),
-                bookService,
-                userService,
-                "📚"
-        );
-
-        applyFinesForMedia(
-                cdService.getOverdueMedia(),
-                cdService,
-                userService,
-                "💿"
-        );
-
-        lastFineDate = LocalDate.now();
-    }
-
-    private <T extends Media> boolean applyFinesForMedia(
-            List<T> overdueList,
-            MediaService<T> service,
-            UserService userService,
-            String icon
-    ) {
-        boolean updated = false;
-
-        for (T media : overdueList) {
-            User borrower = media.getBorrowedBy();
-
-            // Combined conditions → fixed bad smell
-            if (borrower == null ||
-                media.getDueDate() == null ||
-                media.getFineApplied() > 0) {
-                continue;
-            }
-
-            long overdueDays = ChronoUnit.DAYS.between(media.getDueDate(), LocalDate.now());
-
-            if (overdueDays > 0) {
-                int fine = service.calculateFine(media);
-                userService.applyFine(borrower, fine);
-
-                ReportFine.generateFineReceipt(borrower, fine, false, media);
-
-                System.out.println(ConsoleColors.RED +
-                        " Fine issued to " + borrower.getName() +
-                        " (" + borrower.getId() + "): " + fine + " NIS 💰" +
-                        " | Overdue by " + overdueDays + " days | " + icon + " " + media.getTitle() +
-                        ConsoleColors.RESET);
-
-                media.setFineApplied(1);
-                updated = true;
-            }
+        FineAssessment.Result result = assessment.assess(userService, bookService, cdService);
+
+        for (FineAssessment.Fine f : result.fines()) {
+            String icon = f.media() instanceof CD ? "💿" : "📚";
+            System.out.println(ConsoleColors.RED +
+                    " Fine issued to " + f.borrower().getName() +
+                    " (" + f.borrower().getId() + "): " + f.amount() + " NIS 💰" +
+                    " | Overdue by " + f.overdueDays() + " days | " + icon + " " + f.media().getTitle() +
+                    ConsoleColors.RESET);
         }
 
-        if (updated) service.writeToFile(overdueList);
-        return updated;
+        lastFineDate = LocalDate.now();
     }
 
-
-
 }
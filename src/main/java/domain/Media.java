@@ -1,8 +1,12 @@
 package domain;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
+import service.AvailabilityBitmap;
+import service.DueDateIndex;
 import service.FineStrategy;
 
 /**
@@ -46,6 +50,28 @@ public abstract class Media {
     /** Strategy for calculating fines */
     protected FineStrategy fineStrategy;
 
+    /** Loan bitmap of the catalog holding this item, null if not in a catalog */
+    private AvailabilityBitmap loans;
+
+    /** Slot of this item in {@link #loans} */
+    private int slot = -1;
+
+    /** Due-date index of the catalog holding this item, null if not in a catalog */
+    private DueDateIndex dueDates;
+
+    /** Version stamp: even while the item is stable, odd while a change is being committed */
+    private volatile long version;
+
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(Media.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /**
      * Create a new Media item with a title.
      * Initially available, not borrowed, no due date.
@@ -139,6 +165,28 @@ public abstract class Media {
      */
     public void setAvailable(boolean available) {
         this.available = available;
+        AvailabilityBitmap bitmap = loans;
+        if (bitmap != null) bitmap.set(slot, !available);
+    }
+
+    /**
+     * Attach the media to the loan bitmap and due-date index of a catalog, so that
+     * availability and due-date changes are mirrored in them. Replaces any earlier
+     * attachment.
+     *
+     * @param bitmap   the catalog's loan bitmap
+     * @param slot     the dense slot number of this item in the catalog
+     * @param dueDates the catalog's due-date index
+     * @since 1.0
+     */
+    public void attach(AvailabilityBitmap bitmap, int slot, DueDateIndex dueDates) {
+        this.slot = slot;
+        this.loans = bitmap;
+        bitmap.set(slot, !available);
+        DueDateIndex previous = this.dueDates;
+        if (previous != null && previous != dueDates) previous.update(this, null);
+        this.dueDates = dueDates;
+        dueDates.update(this, dueDate);
     }
 
     /**
@@ -159,6 +207,8 @@ public abstract class Media {
      */
     public void setDueDate(LocalDate dueDate) { 
         this.dueDate = dueDate; 
+        DueDateIndex index = dueDates;
+        if (index != null) index.update(this, dueDate);
     }
 
     /**
@@ -200,4 +250,43 @@ public abstract class Media {
     public void setFineApplied(int fineApplied) {
         this.fineApplied = fineApplied;
     }
+
+    // ----- Versioning -----
+
+    /**
+     * Get the version stamp of the media.
+     * The stamp is even while the item is stable and odd while a change is in progress;
+     * state read between two equal, even stamps is consistent.
+     *
+     * @return current version stamp
+     * @since 1.0
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Start a change if the media is still at the expected version
+     * (compare-and-set). On success the stamp becomes odd until {@link #endChange()}.
+     *
+     * @param expected the version the caller read, must be even
+     * @return true if the caller now owns the change, false if another one intervened
+     * @since 1.0
+     */
+    public boolean tryBeginChange(long expected) {
+        return (expected & 1) == 0 && VERSION.compareAndSet(this, expected, expected + 1);
+    }
+
+    /**
+     * Publish a change started with {@link #tryBeginChange(long)}, moving the stamp
+     * to the next even version.
+     *
+     * @throws IllegalStateException if no change is in progress
+     * @since 1.0
+     */
+    public void endChange() {
+        long v = version;
+        if ((v & 1) == 0) throw new IllegalStateException("No change in progress");
+        version = v + 1;
+    }
 }
@@ -0,0 +1,163 @@
+package domain;
+
+/**
+ * Conversions between fine amounts in NIS and the agorot (1/100 NIS) they are
+ * stored and computed in.
+ * <p>
+ * Balances are kept as whole agorot in a {@code long}, so adding and paying fines is
+ * exact and never drifts the way repeated {@code double} arithmetic does. Amounts
+ * entered or displayed in NIS are converted at the edges: {@link #parse(String)} reads
+ * a plain decimal digit by digit and refuses fractions of an agora, while
+ * {@link #toMinor(double)} rounds half away from zero to the nearest agora.
+ * {@link #format(long)} writes the same text as {@link Double#toString(double)} does
+ * for such amounts, e.g. {@code 12.0} or {@code 12.05}, so stored files keep their
+ * format.
+ * </p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * long fine = Money.toMinor(12.5);   // 1250
+ * String text = Money.format(fine);  // "12.5"
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see User#getFineMinor()
+ */
+public final class Money {
+
+    /** Agorot per NIS */
+    public static final long MINOR_PER_MAJOR = 100;
+
+    /** Largest whole NIS amount that still fits in agorot, rounding included */
+    private static final long MAX_MAJOR = Long.MAX_VALUE / MINOR_PER_MAJOR - 1;
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount in NIS to agorot, rounding to the nearest agora.
+     *
+     * @param amount the amount in NIS
+     * @return the amount in agorot
+     * @throws IllegalArgumentException if the amount is not finite or too large
+     */
+    public static long toMinor(double amount) {
+        if (!Double.isFinite(amount) || Math.abs(amount) >= Long.MAX_VALUE / (double) MINOR_PER_MAJOR) {
+            throw new IllegalArgumentException("Invalid amount: " + amount);
+        }
+        return Math.round(amount * MINOR_PER_MAJOR);
+    }
+
+    /**
+     * Converts an amount in agorot to NIS.
+     *
+     * @param minor the amount in agorot
+     * @return the amount in NIS
+     */
+    public static double toMajor(long minor) {
+        return minor / (double) MINOR_PER_MAJOR;
+    }
+
+    /**
+     * Formats an amount in agorot as NIS, e.g. {@code 1250} as {@code 12.5}.
+     *
+     * @param minor the amount in agorot
+     * @return the amount as a decimal number of NIS
+     */
+    public static String format(long minor) {
+        StringBuilder sb = new StringBuilder(24);
+        if (minor < 0) sb.append('-');
+        long abs = Math.abs(minor);
+        long cents = abs % MINOR_PER_MAJOR;
+        sb.append(abs / MINOR_PER_MAJOR).append('.');
+        if (cents % 10 == 0) sb.append(cents / 10);
+        else sb.append(cents / 10).append(cents % 10);
+        return sb.toString();
+    }
+
+    /**
+     * Parses an amount in NIS, such as {@code 12.5}, {@code 12.05} or {@code -3}, into
+     * agorot without going through a {@code double}.
+     *
+     * @param text the amount in NIS
+     * @return the amount in agorot
+     * @throws NumberFormatException if the text is not a plain decimal number, has more
+     *                               than two decimals or is out of range
+     */
+    public static long parse(String text) {
+        return parse(text.toCharArray(), 0, text.length(), false);
+    }
+
+    /**
+     * Parses an amount in NIS as stored by earlier versions, which wrote balances with
+     * {@link Double#toString(double)}: digits beyond the agorot round half up, and
+     * other notations such as {@code 1.0E7} are read as a {@code double}.
+     *
+     * @param text the amount in NIS
+     * @return the amount in agorot
+     * @throws NumberFormatException if the text is not a number or out of range
+     */
+    public static long parseLenient(String text) {
+        try {
+            return parse(text.toCharArray(), 0, text.length(), true);
+        } catch (NumberFormatException e) {
+            double amount = Double.parseDouble(text);
+            if (!Double.isFinite(amount) || Math.abs(amount) >= Long.MAX_VALUE / (double) MINOR_PER_MAJOR) {
+                throw new NumberFormatException("Invalid amount: " + text);
+            }
+            return toMinor(amount);
+        }
+    }
+
+    /**
+     * Parses a plain decimal amount in NIS from a range of characters into agorot,
+     * digit by digit.
+     *
+     * @param chars   the characters holding the amount
+     * @param start   index of the first character
+     * @param end     index after the last character
+     * @param lenient whether digits beyond the agorot round half up instead of being refused
+     * @return the amount in agorot
+     * @throws NumberFormatException if the range is not a plain decimal number, has more
+     *                               than two decimals while not lenient, or is out of range
+     */
+    public static long parse(char[] chars, int start, int end, boolean lenient) {
+        int i = start;
+        boolean negative = i < end && chars[i] == '-';
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) i++;
+        long major = 0;
+        long minor = 0;
+        int scale = -1;
+        boolean roundUp = false;
+        boolean any = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            int d = c - '0';
+            if (d < 0 || d > 9) throw invalid(chars, start, end);
+            any = true;
+            if (scale < 0) {
+                if (major > (MAX_MAJOR - d) / 10) throw invalid(chars, start, end);
+                major = major * 10 + d;
+            } else if (scale < 2) {
+                minor = minor * 10 + d;
+            } else if (!lenient) {
+                throw new NumberFormatException("More than two decimals: " + new String(chars, start, end - start));
+            } else if (scale == 2) {
+                roundUp = d >= 5;
+            }
+            if (scale >= 0) scale++;
+        }
+        if (!any) throw invalid(chars, start, end);
+        if (scale == 1) minor *= 10;
+        long value = major * MINOR_PER_MAJOR + minor + (roundUp ? 1 : 0);
+        return negative ? -value : value;
+    }
+
+    private static NumberFormatException invalid(char[] chars, int start, int end) {
+        return new NumberFormatException("Invalid amount: " + new String(chars, start, end - start));
+    }
+}
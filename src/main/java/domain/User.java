@@ -1,10 +1,14 @@
 package domain;
 
+import service.BalanceTable;
+
 import java.util.Objects;
 
 /**
  * Represents a user of the library system.
  * Users can borrow media, have fines, and are identified by a unique ID.
+ * Fine balances are kept exactly, in agorot (see {@link Money}); the {@code double}
+ * accessors convert to and from NIS.
  *
  * <p>Example usage:
  * <pre><code>
@@ -28,8 +32,14 @@ public class User {
     /** The email address of the user */
     private String email;
 
-    /** The current fine balance of the user */
-    private double fineBalance;
+    /** The current fine balance of the user, in agorot */
+    private long fineMinor;
+
+    /** Balance table of the user list this user belongs to, null if none */
+    private BalanceTable balances;
+
+    /** Dense slot number of this user in the balance table */
+    private int slot;
 
     /**
      * Constructs a new User with the specified name, ID, and email.
@@ -48,7 +58,7 @@ public class User {
         this.name = name;
         this.id = id;
         this.email = email;
-        this.fineBalance = 0;
+        this.fineMinor = 0;
     }
 
     /**
@@ -74,49 +84,93 @@ public class User {
     /**
      * Returns the current fine balance of the user.
      *
-     * @return the fine balance
+     * @return the fine balance in NIS
      * @since 1.0
      */
     public double getFineBalance() {
-        return fineBalance;
+        return Money.toMajor(fineMinor);
+    }
+
+    /**
+     * Returns the current fine balance of the user in agorot.
+     *
+     * @return the exact fine balance
+     * @since 1.0
+     */
+    public long getFineMinor() {
+        return fineMinor;
     }
 
     /**
      * Sets the fine balance of the user.
      *
-     * @param fineBalance the new fine balance
+     * @param fineBalance the new fine balance in NIS, rounded to the nearest agora
      * @since 1.0
      */
     public void setFineBalance(double fineBalance) {
-        this.fineBalance = fineBalance;
+        setFineMinor(Money.toMinor(fineBalance));
+    }
+
+    /**
+     * Sets the fine balance of the user in agorot.
+     *
+     * @param fineMinor the new fine balance
+     * @since 1.0
+     */
+    public void setFineMinor(long fineMinor) {
+        this.fineMinor = fineMinor;
+        BalanceTable table = balances;
+        if (table != null) table.set(slot, fineMinor);
     }
 
     /**
      * Adds a fine to the user's balance.
      *
-     * @param amount the fine amount to add
+     * @param amount the fine amount to add, in NIS
      * @throws IllegalArgumentException if the amount is not positive
      * @since 1.0
      */
     public void addFine(double amount) {
         if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
-        fineBalance += amount;
+        addFineMinor(Money.toMinor(amount));
+    }
+
+    /**
+     * Adds a fine in agorot to the user's balance.
+     *
+     * @param minor the fine amount to add
+     * @throws IllegalArgumentException if the amount is not positive
+     * @throws ArithmeticException if the balance would overflow
+     * @since 1.0
+     */
+    public void addFineMinor(long minor) {
+        if (minor <= 0) throw new IllegalArgumentException("Amount must be positive");
+        setFineMinor(Math.addExact(fineMinor, minor));
     }
 
     /**
      * Pays a portion or all of the user's fine balance.
      *
-     * @param amount the amount to pay
+     * @param amount the amount to pay, in NIS
      * @throws IllegalArgumentException if the amount is not positive
      * @since 1.0
      */
     public void payFine(double amount) {
         if (amount <= 0) throw new IllegalArgumentException("Amount must be positive");
-        if (amount >= fineBalance) {
-            fineBalance = 0;
-        } else {
-            fineBalance -= amount;
-        }
+        payFineMinor(Money.toMinor(amount));
+    }
+
+    /**
+     * Pays a portion or all of the user's fine balance in agorot. Paying more than
+     * the balance clears it.
+     *
+     * @param minor the amount to pay
+     * @throws IllegalArgumentException if the amount is not positive
+     * @since 1.0
+     */
+    public void payFineMinor(long minor) {
+        if (minor <= 0) throw new IllegalArgumentException("Amount must be positive");
+        setFineMinor(fineMinor - Math.min(minor, fineMinor));
     }
 
     /**
@@ -126,7 +180,21 @@ public class User {
      * @since 1.0
      */
     public boolean canBorrow() {
-        return fineBalance == 0;
+        return fineMinor == 0;
+    }
+
+    /**
+     * Attach the user to the balance table of a user list, so that balance changes
+     * are mirrored in it. Replaces any earlier attachment.
+     *
+     * @param table the user list's balance table
+     * @param slot  the dense slot number of this user in the list
+     * @since 1.0
+     */
+    public void attach(BalanceTable table, int slot) {
+        this.slot = slot;
+        this.balances = table;
+        table.set(slot, fineMinor);
     }
 
     /**
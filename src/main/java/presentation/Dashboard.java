@@ -32,6 +32,7 @@ public class Dashboard {
     private BookService bookService;
     private CDService cdService;
     private UserService userService;
+    private ReminderService reminders;
     private Scanner sc = new Scanner(System.in);
     private Admin admin;
 
@@ -42,7 +43,7 @@ public class Dashboard {
     
     /**
      * Creates a new Dashboard instance for the logged-in admin
-     * and sets up the services and observers for books and CDs.
+     * and sets up the services and reminders for books and CDs.
      * 
      * @param loggedInAdmin the currently logged-in admin
      * @param bookService the book service used for book operations
@@ -57,10 +58,9 @@ public class Dashboard {
         this.userService = userService;
         bookService.setUserService(userService);
         bookService.setFineStrategy(new BookFineStrategy());
-        bookService.addObserver(new EmailNotifier(new RealEmailService()));
         cdService.setUserService(userService);
         cdService.setFineStrategy(new CDFineStrategy());
-        cdService.addObserver(new EmailNotifier(new RealEmailService()));
+        this.reminders = new ReminderService(bookService.getEventBus(), bookService, cdService);
     }
     
     /**
@@ -137,9 +137,11 @@ public class Dashboard {
 
     private void printSplitMediaAndUsers() {
 
-        List<Media> allMedia = new ArrayList<>();
-        allMedia.addAll(bookService.getAllMedia());
-        allMedia.addAll(cdService.getAllMedia());
+        List<Book> books = bookService.getAllMedia();
+        List<CD> cds = cdService.getAllMedia();
+        List<Media> allMedia = new ArrayList<>(books.size() + cds.size());
+        allMedia.addAll(books);
+        allMedia.addAll(cds);
 
         int colTitle = 20, colId = 10, colType = 8, colAvail = 10;
         int colUName = 20, colUID = 10, colStatus = 10;
@@ -214,6 +216,11 @@ public class Dashboard {
                     colUName + colUID + colStatus + 6) + "|");
         }
 
+        System.out.println("-".repeat(
+                colTitle + colId + colType + colAvail + colUName + colUID + colStatus + 17));
+        // counted from the loan bitmaps, without another pass over the items
+        System.out.println(" On loan: " + bookService.countOnLoan() + "/" + books.size() + " books, "
+                + cdService.countOnLoan() + "/" + cds.size() + " CDs");
         System.out.println("=".repeat(
                 colTitle + colId + colType + colAvail + colUName + colUID + colStatus + 17));
     }
@@ -408,32 +415,21 @@ public class Dashboard {
 
 
     private void sendReminders() {
-        List<Media> overdue = getAllOverdueMedia();
+        Map<User, String> sent = reminders.sendReminders();
 
-        if (overdue.isEmpty()) {
+        if (sent.isEmpty()) {
             System.out.println(ConsoleColors.GREEN + " No overdue media!" + ConsoleColors.RESET);
             pause();
             return;
         }
 
-        Set<User> notified = new HashSet<>();
-
-        for (Media m : overdue) {
-            User u = m.getBorrowedBy();
-            if (u == null || notified.contains(u)) continue;
-
+        for (User u : sent.keySet()) {
             System.out.println(
                     ConsoleColors.RED +
                     " Reminder Sent ->  User: " + u.getName() +
                     " | ID: " + u.getId() +
                     ConsoleColors.RESET
             );
-            if (m instanceof Book)
-                bookService.sendReminders(List.of(u), "book");
-            else if (m instanceof CD)
-                cdService.sendReminders(List.of(u), "CD");
-
-            notified.add(u);
         }
         pause();
     }
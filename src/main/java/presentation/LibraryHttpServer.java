@@ -0,0 +1,352 @@
+package presentation;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import domain.Book;
+import domain.CD;
+import domain.Media;
+import domain.Money;
+import domain.User;
+import service.BookService;
+import service.CDService;
+import service.FineLedger;
+import service.LockTimeoutException;
+import service.NotFoundException;
+import service.UserService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless HTTP front end for the library services, so that one node can serve many
+ * patrons at once instead of the single person at the console.
+ * <p>
+ * Requests are handled by {@link HttpServer} on a virtual thread each. Waits for the
+ * storage lock and for journal flushes park on {@code java.util.concurrent} locks, so a
+ * request waiting on them releases its carrier thread; the short critical sections of
+ * the services still run under monitors. The services are thread-safe and shared by
+ * all requests. Responses are JSON.
+ * </p>
+ *
+ * <p>Endpoints, taking their parameters from the query string or a form body:
+ * <ul>
+ *     <li>{@code GET /api/search?q=...[&type=book|cd]} - search the catalog</li>
+ *     <li>{@code POST /api/borrow?user=...&id=...&type=book|cd} - borrow an item</li>
+ *     <li>{@code GET /api/overdue} - list overdue items</li>
+ *     <li>{@code POST /api/pay?user=...&amount=...} - pay part or all of a fine</li>
+ *     <li>{@code GET /api/statement?user=...[&from=yyyy-MM-dd][&to=yyyy-MM-dd]} - fine
+ *     events of a user, from the start of {@code from} to the end of {@code to} (UTC)</li>
+ * </ul>
+ * Invalid requests answer 400, unknown users or items 404, refused operations
+ * (item already borrowed, unpaid fines) 409, and requests that timed out waiting
+ * for the storage lock 503.</p>
+ *
+ * <p>The server does not authenticate callers: anyone who can reach it can borrow
+ * and pay on behalf of any user. It must therefore only listen on the loopback
+ * address, as {@link LibrarySystem} does by default, or behind a proxy that
+ * authenticates requests.</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * LibraryHttpServer server = new LibraryHttpServer(bookService, cdService, userService);
+ * server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 8080));
+ * ...
+ * server.stop();
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see LibrarySystem
+ */
+public class LibraryHttpServer {
+
+    private final BookService bookService;
+    private final CDService cdService;
+    private final UserService userService;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /** Signals a request answered with a specific status code */
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /** Handles a request, returning the JSON body of a 200 response */
+    @FunctionalInterface
+    private interface Endpoint {
+        String handle(Map<String, String> params);
+    }
+
+    /**
+     * Creates a server over the given services.
+     *
+     * @param bookService the book service
+     * @param cdService   the CD service
+     * @param userService the user service
+     */
+    public LibraryHttpServer(BookService bookService, CDService cdService, UserService userService) {
+        this.bookService = bookService;
+        this.cdService = cdService;
+        this.userService = userService;
+    }
+
+    /**
+     * Binds the server and starts serving requests.
+     *
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the address cannot be bound
+     * @throws IllegalStateException if the server is already running
+     */
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (server != null) throw new IllegalStateException("Server already running");
+        server = HttpServer.create(address, 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        route("/api/search", "GET", this::search);
+        route("/api/borrow", "POST", this::borrow);
+        route("/api/overdue", "GET", params -> mediaJson(overdue()));
+        route("/api/pay", "POST", this::pay);
+        route("/api/statement", "GET", this::statement);
+        server.start();
+    }
+
+    /**
+     * Stops the server, giving running requests up to a second to complete.
+     */
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(1);
+        executor.close();
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the bound port
+     * @throws IllegalStateException if the server is not running
+     */
+    public synchronized int getPort() {
+        if (server == null) throw new IllegalStateException("Server not running");
+        return server.getAddress().getPort();
+    }
+
+    private void route(String path, String method, Endpoint endpoint) {
+        server.createContext(path, exchange -> {
+            try (exchange) {
+                int status = 200;
+                String body;
+                try {
+                    if (!method.equals(exchange.getRequestMethod())) {
+                        exchange.getResponseHeaders().set("Allow", method);
+                        throw new HttpError(405, "Method not allowed");
+                    }
+                    if (!path.equals(exchange.getRequestURI().getPath())) throw new HttpError(404, "Not found");
+                    body = endpoint.handle(params(exchange));
+                } catch (HttpError e) {
+                    status = e.status;
+                    body = error(e.getMessage());
+                } catch (NotFoundException e) {
+                    status = 404;
+                    body = error(e.getMessage());
+                } catch (IllegalArgumentException e) {
+                    status = 400;
+                    body = error(e.getMessage());
+                } catch (LockTimeoutException e) {
+                    // a storage lock held too long by another desk is worth a retry
+                    status = 503;
+                    body = error(e.getMessage());
+                } catch (IllegalStateException e) {
+                    status = 409;
+                    body = error(e.getMessage());
+                } catch (RuntimeException e) {
+                    status = 500;
+                    body = error("Internal error");
+                }
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        });
+    }
+
+    // ----- Endpoints -----
+
+    private String search(Map<String, String> params) {
+        String query = required(params, "q");
+        String type = params.get("type");
+        if (type != null && !type.equals("book") && !type.equals("cd")) throw new HttpError(400, "Unknown type " + type);
+        List<Media> found = new ArrayList<>();
+        if (type == null || type.equals("book")) found.addAll(bookService.search(query));
+        if (type == null || type.equals("cd")) found.addAll(cdService.search(query));
+        return mediaJson(found);
+    }
+
+    private String borrow(Map<String, String> params) {
+        User user = user(params);
+        String id = required(params, "id");
+        Media borrowed = switch (required(params, "type")) {
+            case "book" -> bookService.borrowMedia(user, id);
+            case "cd" -> cdService.borrowMedia(user, id);
+            default -> throw new HttpError(400, "Unknown type " + params.get("type"));
+        };
+        return mediaJson(borrowed);
+    }
+
+    private List<Media> overdue() {
+        List<Media> overdue = new ArrayList<>(bookService.getOverdueMedia());
+        overdue.addAll(cdService.getOverdueMedia());
+        return overdue;
+    }
+
+    private String pay(Map<String, String> params) {
+        User user = user(params);
+        long amount;
+        try {
+            amount = Money.parse(required(params, "amount"));
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Invalid amount");
+        }
+        userService.payFineMinor(user, amount, bookService, cdService);
+        return "{\"id\":" + quote(user.getId()) + ",\"fineBalance\":" + Money.format(user.getFineMinor()) + "}";
+    }
+
+    private String statement(Map<String, String> params) {
+        User user = user(params);
+        FineLedger ledger = userService.getLedger();
+        if (ledger == null) throw new HttpError(404, "Fine ledger not enabled");
+        Instant from = Instant.MIN;
+        Instant to = Instant.MAX;
+        try {
+            if (params.containsKey("from")) from = LocalDate.parse(params.get("from")).atStartOfDay().toInstant(ZoneOffset.UTC);
+            if (params.containsKey("to")) to = LocalDate.parse(params.get("to")).plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            throw new HttpError(400, "Invalid date");
+        }
+        List<FineLedger.Entry> entries = ledger.statement(user.getId(), from, to);
+        StringBuilder sb = new StringBuilder("{\"id\":").append(quote(user.getId()))
+                .append(",\"balance\":").append(Money.format(ledger.balance(user.getId())))
+                .append(",\"events\":[");
+        for (int i = 0; i < entries.size(); i++) {
+            FineLedger.Entry e = entries.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"type\":").append(quote(e.type().name()))
+                    .append(",\"at\":").append(quote(e.at().toString()))
+                    .append(",\"amount\":").append(Money.format(e.amountMinor()))
+                    .append(",\"balance\":").append(Money.format(e.balanceMinor()))
+                    .append(",\"reference\":").append(quote(e.reference())).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private User user(Map<String, String> params) {
+        User user = userService.findUser(required(params, "user"));
+        if (user == null) throw new HttpError(404, "User not found");
+        return user;
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) throw new HttpError(400, "Missing parameter " + name);
+        return value;
+    }
+
+    // ----- Encoding -----
+
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            try (InputStream in = exchange.getRequestBody()) {
+                parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String mediaJson(List<? extends Media> media) {
+        StringBuilder sb = new StringBuilder("[");
+        for (Media m : media) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append(mediaJson(m));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String mediaJson(Media m) {
+        StringBuilder sb = new StringBuilder("{");
+        if (m instanceof Book b) {
+            sb.append("\"type\":\"book\",\"id\":").append(quote(b.getIsbn()))
+                    .append(",\"author\":").append(quote(b.getAuthor()));
+        } else if (m instanceof CD c) {
+            sb.append("\"type\":\"cd\",\"id\":").append(quote(c.getId()))
+                    .append(",\"artist\":").append(quote(c.getArtist()));
+        }
+        sb.append(",\"title\":").append(quote(m.getTitle()))
+                .append(",\"available\":").append(m.isAvailable())
+                .append(",\"dueDate\":").append(m.getDueDate() != null ? quote(m.getDueDate().toString()) : "null");
+        User borrower = m.getBorrowedBy();
+        sb.append(",\"borrowedBy\":").append(borrower != null ? quote(borrower.getId()) : "null");
+        return sb.append('}').toString();
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message != null ? message : "Error") + "}";
+    }
+
+    private static String quote(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -5,7 +5,17 @@ import domain.Librarian;
 import domain.User;
 import service.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The {@code LibrarySystem} class contains the main entry point for the YouBak Library application.
@@ -15,6 +25,8 @@ import java.util.Scanner;
  * <p>Example usage:
  * <pre><code>
  * java LibrarySystem
+ * java LibrarySystem --serve 8080
+ * java -Dlibrary.desk=front LibrarySystem
  * </code></pre>
  * 
  * <p>Features:
@@ -23,6 +35,7 @@ import java.util.Scanner;
  *     <li>User login and library interface</li>
  *     <li>Librarian login and management interface</li>
  *     <li>Console-based menu navigation</li>
+ *     <li>Headless server mode exposing the services over HTTP, see {@link LibraryHttpServer}</li>
  * </ul>
  * 
  * @see Admin
@@ -41,7 +54,9 @@ public class LibrarySystem {
      * The main entry point of the application. Displays the main menu for
      * login options and delegates to the respective interfaces.
      * 
-     * @param args command-line arguments (not used)
+     * @param args command-line arguments: {@code --serve [port] [host]} starts the HTTP
+     *             server instead of the console (port 8080 on the loopback address by
+     *             default; the server has no authentication, see {@link LibraryHttpServer})
      */
     public static void main(String[] args) {
         Scanner sc = new Scanner(System.in);
@@ -52,6 +67,31 @@ public class LibrarySystem {
         cdService.setFineStrategy(new CDFineStrategy());
         bookService.setUserService(userService);
         cdService.setUserService(userService);
+        Duration groupCommit = Duration.ofMillis(2);
+        userService.setJournal(new MutationLog("data/users.journal", groupCommit));
+        bookService.setJournal(new MutationLog("data/books.journal", groupCommit));
+        cdService.setJournal(new MutationLog("data/cds.journal", groupCommit));
+        // history of every fine issued, paid or waived, for statements and audits
+        userService.setLedger(new FineLedger(new MutationLog("data/fines.ledger", groupCommit), Clock.systemUTC()));
+        // reminders are queued durably and sent in the background, surviving restarts;
+        // every desk drains its own outbox; mail settings are loaded on the first email
+        EmailOutbox outbox = new EmailOutbox(outboxPath(), new LazyEmailService());
+        outbox.start();
+        EmailNotifier notifier = new EmailNotifier(outbox);
+        bookService.addObserver(notifier);
+        cdService.addObserver(notifier);
+        CompactionService compaction = new CompactionService(64 * 1024, bookService, cdService, userService, outbox);
+        compaction.start(1, TimeUnit.MINUTES);
+
+        if (args.length > 0 && args[0].equals("--serve")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            InetSocketAddress address = args.length > 2 ? new InetSocketAddress(args[2], port)
+                    : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+            serve(new LibraryHttpServer(bookService, cdService, userService), address, compaction,
+                    List.of(bookService.getEventBus(), cdService.getEventBus()), outbox);
+            return;
+        }
+
         LogIn loginHandler = new LogIn(userService);
 
         boolean running = true; // loop control flag
@@ -91,6 +131,11 @@ public class LibrarySystem {
                 case "3" -> {
                     System.out.println(ConsoleColors.GREEN + "Goodbye!" + ConsoleColors.RESET);
                     running = false; // stop the loop instead of System.exit()
+                    compaction.stop();
+                    // deliver pending reminders
+                    bookService.getEventBus().shutdown(Duration.ofSeconds(30));
+                    cdService.getEventBus().shutdown(Duration.ofSeconds(30));
+                    outbox.stop();
                 }
                 default -> System.out.println(ConsoleColors.RED + "Invalid choice!" + ConsoleColors.RESET);
             }
@@ -98,6 +143,88 @@ public class LibrarySystem {
 
     }
 
+    /**
+     * Returns the outbox journal of this desk. Desks sharing {@code data/} are told apart
+     * by the {@code library.desk} system property or the {@code LIBRARY_DESK} environment
+     * variable. If neither is set, the host name and process id name an outbox of this
+     * run alone, so several consoles on one host can run side by side; a desk that wants
+     * mail left unsent by one run to go out with the next must set its name.
+     *
+     * @return the path of the desk's outbox journal
+     */
+    private static String outboxPath() {
+        String desk = System.getProperty("library.desk", System.getenv("LIBRARY_DESK"));
+        if (desk == null || desk.isBlank()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                host = "local";
+            }
+            desk = host + "-" + ProcessHandle.current().pid();
+        }
+        return "data/outbox-" + desk.replaceAll("[^A-Za-z0-9_.-]", "_") + ".journal";
+    }
+
+    /**
+     * Sends through a {@link RealEmailService} created on the first email, so that a desk
+     * without mail settings still starts. Until the settings are fixed, every attempt
+     * fails and the outbox keeps the messages for a later retry.
+     */
+    private static final class LazyEmailService implements EmailService {
+
+        private EmailService delegate;
+
+        private synchronized EmailService delegate() {
+            if (delegate == null) delegate = new RealEmailService();
+            return delegate;
+        }
+
+        @Override
+        public void sendEmail(String to, String message) {
+            delegate().sendEmail(to, message);
+        }
+
+        @Override
+        public void sendEmail(String to, String message, String idempotencyKey) {
+            delegate().sendEmail(to, message, idempotencyKey);
+        }
+    }
+
+    /**
+     * Runs the HTTP server until the JVM is shut down.
+     *
+     * @param server     the server to run
+     * @param address    the address to listen on
+     * @param compaction the compaction service to stop on shutdown
+     * @param events     the event buses to drain on shutdown
+     * @param outbox     the email outbox to stop on shutdown
+     */
+    private static void serve(LibraryHttpServer server, InetSocketAddress address, CompactionService compaction,
+                              List<EventBus> events, EmailOutbox outbox) {
+        try {
+            server.start(address);
+        } catch (IOException e) {
+            compaction.stop();
+            throw new UncheckedIOException("Cannot listen on " + address, e);
+        }
+        System.out.println(ConsoleColors.GREEN + "Serving on " + address.getHostString() + ":" + server.getPort()
+                + ConsoleColors.RESET);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            compaction.stop();
+            for (EventBus bus : events) bus.shutdown(Duration.ofSeconds(10));
+            outbox.stop();
+            stopped.countDown();
+        }));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Prints a centered header with a title for the console menu.
      * 
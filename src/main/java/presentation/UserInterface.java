@@ -8,13 +8,12 @@ import java.util.Scanner;
 import domain.Book;
 import domain.CD;
 import domain.Media;
+import domain.Money;
 import domain.User;
 import service.BookService;
 import service.CDService;
 import service.BookFineStrategy;
 import service.CDFineStrategy;
-import service.EmailNotifier;
-import service.RealEmailService;
 import service.UserService;
 
 /**
@@ -61,9 +60,6 @@ public class UserInterface {
         this.userService = userService;
         bookService.setFineStrategy(new BookFineStrategy());
         cdService.setFineStrategy(new CDFineStrategy());
-        EmailNotifier notifier = new EmailNotifier(new RealEmailService());
-        bookService.addObserver(notifier);
-        cdService.addObserver(notifier);
     }
 
     public void showMenu() {
@@ -216,35 +212,43 @@ public class UserInterface {
 
 
     private void payFine() {
-        if (user.getFineBalance() <= 0) {
+        if (user.getFineMinor() <= 0) {
             System.out.println(" You have no fines to pay!");
             pause();
             return;
         }
         System.out.println("💰 Your current fine balance: " + user.getFineBalance() + " NIS");
         System.out.print("Enter amount to pay: ");
+        long amount;
         try {
-            double amount = Double.parseDouble(sc.nextLine());
+            amount = Money.parse(sc.nextLine().trim());
+        } catch (NumberFormatException ex) {
+            System.out.println(" Invalid amount entered!");
+            pause();
+            return;
+        }
 
-            if (amount <= 0) {
-                System.out.println(" Amount must be greater than 0!");
-            } else if (amount > user.getFineBalance()) {
-                System.out.println(" You cannot pay more than your current fine balance!");
-            } else {
-                userService.payFine(user, amount, bookService, cdService);
+        if (amount <= 0) {
+            System.out.println(" Amount must be greater than 0!");
+        } else if (amount > user.getFineMinor()) {
+            System.out.println(" You cannot pay more than your current fine balance!");
+        } else {
+            try {
+                userService.payFineMinor(user, amount, bookService, cdService);
                 user = userService.getAllUsers().stream()
                         .filter(u -> u.equals(user))
                         .findFirst()
                         .orElse(user);
 
-                System.out.println(" Paid " + amount + " NIS. Remaining balance: " + user.getFineBalance() + " NIS 💰");
+                System.out.println(" Paid " + Money.format(amount) + " NIS. Remaining balance: " + user.getFineBalance() + " NIS 💰");
 
-                if (user.getFineBalance() == 0) {
+                if (user.canBorrow()) {
                     System.out.println(" All your overdue media fines have been cleared!");
                 }
+            } catch (IllegalArgumentException | IllegalStateException ex) {
+                // e.g. the balance changed at another desk, or the storage is busy
+                System.out.println(" Payment failed: " + ex.getMessage());
             }
-        } catch (NumberFormatException ex) {
-            System.out.println(" Invalid amount entered!");
         }
         pause();
     }
@@ -0,0 +1,101 @@
+package service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Utility for replacing a data file atomically.
+ * <p>
+ * The new content is written to a temporary file in the same directory, forced to
+ * disk, and then renamed over the target. Readers therefore see either the old file
+ * or the new one, never a partially written file, and a crash at any point leaves
+ * one of the two intact on disk.
+ * </p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * AtomicFiles.writeLines(Path.of("data/books.txt"), List.of("Title;Author;ISBN;true;null;null;0"));
+ * </code></pre>
+ *
+ * @since 1.0
+ */
+public final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Replaces the target file with the given lines.
+     *
+     * @param target the file to replace
+     * @param lines  the lines to write, each terminated by a line separator
+     * @throws IOException if the temporary file cannot be written or moved into place
+     */
+    public static void writeLines(Path target, List<String> lines) throws IOException {
+        replace(target, ch -> {
+            BufferedWriter bw = new BufferedWriter(Channels.newWriter(ch, StandardCharsets.UTF_8));
+            for (String line : lines) {
+                bw.write(line);
+                bw.newLine();
+            }
+            bw.flush();
+        });
+    }
+
+    /**
+     * Replaces the target file with the given bytes.
+     *
+     * @param target the file to replace
+     * @param data   the new content
+     * @throws IOException if the temporary file cannot be written or moved into place
+     */
+    public static void write(Path target, byte[] data) throws IOException {
+        replace(target, ch -> {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            while (buf.hasRemaining()) ch.write(buf);
+        });
+    }
+
+    private interface Content {
+        void writeTo(FileChannel ch) throws IOException;
+    }
+
+    private static void replace(Path target, Content content) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                content.writeTo(ch);
+                ch.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        syncDirectory(target);
+    }
+
+    /**
+     * Forces the directory entry of a file to disk, so that a rename into it survives
+     * a crash. Platforms that cannot open directories (e.g. Windows) are skipped.
+     *
+     * @param file a file in the directory to sync
+     */
+    static void syncDirectory(Path file) {
+        try (FileChannel dir = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // not supported on this platform; the rename itself is still atomic
+        }
+    }
+}
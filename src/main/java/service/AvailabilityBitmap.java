@@ -0,0 +1,135 @@
+package service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compact, lock-free record of which catalog items are on loan.
+ * <p>
+ * Each item of a catalog owns a dense slot number, its position in the catalog, and
+ * the bitmap holds one bit per slot: set while the item is on loan. Bits live in
+ * {@link AtomicLongArray} segments and are flipped by compare-and-set, so concurrent
+ * borrows and returns never lose each other's updates and readers never lock. Counting
+ * loans is a popcount over the words, and finding the loaned items skips 64 available
+ * items per word without touching the item objects, which keeps availability queries
+ * cheap on very large catalogs.
+ * </p>
+ *
+ * <p>The bitmap grows by whole segments; existing segments are never copied, so a
+ * bit flipped while the bitmap grows is not lost.</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * AvailabilityBitmap loans = new AvailabilityBitmap();
+ * loans.ensureCapacity(catalog.size());
+ * loans.set(42, true);
+ * for (int s = loans.nextOnLoan(0); s &gt;= 0; s = loans.nextOnLoan(s + 1)) {
+ *     ...
+ * }
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see MultiMediaService
+ * @see domain.Media#attach(AvailabilityBitmap, int, DueDateIndex)
+ */
+public final class AvailabilityBitmap {
+
+    /** Bits per segment, a power of two */
+    private static final int SEGMENT_BITS = 1 << 14;
+
+    private static final int SEGMENT_SHIFT = Integer.numberOfTrailingZeros(SEGMENT_BITS);
+
+    private static final int WORDS_PER_SEGMENT = SEGMENT_BITS / Long.SIZE;
+
+    private volatile AtomicLongArray[] segments = new AtomicLongArray[0];
+
+    /**
+     * Makes room for at least the given number of slots.
+     *
+     * @param slots the number of slots needed
+     */
+    public synchronized void ensureCapacity(int slots) {
+        int needed = (slots + SEGMENT_BITS - 1) >>> SEGMENT_SHIFT;
+        AtomicLongArray[] current = segments;
+        if (needed <= current.length) return;
+        AtomicLongArray[] grown = Arrays.copyOf(current, needed);
+        for (int i = current.length; i < needed; i++) grown[i] = new AtomicLongArray(WORDS_PER_SEGMENT);
+        segments = grown;
+    }
+
+    /**
+     * Returns the number of slots the bitmap can hold without growing.
+     *
+     * @return capacity in slots
+     */
+    public int capacity() {
+        return segments.length * SEGMENT_BITS;
+    }
+
+    /**
+     * Marks a slot as on loan or available.
+     *
+     * @param slot   the slot, below {@link #capacity()}
+     * @param onLoan true if the item is on loan
+     * @return true if the bit changed, false if it already had that value
+     */
+    public boolean set(int slot, boolean onLoan) {
+        AtomicLongArray words = segments[slot >>> SEGMENT_SHIFT];
+        int word = (slot & (SEGMENT_BITS - 1)) >>> 6;
+        long mask = 1L << slot;
+        while (true) {
+            long old = words.get(word);
+            long updated = onLoan ? old | mask : old & ~mask;
+            if (old == updated) return false;
+            if (words.compareAndSet(word, old, updated)) return true;
+        }
+    }
+
+    /**
+     * Tells whether a slot is on loan.
+     *
+     * @param slot the slot
+     * @return true if the item in that slot is on loan
+     */
+    public boolean isOnLoan(int slot) {
+        AtomicLongArray[] segs = segments;
+        int seg = slot >>> SEGMENT_SHIFT;
+        if (slot < 0 || seg >= segs.length) return false;
+        return (segs[seg].get((slot & (SEGMENT_BITS - 1)) >>> 6) & (1L << slot)) != 0;
+    }
+
+    /**
+     * Counts the slots on loan.
+     *
+     * @return number of items on loan
+     */
+    public int countOnLoan() {
+        int count = 0;
+        for (AtomicLongArray words : segments) {
+            for (int i = 0; i < WORDS_PER_SEGMENT; i++) count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * Finds the first slot on loan at or after a given slot.
+     *
+     * @param from the slot to start from
+     * @return the slot, or -1 if no later slot is on loan
+     */
+    public int nextOnLoan(int from) {
+        if (from < 0) from = 0;
+        AtomicLongArray[] segs = segments;
+        for (int seg = from >>> SEGMENT_SHIFT; seg < segs.length; seg++) {
+            AtomicLongArray words = segs[seg];
+            int start = seg == from >>> SEGMENT_SHIFT ? (from & (SEGMENT_BITS - 1)) >>> 6 : 0;
+            for (int i = start; i < WORDS_PER_SEGMENT; i++) {
+                long w = words.get(i);
+                int base = (seg << SEGMENT_SHIFT) + (i << 6);
+                if (base < from) w &= -1L << from;
+                if (w != 0) return base + Long.numberOfTrailingZeros(w);
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,90 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fine balances of all resident users, in agorot, in one primitive array.
+ * <p>
+ * Each user owns a dense slot number, its position in the user list, and the table
+ * holds that user's balance at the slot. Users mirror every balance change into the
+ * table they are {@link domain.User#attach(BalanceTable, int) attached} to, so totals
+ * and counts over all users are a single pass over a {@code long} array, without
+ * touching the user objects, and without branches.
+ * </p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * BalanceTable balances = userService.getBalances();
+ * long outstanding = balances.total();
+ * int owing = balances.countOwing();
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see UserService#getBalances()
+ * @see domain.Money
+ */
+public final class BalanceTable {
+
+    private final AtomicLongArray balances;
+
+    /**
+     * Creates a table of zero balances.
+     *
+     * @param slots the number of users
+     */
+    public BalanceTable(int slots) {
+        this.balances = new AtomicLongArray(slots);
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the number of users the table holds
+     */
+    public int size() {
+        return balances.length();
+    }
+
+    /**
+     * Returns the balance at a slot.
+     *
+     * @param slot the user's slot
+     * @return the balance in agorot
+     */
+    public long get(int slot) {
+        return balances.get(slot);
+    }
+
+    /**
+     * Sets the balance at a slot.
+     *
+     * @param slot  the user's slot
+     * @param minor the balance in agorot
+     */
+    public void set(int slot, long minor) {
+        balances.set(slot, minor);
+    }
+
+    /**
+     * Returns the sum of all balances.
+     *
+     * @return outstanding fines in agorot
+     */
+    public long total() {
+        long total = 0;
+        for (int i = 0; i < balances.length(); i++) total += balances.get(i);
+        return total;
+    }
+
+    /**
+     * Counts the users with a positive balance.
+     *
+     * @return the number of users owing fines
+     */
+    public int countOwing() {
+        int count = 0;
+        // the sign bit of -b is set exactly when b is positive
+        for (int i = 0; i < balances.length(); i++) count += (int) (-balances.get(i) >>> 63);
+        return count;
+    }
+}
@@ -0,0 +1,298 @@
+package service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot format for the catalog and the user base.
+ * <p>
+ * A snapshot starts with a header holding a magic number, the format version, the
+ * record count and a CRC32 checksum of the records that follow. Records are encoded
+ * by the owning service through {@link Writer} and decoded through {@link Reader}:
+ * strings are length-prefixed UTF-8, small integers are variable-length, dates are
+ * stored as epoch days and booleans are packed into flag bytes. Decoding needs no
+ * text parsing, so loading a large catalog is much faster than from the text files,
+ * which remain available as an import/export format.
+ * </p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * byte[] data = BinarySnapshot.encode(users, (u, w) -&gt; w.writeString(u.getId()));
+ * List&lt;String&gt; ids = BinarySnapshot.decode(Path.of("data/users.bin"), Reader::readString);
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see MultiMediaService#setBinarySnapshot(java.io.File)
+ * @see UserService#setBinarySnapshot(java.io.File)
+ */
+public final class BinarySnapshot {
+
+    /** "YBS" followed by a zero byte */
+    private static final int MAGIC = 0x59425300;
+
+    private static final byte VERSION = 1;
+
+    /** Magic, version, record count and checksum */
+    private static final int HEADER_SIZE = 4 + 1 + 4 + 4;
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Encodes one record.
+     *
+     * @param <T> type of the record
+     */
+    @FunctionalInterface
+    public interface Encoder<T> {
+        void encode(T record, Writer out);
+    }
+
+    /**
+     * Decodes one record.
+     *
+     * @param <T> type of the record
+     */
+    @FunctionalInterface
+    public interface Decoder<T> {
+        T decode(Reader in);
+    }
+
+    /**
+     * Encodes the records into a complete snapshot, header included.
+     *
+     * @param records the records to encode
+     * @param encoder encodes a single record
+     * @param <T>     type of the records
+     * @return the snapshot bytes
+     */
+    public static <T> byte[] encode(List<T> records, Encoder<T> encoder) {
+        Writer out = new Writer();
+        out.buf.write(new byte[HEADER_SIZE], 0, HEADER_SIZE);
+        for (T r : records) encoder.encode(r, out);
+        byte[] data = out.buf.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        ByteBuffer.wrap(data)
+                .putInt(MAGIC)
+                .put(VERSION)
+                .putInt(records.size())
+                .putInt((int) crc.getValue());
+        return data;
+    }
+
+    /**
+     * Decodes a snapshot file, verifying its header and checksum.
+     *
+     * @param file    the snapshot file
+     * @param decoder decodes a single record
+     * @param <T>     type of the records
+     * @return the decoded records
+     * @throws IOException if the file cannot be read, is not a snapshot or is corrupt
+     */
+    public static <T> List<T> decode(Path file, Decoder<T> decoder) throws IOException {
+        ByteBuffer data;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        return decode(data, decoder, file.getFileName().toString());
+    }
+
+    /**
+     * Decodes a snapshot held in memory, verifying its header and checksum.
+     *
+     * @param data    the snapshot bytes
+     * @param decoder decodes a single record
+     * @param <T>     type of the records
+     * @return the decoded records
+     * @throws IOException if the data is not a snapshot or is corrupt
+     */
+    public static <T> List<T> decode(byte[] data, Decoder<T> decoder) throws IOException {
+        return decode(ByteBuffer.wrap(data), decoder, "snapshot");
+    }
+
+    private static <T> List<T> decode(ByteBuffer data, Decoder<T> decoder, String name) throws IOException {
+        if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC) {
+            throw new IOException("Not a binary snapshot: " + name);
+        }
+        byte version = data.get();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + name);
+        int count = data.getInt();
+        int checksum = data.getInt();
+
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        if ((int) crc.getValue() != checksum) throw new IOException("Checksum mismatch in " + name);
+
+        Reader in = new Reader(data);
+        List<T> records = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) records.add(decoder.decode(in));
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed record in " + name, e);
+        }
+        if (data.hasRemaining()) throw new IOException("Trailing data in " + name);
+        return records;
+    }
+
+    /**
+     * Appends record fields to a snapshot being encoded.
+     */
+    public static final class Writer {
+
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream(8192);
+
+        private Writer() {
+        }
+
+        /**
+         * Writes a byte, typically a set of packed flags.
+         *
+         * @param value the byte
+         */
+        public void writeByte(int value) {
+            buf.write(value);
+        }
+
+        /**
+         * Writes a non-negative integer in 1 to 5 bytes, 7 bits per byte.
+         *
+         * @param value the value, must not be negative
+         */
+        public void writeVarInt(int value) {
+            if (value < 0) throw new IllegalArgumentException("Negative varint: " + value);
+            while (value >= 0x80) {
+                buf.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf.write(value);
+        }
+
+        /**
+         * Writes a signed integer in 4 bytes.
+         *
+         * @param value the value
+         */
+        public void writeInt(int value) {
+            buf.write(value >>> 24);
+            buf.write(value >>> 16);
+            buf.write(value >>> 8);
+            buf.write(value);
+        }
+
+        /**
+         * Writes a signed long in 8 bytes.
+         *
+         * @param value the value
+         */
+        public void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        /**
+         * Writes a double in 8 bytes.
+         *
+         * @param value the value
+         */
+        public void writeDouble(double value) {
+            writeLong(Double.doubleToLongBits(value));
+        }
+
+        /**
+         * Writes a string as its UTF-8 length followed by its UTF-8 bytes.
+         *
+         * @param value the string, must not be null
+         */
+        public void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            buf.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Reads record fields from a snapshot being decoded.
+     */
+    public static final class Reader {
+
+        private final ByteBuffer data;
+        private byte[] scratch = new byte[64];
+
+        private Reader(ByteBuffer data) {
+            this.data = data;
+        }
+
+        /**
+         * Reads a byte written by {@link Writer#writeByte(int)}.
+         *
+         * @return the byte, as an unsigned value
+         */
+        public int readByte() {
+            return data.get() & 0xFF;
+        }
+
+        /**
+         * Reads an integer written by {@link Writer#writeVarInt(int)}.
+         *
+         * @return the value
+         */
+        public int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = data.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IllegalStateException("Malformed varint");
+        }
+
+        /**
+         * Reads an integer written by {@link Writer#writeInt(int)}.
+         *
+         * @return the value
+         */
+        public int readInt() {
+            return data.getInt();
+        }
+
+        /**
+         * Reads a long written by {@link Writer#writeLong(long)}.
+         *
+         * @return the value
+         */
+        public long readLong() {
+            return data.getLong();
+        }
+
+        /**
+         * Reads a double written by {@link Writer#writeDouble(double)}.
+         *
+         * @return the value
+         */
+        public double readDouble() {
+            return data.getDouble();
+        }
+
+        /**
+         * Reads a string written by {@link Writer#writeString(String)}.
+         *
+         * @return the string
+         */
+        public String readString() {
+            int length = readVarInt();
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            data.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -1,11 +1,8 @@
 package service;
 
 import domain.Book;
-
-import domain.Media;
 import domain.User;
 import java.io.*;
-import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -13,6 +10,7 @@ import java.util.stream.Collectors;
  * Service class to manage {@link Book} objects
  * Extends {@link MultiMediaService} and provides functionality for adding, borrowing,
  * searching, and persisting books to a file.
+ * The catalog is read once and served from memory afterwards.
  *
  * <p>Example usage:
  * <pre><code>
@@ -26,6 +24,7 @@ import java.util.stream.Collectors;
  *
  * @since 1.0
  */
+@SuppressWarnings("try") // lock handles only scope the held lock
 public class BookService extends MultiMediaService<Book> {
 
     /** Path to the file where books are stored */
@@ -34,6 +33,7 @@ public class BookService extends MultiMediaService<Book> {
     /**
      * Constructs a BookService and ensures the data file exists.
      * If the file or directories do not exist, they will be created.
+     * The catalog itself is loaded on first use.
      *
      * @since 1.0
      */
@@ -55,16 +55,6 @@ public class BookService extends MultiMediaService<Book> {
     }
 
 
-    /**
-     * Returns a list of all books in the system.
-     *
-     * @return List of {@link Book}
-     * @since 1.0
-     */
-    public List<Book> getAllMedia() {
-        return readFromFile();
-    }
-
     /**
      * Adds a new book to the system.
      * Validates non-null title, author, and ISBN.
@@ -76,18 +66,17 @@ public class BookService extends MultiMediaService<Book> {
      * @since 1.0
      */
     @Override
-    public Book addMedia(Book book) {
+    public synchronized Book addMedia(Book book) {
         if (book.getTitle() == null || book.getAuthor() == null || book.getIsbn() == null) {
             throw new IllegalArgumentException("Title, author, and ISBN cannot be null");
         }
-        List<Book> books = readFromFile();
-        for (Book b : books) {
-            if (b.getIsbn().equals(book.getIsbn())) {
+        try (InterProcessLock.Held held = lockStorage()) {
+            if (findByIdentifier(book.getIsbn()) != null) {
                 throw new IllegalArgumentException("Book with same ISBN already exists");
             }
+            addToCatalog(book);
+            writeToFile(catalog());
         }
-        books.add(book);
-        writeToFile(books);
         return book;
     }
 
@@ -98,7 +87,8 @@ public class BookService extends MultiMediaService<Book> {
      * @param user The {@link User} borrowing the book
      * @param isbn The ISBN of the book to borrow
      * @return The borrowed {@link Book}
-     * @throws IllegalArgumentException If the book or user is invalid
+     * @throws NotFoundException        If no book has the ISBN
+     * @throws IllegalArgumentException If the user is invalid
      * @throws IllegalStateException    If the book is already borrowed or user cannot borrow
      * @since 1.0
      */
@@ -106,21 +96,19 @@ public class BookService extends MultiMediaService<Book> {
     public Book borrowMedia(User user, String isbn) {
         if (user == null) throw new IllegalArgumentException("User cannot be null");
 
-        List<Media> allMedia = new ArrayList<>(readFromFile());
-        if (!canUserBorrow(user, allMedia)) {
+        List<Book> books = catalog();
+        if (!canUserBorrow(user, books)) {
             throw new IllegalStateException("Cannot borrow books: overdue media or unpaid fines");
         }
 
-        List<Book> books = readFromFile();
-        for (Book b : books) {
-            if (b.getIsbn().equals(isbn)) {
-                if (!b.isAvailable()) throw new IllegalStateException("Book already borrowed");
-                b.borrow(user);
-                writeToFile(books);
-                return b;
-            }
-        }
-        throw new IllegalArgumentException("Book not found");
+        return transition(isbn, book -> {
+            if (book == null) throw new NotFoundException("Book not found");
+            if (!book.isAvailable()) throw new IllegalStateException("Book already borrowed");
+            return true;
+        }, book -> {
+            book.borrow(user);
+            return borrowRecord(book);
+        });
     }
 
     /**
@@ -134,13 +122,24 @@ public class BookService extends MultiMediaService<Book> {
     public List<Book> search(String query) {
         if (query == null) return new ArrayList<>();
         String q = query.toLowerCase();
-        return readFromFile().stream()
+        return catalog().stream()
                 .filter(b -> b.getTitle().toLowerCase().contains(q)
                         || b.getAuthor().toLowerCase().contains(q)
                         || b.getIsbn().toLowerCase().contains(q))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Returns the ISBN of a book, its primary key in the catalog.
+     *
+     * @param book the book
+     * @return the ISBN
+     */
+    @Override
+    protected String identifierOf(Book book) {
+        return book.getIsbn();
+    }
+
     /**
      * Reads books from the storage file.
      *
@@ -151,31 +150,26 @@ public class BookService extends MultiMediaService<Book> {
     @Override
     protected List<Book> readFromFile() {
         List<Book> books = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(FILE_PATH))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(";");
-                if (parts.length < 5) continue;
+        Map<String, User> users = loadUserDirectory();
+        try (RecordReader r = openRecords()) {
+            while (r.next()) {
+                if (r.fieldCount() < 5) continue;
 
-                Book b = new Book(parts[0].trim(), parts[1].trim(), parts[2].trim());
-                b.setAvailable(Boolean.parseBoolean(parts[3].trim()));
+                Book b = new Book(r.string(0), r.string(1), r.string(2));
+                b.setAvailable(r.bool(3));
 
-                if (!"null".equals(parts[4].trim())) {
+                if (!r.isNull(4)) {
                     try {
-                        b.setDueDate(LocalDate.parse(parts[4].trim()));
+                        b.setDueDate(r.date(4));
                     } catch (Exception e) {
                         System.out.println("Warning: invalid date for book " + b.getTitle());
                     }
                 }
-                if (parts.length >= 6 && userService != null) {
-                    String userId = parts[5].trim();
-                    User u = userService.getAllUsers().stream()
-                            .filter(user -> user.getId().equals(userId))
-                            .findFirst().orElse(null);
-                    b.setBorrowedBy(u);
+                if (r.fieldCount() >= 6 && users != null && !r.isNull(5)) {
+                    b.setBorrowedBy(users.get(r.string(5)));
                 }
-                if (parts.length >= 7) {
-                    b.setFineApplied(Integer.parseInt(parts[6].trim()));
+                if (r.fieldCount() >= 7) {
+                    b.setFineApplied(r.integer(6));
                 } else {
                     b.setFineApplied(0);
                 }
@@ -188,29 +182,58 @@ public class BookService extends MultiMediaService<Book> {
     }
 
     /**
-     * Writes a list of books to the storage file.
+     * Writes the title, author and ISBN of a book to a binary snapshot.
      *
-     * @param list List of {@link Book} to write
-     * @throws RuntimeException If file cannot be written
+     * @param book  The {@link Book} to write
+     * @param out the snapshot being written
      * @since 1.0
      */
     @Override
-    public void writeToFile(List<Book> list) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(FILE_PATH))) {
-            for (Book b : list) {
-                String userId = (b.getBorrowedBy() != null) ? b.getBorrowedBy().getId() : "null";
-                bw.write(String.join(";",
-                        b.getTitle(),
-                        b.getAuthor(),
-                        b.getIsbn(),
-                        Boolean.toString(b.isAvailable()),
-                        b.getDueDate() != null ? b.getDueDate().toString() : "null",
-                        userId,
-                        Integer.toString(b.getFineApplied())));
-                bw.newLine();
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Error writing books file", e);
-        }
+    protected void writeIdentity(Book book, BinarySnapshot.Writer out) {
+        out.writeString(book.getTitle());
+        out.writeString(book.getAuthor());
+        out.writeString(book.getIsbn());
+    }
+
+    /**
+     * Reads a book written by {@link #writeIdentity}.
+     *
+     * @param in the snapshot being read
+     * @return the book
+     * @since 1.0
+     */
+    @Override
+    protected Book readIdentity(BinarySnapshot.Reader in) {
+        return new Book(in.readString(), in.readString(), in.readString());
+    }
+
+    /**
+     * Formats a book as one line of the storage file.
+     *
+     * @param b The {@link Book} to format
+     * @return the semicolon-delimited record
+     * @since 1.0
+     */
+    @Override
+    protected String formatRecord(Book b) {
+        String userId = (b.getBorrowedBy() != null) ? b.getBorrowedBy().getId() : "null";
+        return String.join(";",
+                b.getTitle(),
+                b.getAuthor(),
+                b.getIsbn(),
+                Boolean.toString(b.isAvailable()),
+                b.getDueDate() != null ? b.getDueDate().toString() : "null",
+                userId,
+                Integer.toString(b.getFineApplied()));
+    }
+
+    /**
+     * Returns the storage file for books.
+     *
+     * @return the books data file
+     */
+    @Override
+    protected File dataFile() {
+        return new File(FILE_PATH);
     }
 }
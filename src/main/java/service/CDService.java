@@ -1,18 +1,16 @@
 package service;
 
 import domain.CD;
-import domain.Media;
 import domain.User;
 
 import java.io.*;
-import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Service class to manage {@link CD} objects.
  * Extends {@link MultiMediaService} and provides functionality for adding, borrowing,
  * searching, and persisting CDs to a file.
+ * The catalog is read once and served from memory afterwards.
  *
  * <p>Example usage:
  * <pre><code>
@@ -27,6 +25,7 @@ import java.util.stream.Collectors;
  * @see CD
  * @see MultiMediaService
  */
+@SuppressWarnings("try") // lock handles only scope the held lock
 public class CDService extends MultiMediaService<CD> {
 
     /** Path to the file where CDs are stored */
@@ -35,6 +34,7 @@ public class CDService extends MultiMediaService<CD> {
     /**
      * Constructs a CDService and ensures the data file exists.
      * If the file or directories do not exist, they will be created.
+     * The catalog itself is loaded on first use.
      *
      * @since 1.0
      */
@@ -56,16 +56,6 @@ public class CDService extends MultiMediaService<CD> {
     }
 
 
-    /**
-     * Returns a list of all CDs in the system.
-     *
-     * @return List of {@link CD}
-     * @since 1.0
-     */
-    public List<CD> getAllMedia() {
-        return readFromFile();
-    }
-
     /**
      * Adds a new CD to the system.
      * Validates non-null/non-empty ID.
@@ -77,17 +67,17 @@ public class CDService extends MultiMediaService<CD> {
      * @since 1.0
      */
     @Override
-    public CD addMedia(CD cd) {
+    public synchronized CD addMedia(CD cd) {
         if (cd.getId() == null || cd.getId().isEmpty()) 
             throw new IllegalArgumentException("CD ID cannot be null");
 
-        List<CD> cds = readFromFile();
-        for (CD c : cds) {
-            if (c.getId().equals(cd.getId()))
+        try (InterProcessLock.Held held = lockStorage()) {
+            if (findByIdentifier(cd.getId()) != null)
                 throw new IllegalArgumentException("CD with same ID already exists");
+
+            addToCatalog(cd);
+            writeToFile(catalog());
         }
-        cds.add(cd);
-        writeToFile(cds);
         return cd;
     }
 
@@ -98,7 +88,8 @@ public class CDService extends MultiMediaService<CD> {
      * @param user The {@link User} borrowing the CD
      * @param id   The ID of the CD to borrow
      * @return The borrowed {@link CD}
-     * @throws IllegalArgumentException If the CD or user is invalid
+     * @throws NotFoundException        If no CD has the ID
+     * @throws IllegalArgumentException If the user is invalid
      * @throws IllegalStateException    If the CD is already borrowed or user cannot borrow
      * @since 1.0
      */
@@ -106,20 +97,19 @@ public class CDService extends MultiMediaService<CD> {
     public CD borrowMedia(User user, String id) {
         if (user == null) throw new IllegalArgumentException("User cannot be null");
 
-        List<CD> cds = readFromFile();
-        if (!canUserBorrow(user, new ArrayList<>(cds))) {
+        List<CD> cds = catalog();
+        if (!canUserBorrow(user, cds)) {
             throw new IllegalStateException("Cannot borrow CD: overdue media or unpaid fines");
         }
-        for (CD cd : cds) {
-            if (cd.getId().equals(id)) {
-                if (!cd.isAvailable()) throw new IllegalStateException("CD already borrowed");
-                cd.borrow(user);
-                writeToFile(cds);
-                return cd;
-            }
-        }
 
-        throw new IllegalArgumentException("CD not found");
+        return transition(id, c -> {
+            if (c == null) throw new NotFoundException("CD not found");
+            if (!c.isAvailable()) throw new IllegalStateException("CD already borrowed");
+            return true;
+        }, c -> {
+            c.borrow(user);
+            return borrowRecord(c);
+        });
     }
 
     /**
@@ -135,7 +125,7 @@ public class CDService extends MultiMediaService<CD> {
 
         String q = query.toLowerCase();
 
-        return readFromFile().stream()
+        return catalog().stream()
                 .filter(cd ->
                         cd.getTitle().toLowerCase().contains(q) ||
                         cd.getArtist().toLowerCase().contains(q) ||
@@ -144,6 +134,17 @@ public class CDService extends MultiMediaService<CD> {
                 .toList();
     }
 
+    /**
+     * Returns the ID of a CD, its primary key in the catalog.
+     *
+     * @param cd the CD
+     * @return the CD ID
+     */
+    @Override
+    protected String identifierOf(CD cd) {
+        return cd.getId();
+    }
+
     /**
      * Reads CDs from the storage file.
      *
@@ -154,12 +155,11 @@ public class CDService extends MultiMediaService<CD> {
     @Override
     protected List<CD> readFromFile() {
         List<CD> cds = new ArrayList<>();
+        Map<String, User> users = loadUserDirectory();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(FILE_PATH))) {
-            String line;
-
-            while ((line = br.readLine()) != null) {
-                CD cd = parseCdLine(line);
+        try (RecordReader r = openRecords()) {
+            while (r.next()) {
+                CD cd = parseCd(r, users);
                 if (cd != null) {
                     cds.add(cd);
                 }
@@ -170,91 +170,109 @@ public class CDService extends MultiMediaService<CD> {
 
         return cds;
     }
-    private CD parseCdLine(String line) {
-        String[] parts = line.split(";");
-        if (parts.length < 4) return null;
+    private CD parseCd(RecordReader r, Map<String, User> users) {
+        if (r.fieldCount() < 4) return null;
 
         CD cd = new CD(
-                parts[0].trim(),
-                parts[1].trim(),
-                parts[2].trim()
+                r.string(0),
+                r.string(1),
+                r.string(2)
         );
 
-        cd.setAvailable(Boolean.parseBoolean(parts[3].trim()));
+        cd.setAvailable(r.bool(3));
 
-        setDueDate(parts, cd);
-        setBorrower(parts, cd);
-        setFine(parts, cd);
+        setDueDate(r, cd);
+        setBorrower(r, cd, users);
+        setFine(r, cd);
 
         return cd;
     }
-    private void setDueDate(String[] parts, CD cd) {
-        if (parts.length < 5) return;
-
-        String rawDate = parts[4].trim();
-        if ("null".equals(rawDate)) return;
+    private void setDueDate(RecordReader r, CD cd) {
+        if (r.fieldCount() < 5) return;
+        if (r.isNull(4)) return;
 
         try {
-            cd.setDueDate(LocalDate.parse(rawDate));
+            cd.setDueDate(r.date(4));
         } catch (Exception e) {
             System.out.println("Warning: invalid date for CD " + cd.getTitle());
         }
     }
 
-    private void setBorrower(String[] parts, CD cd) {
-        if (parts.length < 6 || userService == null) return;
+    private void setBorrower(RecordReader r, CD cd, Map<String, User> users) {
+        if (r.fieldCount() < 6 || users == null || r.isNull(5)) return;
 
-        String userId = parts[5].trim();
-
-        User u = userService.getAllUsers()
-                .stream()
-                .filter(user -> user.getId().equals(userId))
-                .findFirst()
-                .orElse(null);
-
-        cd.setBorrowedBy(u);
+        cd.setBorrowedBy(users.get(r.string(5)));
     }
 
-    private void setFine(String[] parts, CD cd) {
-        if (parts.length >= 7) {
-            cd.setFineApplied(Integer.parseInt(parts[6].trim()));
+    private void setFine(RecordReader r, CD cd) {
+        if (r.fieldCount() >= 7) {
+            cd.setFineApplied(r.integer(6));
         } else {
             cd.setFineApplied(0);
         }
     }
 
     /**
-     * Writes a list of CDs to the storage file.
+     * Writes the title, artist and ID of a CD to a binary snapshot.
      *
-     * @param list List of {@link CD} to write
-     * @throws RuntimeException If file cannot be written
+     * @param cd  The {@link CD} to write
+     * @param out the snapshot being written
      * @since 1.0
      */
     @Override
-    public void writeToFile(List<CD> list) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(FILE_PATH))) {
-            for (CD cd : list) {
-                String userId = (cd.getBorrowedBy() != null)
-                        ? cd.getBorrowedBy().getId()
-                        : "null";
-
-                String due = (cd.getDueDate() != null)
-                        ? cd.getDueDate().toString()
-                        : "null";
-
-                bw.write(String.join(";",
-                        cd.getTitle(),
-                        cd.getArtist(),
-                        cd.getId(),
-                        Boolean.toString(cd.isAvailable()),
-                        due,
-                        userId,
-                        Integer.toString(cd.getFineApplied())
-                ));
-                bw.newLine();
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Error writing CDs file", e);
-        }
+    protected void writeIdentity(CD cd, BinarySnapshot.Writer out) {
+        out.writeString(cd.getTitle());
+        out.writeString(cd.getArtist());
+        out.writeString(cd.getId());
+    }
+
+    /**
+     * Reads a CD written by {@link #writeIdentity}.
+     *
+     * @param in the snapshot being read
+     * @return the CD
+     * @since 1.0
+     */
+    @Override
+    protected CD readIdentity(BinarySnapshot.Reader in) {
+        return new CD(in.readString(), in.readString(), in.readString());
+    }
+
+    /**
+     * Formats a CD as one line of the storage file.
+     *
+     * @param cd The {@link CD} to format
+     * @return the semicolon-delimited record
+     * @since 1.0
+     */
+    @Override
+    protected String formatRecord(CD cd) {
+        String userId = (cd.getBorrowedBy() != null)
+                ? cd.getBorrowedBy().getId()
+                : "null";
+
+        String due = (cd.getDueDate() != null)
+                ? cd.getDueDate().toString()
+                : "null";
+
+        return String.join(";",
+                cd.getTitle(),
+                cd.getArtist(),
+                cd.getId(),
+                Boolean.toString(cd.isAvailable()),
+                due,
+                userId,
+                Integer.toString(cd.getFineApplied())
+        );
+    }
+
+    /**
+     * Returns the storage file for CDs.
+     *
+     * @return the CDs data file
+     */
+    @Override
+    protected File dataFile() {
+        return new File(FILE_PATH);
     }
 }
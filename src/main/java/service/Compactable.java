@@ -0,0 +1,27 @@
+package service;
+
+/**
+ * A service whose journaled changes can be folded into a fresh snapshot
+ * of its data file.
+ *
+ * @since 1.0
+ * @see CompactionService
+ * @see MutationLog
+ */
+public interface Compactable {
+
+    /**
+     * Returns the number of bytes currently held in the journal.
+     *
+     * @return journal size in bytes, 0 if the service is not journaled
+     */
+    long journalLength();
+
+    /**
+     * Writes the current state as a new snapshot of the data file and discards
+     * the journal records it covers. Reads and writes may continue meanwhile.
+     *
+     * @return the number of journal bytes reclaimed
+     */
+    long compact();
+}
@@ -0,0 +1,83 @@
+package service;
+
+import domain.Media;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Orders the items of a catalog that have a due date by that date, so that the items
+ * due before a given day are found with a range query instead of a scan of the catalog.
+ * <p>
+ * Items keep the index current themselves: once {@link Media#attach attached}, every
+ * change of an item's due date moves it in the index. Finding the items due before a
+ * day costs O(log n + k) for k items found, and moving an item O(log n). The index is
+ * synchronized; updates happen once per borrow or return and queries hold the lock only
+ * while copying the k items out.
+ * </p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * DueDateIndex dueDates = new DueDateIndex();
+ * book.attach(loans, 0, dueDates);
+ * List&lt;Media&gt; overdue = dueDates.dueBefore(LocalDate.now());
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see MultiMediaService#getOverdueMedia()
+ * @see AvailabilityBitmap
+ */
+public final class DueDateIndex {
+
+    /** Items by due date; each set holds items by identity */
+    private final TreeMap<LocalDate, Set<Media>> byDate = new TreeMap<>();
+
+    /** Date each item is filed under, so a move never depends on the caller's view */
+    private final Map<Media, LocalDate> filedUnder = new IdentityHashMap<>();
+
+    /**
+     * Files an item under its due date, replacing its previous entry.
+     *
+     * @param media   the item
+     * @param dueDate the item's due date, or null to drop the item from the index
+     */
+    public synchronized void update(Media media, LocalDate dueDate) {
+        LocalDate previous = dueDate == null ? filedUnder.remove(media) : filedUnder.put(media, dueDate);
+        if (previous != null) {
+            if (previous.equals(dueDate)) return;
+            Set<Media> items = byDate.get(previous);
+            items.remove(media);
+            if (items.isEmpty()) byDate.remove(previous);
+        }
+        if (dueDate != null) {
+            byDate.computeIfAbsent(dueDate, d -> Collections.newSetFromMap(new IdentityHashMap<>())).add(media);
+        }
+    }
+
+    /**
+     * Returns the items due strictly before a day, earliest due date first.
+     *
+     * @param day the day
+     * @return items whose due date is before {@code day}
+     */
+    public synchronized List<Media> dueBefore(LocalDate day) {
+        List<Media> result = new ArrayList<>();
+        for (Set<Media> items : byDate.headMap(day, false).values()) result.addAll(items);
+        return result;
+    }
+
+    /**
+     * Returns the number of items with a due date.
+     *
+     * @return indexed items
+     */
+    public synchronized int size() {
+        return filedUnder.size();
+    }
+}
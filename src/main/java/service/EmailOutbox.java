@@ -0,0 +1,488 @@
+package service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable queue of outgoing emails, so that a reminder is not lost when the mail
+ * server is unreachable and survives a restart of the application.
+ * <p>
+ * {@link #sendEmail(String, String)} only records the message in the outbox journal
+ * and returns; a background sender (see {@link #start()}) or {@link #drain()} hands the
+ * queued messages to the real {@link EmailService}. Deliveries are rate limited by a
+ * {@link TokenBucket} to respect the provider's quota. A failed delivery is retried with
+ * exponential backoff, and a message that still fails after the maximum number of
+ * attempts is set aside as a dead letter.
+ * </p>
+ *
+ * <p>Every message carries an idempotency key. A message whose key is already queued or
+ * was delivered recently is ignored, so reminding the same patron twice in one day
+ * sends one email; the key is also passed to the email service, which can use it to let
+ * the server discard a duplicate when a crash struck between a delivery and its record.
+ * Records are idempotent and carry resulting state, like the data journals, and
+ * {@link #compact()} rewrites the journal with the live messages only.</p>
+ *
+ * <p>One process drains an outbox file at a time; desks sharing {@code data/} should
+ * each use their own outbox file. The background sender holds a lock on the file while
+ * it runs, so a second desk started on the same outbox fails instead of sending
+ * duplicates.</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * EmailOutbox outbox = new EmailOutbox("data/outbox.journal", new RealEmailService());
+ * outbox.start();
+ * bookService.addObserver(new EmailNotifier(outbox));
+ * ...
+ * outbox.stop();
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see EmailNotifier
+ * @see MutationLog
+ */
+public class EmailOutbox implements EmailService, Compactable {
+
+    /** State of a message in the outbox */
+    private enum State { PENDING, SENT, DEAD }
+
+    /** A queued message and its delivery state */
+    private static final class Entry {
+        final String key;
+        final String to;
+        final String message;
+        State state = State.PENDING;
+        int attempts;
+        long nextAttemptAt;
+        long finishedAt;
+        boolean inFlight;
+
+        Entry(String key, String to, String message) {
+            this.key = key;
+            this.to = to;
+            this.message = message;
+        }
+    }
+
+    /** Longest time an idle sender waits before checking the outbox again */
+    private static final long IDLE_WAIT_MILLIS = 1000;
+
+    private final MutationLog journal;
+    private final EmailService delivery;
+
+    /** Messages by idempotency key, in the order they were queued */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private volatile TokenBucket rateLimit = new TokenBucket(5, 10);
+    private long initialBackoffMillis = 1000;
+    private long maxBackoffMillis = Duration.ofMinutes(30).toMillis();
+    private int maxAttempts = 10;
+    private long retentionMillis = Duration.ofDays(2).toMillis();
+
+    /** Background sender, null when stopped */
+    private Thread sender;
+
+    /** Lock on the outbox file held while the sender runs, so no other process drains it */
+    private FileChannel ownerChannel;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong deadLetters = new AtomicLong();
+
+    /**
+     * Opens an outbox, loading the messages queued by a previous run.
+     *
+     * @param journalPath path of the outbox journal, e.g. {@code data/outbox.journal}
+     * @param delivery    service that actually sends the emails
+     * @throws RuntimeException if the journal cannot be read
+     */
+    public EmailOutbox(String journalPath, EmailService delivery) {
+        this.journal = new MutationLog(journalPath);
+        this.delivery = delivery;
+        journal.replay(this::replay);
+    }
+
+    private void replay(String[] r) {
+        // fields are parsed before anything is changed, so a torn record changes nothing
+        switch (r[0]) {
+            case "ENQUEUE" -> {
+                Entry entry = new Entry(r[1], decode(r[2]), decode(r[3]));
+                entries.putIfAbsent(r[1], entry);
+            }
+            case "ATTEMPT" -> {
+                int attempts = Integer.parseInt(r[2]);
+                long nextAttemptAt = Long.parseLong(r[3]);
+                Entry e = entries.get(r[1]);
+                if (e != null) {
+                    e.attempts = attempts;
+                    e.nextAttemptAt = nextAttemptAt;
+                }
+            }
+            case "SENT", "DEAD" -> {
+                long finishedAt = Long.parseLong(r[2]);
+                Entry e = entries.computeIfAbsent(r[1], k -> new Entry(k, null, null));
+                e.state = r[0].equals("SENT") ? State.SENT : State.DEAD;
+                e.finishedAt = finishedAt;
+            }
+            default -> System.out.println("Warning: unknown outbox record " + r[0]);
+        }
+    }
+
+    // ----- Configuration -----
+
+    /**
+     * Limits deliveries to a rate, with bursts up to a number of messages.
+     *
+     * @param perSecond messages per second
+     * @param burst     messages that may be sent at once after an idle period
+     */
+    public void setRateLimit(double perSecond, int burst) {
+        this.rateLimit = new TokenBucket(perSecond, burst);
+    }
+
+    /**
+     * Sets the retry policy. The wait after the n-th failed attempt is
+     * {@code initial * 2^(n-1)}, capped at {@code max}.
+     *
+     * @param initial     wait after the first failure
+     * @param max         longest wait between attempts
+     * @param maxAttempts attempts after which a message becomes a dead letter
+     */
+    public synchronized void setBackoff(Duration initial, Duration max, int maxAttempts) {
+        this.initialBackoffMillis = initial.toMillis();
+        this.maxBackoffMillis = max.toMillis();
+        this.maxAttempts = maxAttempts;
+    }
+
+    // ----- Queueing -----
+
+    /**
+     * Queues an email, keyed by recipient, message and day, so that the same reminder
+     * queued again on the same day is ignored.
+     *
+     * @param to      the recipient's email address
+     * @param message the message content
+     */
+    @Override
+    public void sendEmail(String to, String message) {
+        sendEmail(to, message, idempotencyKey(to, message));
+    }
+
+    /**
+     * Queues an email under an explicit idempotency key.
+     *
+     * @param to             the recipient's email address
+     * @param message        the message content
+     * @param idempotencyKey key identifying the message
+     * @throws RuntimeException if the message cannot be recorded
+     */
+    @Override
+    public void sendEmail(String to, String message, String idempotencyKey) {
+        enqueue(idempotencyKey, to, message);
+    }
+
+    /**
+     * Queues an email unless a message with the same key is already known.
+     *
+     * @param key     the idempotency key
+     * @param to      the recipient's email address
+     * @param message the message content
+     * @return true if the message was queued, false if it is a duplicate
+     * @throws RuntimeException if the message cannot be recorded
+     */
+    public synchronized boolean enqueue(String key, String to, String message) {
+        if (to == null || to.isBlank()) {
+            System.err.println("Skipping email: recipient is null or empty.");
+            return false;
+        }
+        if (entries.containsKey(key)) return false;
+        journal.append("ENQUEUE", key, encode(to), encode(message));
+        entries.put(key, new Entry(key, to, message));
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Derives the default idempotency key of a message.
+     *
+     * @param to      the recipient's email address
+     * @param message the message content
+     * @return a key equal for the same message to the same recipient on the same day
+     */
+    public static String idempotencyKey(String to, String message) {
+        String identity = to + '\n' + message + '\n' + LocalDate.now();
+        return UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    // ----- Delivery -----
+
+    /**
+     * Delivers every message that is due now, waiting for the rate limit as needed.
+     * Messages whose delivery fails are rescheduled and not retried by this call.
+     *
+     * @return the number of messages delivered
+     * @throws InterruptedException if interrupted while waiting for the rate limit
+     */
+    public int drain() throws InterruptedException {
+        int delivered = 0;
+        Entry e;
+        while ((e = claimDue()) != null) {
+            if (deliver(e)) delivered++;
+        }
+        return delivered;
+    }
+
+    /**
+     * Starts delivering in the background.
+     *
+     * @throws IllegalStateException if the sender is already running, or another process
+     *                               is draining the same outbox file
+     */
+    public synchronized void start() {
+        if (sender != null) throw new IllegalStateException("Outbox sender already running");
+        ownerChannel = lockOwner();
+        sender = new Thread(this::run, "email-outbox");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Stops the background sender, waiting for a delivery in progress to finish.
+     * Undelivered messages stay in the outbox for the next run.
+     */
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            t = sender;
+            sender = null;
+            notifyAll();
+        }
+        if (t == null) return;
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            // closing the channel releases the lock
+            try {
+                if (ownerChannel != null) ownerChannel.close();
+            } catch (IOException e) {
+                System.err.println("Error unlocking outbox: " + e.getMessage());
+            }
+            ownerChannel = null;
+        }
+    }
+
+    private FileChannel lockOwner() {
+        Path lockFile = Path.of(journal.getFile().getPath() + ".lock");
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (channel.tryLock() != null) return channel;
+        } catch (OverlappingFileLockException e) {
+            // held by another outbox of this process
+        } catch (IOException e) {
+            throw new RuntimeException("Error locking outbox " + journal.getFile().getName(), e);
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // not locked by us, nothing to release
+        }
+        throw new IllegalStateException("Outbox " + journal.getFile().getName() + " is drained by another process");
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Entry e;
+                synchronized (this) {
+                    while (true) {
+                        if (sender != Thread.currentThread()) return;
+                        if ((e = claimDueLocked()) != null) break;
+                        wait(Math.max(1, Math.min(IDLE_WAIT_MILLIS, nextAttemptIn())));
+                    }
+                }
+                try {
+                    deliver(e);
+                } catch (RuntimeException | Error ex) {
+                    // e.g. the journal cannot be written: keep the message and the sender, try later
+                    System.err.println("Email outbox: delivery to " + e.to + " not recorded: " + ex);
+                    synchronized (this) {
+                        e.inFlight = false;
+                        wait(IDLE_WAIT_MILLIS);
+                    }
+                }
+            }
+        } catch (InterruptedException ignored) {
+            // stopped
+        }
+    }
+
+    private synchronized Entry claimDue() {
+        return claimDueLocked();
+    }
+
+    private Entry claimDueLocked() {
+        long now = System.currentTimeMillis();
+        for (Entry e : entries.values()) {
+            if (e.state == State.PENDING && !e.inFlight && e.nextAttemptAt <= now) {
+                e.inFlight = true;
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private long nextAttemptIn() {
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        for (Entry e : entries.values()) {
+            if (e.state == State.PENDING && !e.inFlight) next = Math.min(next, e.nextAttemptAt - now);
+        }
+        return next;
+    }
+
+    /** Sends a claimed message and records the outcome; returns whether it was delivered. */
+    private boolean deliver(Entry e) throws InterruptedException {
+        try {
+            rateLimit.acquire();
+            delivery.sendEmail(e.to, e.message, e.key);
+        } catch (InterruptedException ie) {
+            synchronized (this) {
+                e.inFlight = false;
+            }
+            throw ie;
+        } catch (Throwable ex) {
+            // whatever the transport throws, including a broken configuration, is a failed attempt
+            failed(e, ex);
+            return false;
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            journal.append("SENT", e.key, String.valueOf(now));
+            e.state = State.SENT;
+            e.finishedAt = now;
+            e.inFlight = false;
+        }
+        sent.incrementAndGet();
+        return true;
+    }
+
+    private synchronized void failed(Entry e, Throwable cause) {
+        failedAttempts.incrementAndGet();
+        long now = System.currentTimeMillis();
+        e.attempts++;
+        e.inFlight = false;
+        if (e.attempts >= maxAttempts) {
+            journal.append("DEAD", e.key, String.valueOf(now));
+            e.state = State.DEAD;
+            e.finishedAt = now;
+            deadLetters.incrementAndGet();
+            System.err.println("Giving up on email to " + e.to + " after " + e.attempts + " attempts: " + cause.getMessage());
+            return;
+        }
+        long backoff = initialBackoffMillis << Math.min(e.attempts - 1, 30);
+        e.nextAttemptAt = now + Math.min(backoff < 0 ? Long.MAX_VALUE : backoff, maxBackoffMillis);
+        journal.append("ATTEMPT", e.key, String.valueOf(e.attempts), String.valueOf(e.nextAttemptAt));
+    }
+
+    // ----- Compaction -----
+
+    @Override
+    public long journalLength() {
+        return journal.length();
+    }
+
+    /**
+     * Rewrites the journal with the queued messages, the dead letters and the keys of
+     * messages delivered within the retention period, dropping everything else.
+     *
+     * @return the number of journal bytes reclaimed
+     * @throws RuntimeException if the journal cannot be rewritten
+     */
+    @Override
+    public synchronized long compact() {
+        long before = journal.length();
+        long horizon = System.currentTimeMillis() - retentionMillis;
+        List<String> lines = new ArrayList<>();
+        entries.values().removeIf(e -> e.state != State.PENDING && e.finishedAt < horizon);
+        for (Entry e : entries.values()) {
+            if (e.to != null && e.state != State.SENT) {
+                lines.add(String.join(";", "ENQUEUE", e.key, encode(e.to), encode(e.message)));
+            }
+            if (e.state == State.PENDING && e.attempts > 0) {
+                lines.add(String.join(";", "ATTEMPT", e.key, String.valueOf(e.attempts), String.valueOf(e.nextAttemptAt)));
+            }
+            if (e.state != State.PENDING) {
+                lines.add(String.join(";", e.state.name(), e.key, String.valueOf(e.finishedAt)));
+            }
+        }
+        try {
+            journal.close();
+            AtomicFiles.writeLines(journal.getFile().toPath(), lines);
+        } catch (IOException ex) {
+            throw new RuntimeException("Error compacting outbox " + journal.getFile().getName(), ex);
+        }
+        return Math.max(0, before - journal.length());
+    }
+
+    // ----- Metrics -----
+
+    /**
+     * Returns the number of messages waiting for delivery.
+     *
+     * @return queued messages
+     */
+    public synchronized int getPendingCount() {
+        return (int) entries.values().stream().filter(e -> e.state == State.PENDING).count();
+    }
+
+    /**
+     * Returns the number of messages delivered since the outbox was opened.
+     *
+     * @return messages delivered
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * Returns the number of failed delivery attempts since the outbox was opened.
+     *
+     * @return failed attempts
+     */
+    public long getFailedAttempts() {
+        return failedAttempts.get();
+    }
+
+    /**
+     * Returns the number of messages given up on since the outbox was opened.
+     *
+     * @return dead letters
+     */
+    public long getDeadLetterCount() {
+        return deadLetters.get();
+    }
+
+    private static String encode(String s) {
+        return Base64.getEncoder().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String s) {
+        return new String(Base64.getDecoder().decode(s), StandardCharsets.UTF_8);
+    }
+}
@@ -23,4 +23,19 @@ public interface EmailService {
      * @since 1.0
      */
     void sendEmail(String to, String message);
+
+    /**
+     * Sends an email identified by an idempotency key, reporting failure to the caller so
+     * that it can retry. Implementations may use the key to let the server recognise a
+     * message sent twice. By default the key is ignored.
+     *
+     * @param to             the recipient's email address
+     * @param message        the message content
+     * @param idempotencyKey key identifying the message
+     * @throws RuntimeException if the email could not be sent
+     * @since 1.0
+     */
+    default void sendEmail(String to, String message, String idempotencyKey) {
+        sendEmail(to, message);
+    }
 }
@@ -0,0 +1,360 @@
+package service;
+
+import domain.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers notifications to {@link Observer}s asynchronously, so that a caller such as a
+ * reminder run returns as soon as its notifications are queued instead of waiting for
+ * every mail round trip.
+ * <p>
+ * Every published notification is queued once per subscribed observer on a bounded
+ * queue, and a fixed number of workers take them off the queue and call the observers.
+ * Workers are platform daemon threads unless another {@link ThreadFactory} is given;
+ * they are started on the first publish. Virtual threads do not pay off here: observers
+ * such as the mail client block while holding monitors, which pins a virtual thread to
+ * its carrier, so deliveries would be serialized on as many carriers as there are
+ * cores.
+ * Notifications to the same observer may be delivered out of order. An observer that
+ * throws, even an {@link Error}, is counted as a failure and does not stop the worker.
+ * Once {@link #shutdown(Duration) shutdown} has started, publishing is refused; every
+ * notification accepted before is still delivered.
+ * </p>
+ *
+ * <p>When the queue is full the {@link Backpressure} policy decides what a publisher
+ * does. Queue depth, delivery counts and dispatch latency, measured from publishing to
+ * the observer returning, are exposed for monitoring.</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * EventBus bus = new EventBus(1024, 8, EventBus.Backpressure.BLOCK);
+ * bus.subscribe(new EmailNotifier(new RealEmailService()));
+ * bus.publish(user, "You have 1 overdue book(s).");
+ * ...
+ * bus.shutdown(Duration.ofSeconds(30));
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see Observer
+ * @see MultiMediaService
+ */
+public class EventBus {
+
+    /**
+     * What a publisher does when the queue is full.
+     */
+    public enum Backpressure {
+        /**
+         * Wait for room, up to the {@link #setPublishTimeout(Duration) publish timeout},
+         * then drop the notification; drops are counted by {@link #getDropped()}
+         */
+        BLOCK,
+        /** Drop the notification at once; drops are counted by {@link #getDropped()} */
+        DROP,
+        /** Deliver the notification on the publisher's thread */
+        CALLER_RUNS
+    }
+
+    /** How often an idle worker checks whether the bus was shut down */
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /** A notification waiting for one observer */
+    private record Event(Observer observer, User user, String message, long publishedAt) {}
+
+    private final BlockingQueue<Event> queue;
+    private final int workerCount;
+    private final Backpressure backpressure;
+    private final ThreadFactory threads;
+
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+
+    /** Worker threads, started on first publish */
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean shutdown;
+
+    /** Publishers between their shutdown check and queuing; workers wait for them */
+    private final AtomicInteger publishing = new AtomicInteger();
+    private volatile long publishTimeoutNanos = TimeUnit.SECONDS.toNanos(5);
+
+    /** Notifications queued or being delivered; {@link #awaitIdle} waits on its monitor */
+    private final AtomicLong pending = new AtomicLong();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /**
+     * Creates a bus with a queue of 1024 notifications delivered by 8 worker threads,
+     * blocking publishers while the queue is full.
+     */
+    public EventBus() {
+        this(1024, 8, Backpressure.BLOCK);
+    }
+
+    /**
+     * Creates a bus whose workers are platform daemon threads.
+     *
+     * @param capacity     maximum number of queued notifications
+     * @param workers      number of workers delivering notifications
+     * @param backpressure what publishers do when the queue is full
+     */
+    public EventBus(int capacity, int workers, Backpressure backpressure) {
+        this(capacity, workers, backpressure, Thread.ofPlatform().name("event-bus-", 0).daemon().factory());
+    }
+
+    /**
+     * Creates a bus.
+     *
+     * @param capacity     maximum number of queued notifications
+     * @param workers      number of workers delivering notifications
+     * @param backpressure what publishers do when the queue is full
+     * @param threads      creates the worker threads, e.g. {@code Thread.ofVirtual().factory()}
+     * @throws IllegalArgumentException if capacity or workers is not positive
+     */
+    public EventBus(int capacity, int workers, Backpressure backpressure, ThreadFactory threads) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        if (workers <= 0) throw new IllegalArgumentException("Workers must be positive");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workerCount = workers;
+        this.backpressure = backpressure;
+        this.threads = threads;
+    }
+
+    /**
+     * Sets how long a publisher waits for room under {@link Backpressure#BLOCK}.
+     *
+     * @param timeout the maximum wait
+     */
+    public void setPublishTimeout(Duration timeout) {
+        this.publishTimeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Subscribes an observer to all later notifications.
+     *
+     * @param observer the observer to add
+     */
+    public void subscribe(Observer observer) {
+        observers.add(observer);
+    }
+
+    /**
+     * Unsubscribes an observer. Notifications already queued for it are still delivered.
+     *
+     * @param observer the observer to remove
+     */
+    public void unsubscribe(Observer observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * Queues a notification for every subscribed observer and returns without waiting
+     * for delivery, unless the queue is full (see {@link Backpressure}).
+     *
+     * @param user    the user to notify
+     * @param message the message to send
+     * @throws IllegalStateException if the bus was shut down
+     */
+    public void publish(User user, String message) {
+        // announce the publish before checking, so workers cannot exit under it
+        publishing.incrementAndGet();
+        try {
+            if (shutdown) throw new IllegalStateException("Event bus is shut down");
+            startWorkers();
+            for (Observer observer : observers) {
+                Event event = new Event(observer, user, message, System.nanoTime());
+                published.incrementAndGet();
+                pending.incrementAndGet();
+                if (!enqueue(event)) {
+                    if (backpressure == Backpressure.CALLER_RUNS) {
+                        dispatch(event);
+                    } else {
+                        dropped.incrementAndGet();
+                        done();
+                    }
+                }
+            }
+        } finally {
+            publishing.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queues a batch of notifications, one message per user, for every subscribed observer.
+     *
+     * @param messages the message for each user
+     * @throws IllegalStateException if the bus was shut down
+     * @see #publish(User, String)
+     */
+    public void publishAll(Map<User, String> messages) {
+        for (Map.Entry<User, String> e : messages.entrySet()) publish(e.getKey(), e.getValue());
+    }
+
+    private boolean enqueue(Event event) {
+        if (backpressure != Backpressure.BLOCK) return queue.offer(event);
+        try {
+            return queue.offer(event, publishTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized void startWorkers() {
+        if (!workers.isEmpty()) return;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = threads.newThread(this::work);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    private void work() {
+        try {
+            while (!shutdown || publishing.get() > 0 || !queue.isEmpty()) {
+                Event event = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (event != null) dispatch(event);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch(Event event) {
+        try {
+            event.observer().notify(event.user(), event.message());
+            dispatched.incrementAndGet();
+        } catch (Throwable e) {
+            failed.incrementAndGet();
+        } finally {
+            long latency = System.nanoTime() - event.publishedAt();
+            latencyNanos.addAndGet(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            done();
+        }
+    }
+
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            synchronized (pending) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until every queued notification has been delivered.
+     *
+     * @param timeout the maximum wait
+     * @return true if the bus is idle, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (pending) {
+            while (pending.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(pending, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting notifications and lets the workers deliver what is queued.
+     *
+     * @param timeout the maximum time to wait for queued notifications to be delivered
+     * @return true if everything queued was delivered, false if the timeout elapsed first
+     */
+    public boolean shutdown(Duration timeout) {
+        shutdown = true;
+        try {
+            return awaitIdle(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of notifications waiting in the queue.
+     *
+     * @return current queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of notifications published, one per observer.
+     *
+     * @return notifications published
+     */
+    public long getPublished() {
+        return published.get();
+    }
+
+    /**
+     * Returns the number of notifications delivered to their observer.
+     *
+     * @return notifications delivered
+     */
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    /**
+     * Returns the number of notifications dropped because the queue was full, under
+     * {@link Backpressure#BLOCK} after the publish timeout elapsed.
+     *
+     * @return notifications dropped
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of notifications whose observer threw an exception.
+     *
+     * @return failed deliveries
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Returns the average time from publishing a notification to its observer returning.
+     *
+     * @return average dispatch latency, zero before the first delivery
+     */
+    public Duration getAverageDispatchLatency() {
+        long delivered = dispatched.get() + failed.get();
+        return delivered == 0 ? Duration.ZERO : Duration.ofNanos(latencyNanos.get() / delivered);
+    }
+
+    /**
+     * Returns the longest time from publishing a notification to its observer returning.
+     *
+     * @return longest dispatch latency
+     */
+    public Duration getMaxDispatchLatency() {
+        return Duration.ofNanos(maxLatencyNanos.get());
+    }
+}
@@ -0,0 +1,150 @@
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Detects changes made to data files by other processes.
+ * <p>
+ * A service records a fingerprint of its files after it loads or writes them, and
+ * asks {@link #hasChanged()} before serving from its cached state. The check costs
+ * one file-attribute lookup per file: a file whose modification time and size are
+ * unchanged is assumed unchanged. When only the modification time differs, files
+ * tracked with a content hash are hashed again, so touching or re-saving a file
+ * with identical content does not force a reload.
+ * </p>
+ *
+ * <p>All methods synchronize on the detector, so a service can make its own write and
+ * the matching {@link #track} call atomic with respect to {@link #hasChanged()} by
+ * holding the detector's monitor around both.</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * FileChangeDetector changes = new FileChangeDetector();
+ * changes.track(new File("data/books.txt"), true);
+ * ...
+ * if (changes.hasChanged()) reload();
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see MultiMediaService
+ * @see UserService
+ */
+public class FileChangeDetector {
+
+    /** Fingerprint of a file; a missing file has modification time and size -1 */
+    private record Fingerprint(long modified, long size, boolean hashed, long hash) {
+    }
+
+    private final Map<File, Fingerprint> fingerprints = new LinkedHashMap<>();
+
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong changesDetected = new AtomicLong();
+
+    /**
+     * Records the current state of a file, replacing any earlier fingerprint of it.
+     *
+     * @param file        the file to track
+     * @param hashContent whether to also hash the content, to tell real edits from
+     *                    changes of the modification time alone; not worth it for
+     *                    append-only files, whose size changes on every write
+     */
+    public synchronized void track(File file, boolean hashContent) {
+        fingerprints.put(file, fingerprint(file, hashContent));
+    }
+
+    /**
+     * Stops tracking all files.
+     */
+    public synchronized void clear() {
+        fingerprints.clear();
+    }
+
+    /**
+     * Tells whether any tracked file changed since it was last recorded.
+     *
+     * @return true if a tracked file was modified, replaced, created or deleted
+     */
+    public synchronized boolean hasChanged() {
+        checks.incrementAndGet();
+        for (Map.Entry<File, Fingerprint> e : fingerprints.entrySet()) {
+            Fingerprint old = e.getValue();
+            long[] attrs = attributes(e.getKey());
+            if (attrs[0] == old.modified() && attrs[1] == old.size()) continue;
+
+            if (attrs[1] == old.size() && old.hashed() && attrs[0] >= 0) {
+                Fingerprint now = fingerprint(e.getKey(), true);
+                if (now.hash() == old.hash()) {
+                    e.setValue(now);
+                    continue;
+                }
+            }
+            changesDetected.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private static Fingerprint fingerprint(File file, boolean hashContent) {
+        long[] attrs = attributes(file);
+        long hash = hashContent && attrs[0] >= 0 ? hash(file) : 0;
+        return new Fingerprint(attrs[0], attrs[1], hashContent, hash);
+    }
+
+    private static long[] attributes(File file) {
+        try {
+            BasicFileAttributes a = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return new long[] {a.lastModifiedTime().to(TimeUnit.NANOSECONDS), a.size()};
+        } catch (NoSuchFileException e) {
+            return new long[] {-1, -1};
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading attributes of " + file.getName(), e);
+        }
+    }
+
+    private static long hash(File file) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (ch.read(buf) >= 0) {
+                buf.flip();
+                crc.update(buf);
+                buf.clear();
+            }
+        } catch (NoSuchFileException e) {
+            return -1;
+        } catch (IOException e) {
+            throw new RuntimeException("Error hashing " + file.getName(), e);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Returns how many times {@link #hasChanged()} was called.
+     *
+     * @return number of checks
+     */
+    public long getChecks() {
+        return checks.get();
+    }
+
+    /**
+     * Returns how many checks found a changed file.
+     *
+     * @return number of detected changes
+     */
+    public long getChangesDetected() {
+        return changesDetected.get();
+    }
+}
@@ -0,0 +1,303 @@
+package service;
+
+import domain.Media;
+import domain.Money;
+import domain.User;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Assesses the fines for overdue media of several catalogs as a fork/join pipeline.
+ * <p>
+ * The catalogs are handled in parallel. For each one, the items due before today are
+ * found through the catalog's due-date index, and their fine-applied flags are claimed
+ * in one batch, so each fine is issued exactly once. The claimed items are then split
+ * into chunks, and each chunk computes its fines as of the day the assessment started
+ * through the catalog's {@link FineStrategy} and sums them per borrower. Partial
+ * results are merged as the sub-tasks join. All fines are charged in a single
+ * {@link UserService#applyFines(List)} commit, each with the identifier of its item as
+ * reference. If computing or charging the fines fails, the claims are released again,
+ * so the next assessment issues the fines instead of losing them. Receipts are written
+ * last, one after the other on the calling thread, so they do not delay the commit and
+ * their blocking file I/O stays off the pool.
+ * </p>
+ *
+ * <p>Reading and claiming the overdue items waits for storage locks and forced writes.
+ * That work runs as a {@link ForkJoinPool.ManagedBlocker}, so the pool, by default the
+ * common pool shared by the whole process, can start a spare thread while it
+ * blocks.</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * FineAssessment assessment = new FineAssessment();
+ * FineAssessment.Result result = assessment.assess(userService, bookService, cdService);
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see domain.Librarian#checkOverdueAndIssueFines(UserService)
+ * @see MultiMediaService#tryMarkFinesApplied(List)
+ */
+public class FineAssessment {
+
+    /** Claimed items a single sub-task computes fines for */
+    private static final int CHUNK_SIZE = 256;
+
+    /**
+     * A fine issued for an overdue item.
+     *
+     * @param media       the overdue item
+     * @param borrower    the user charged
+     * @param amount      the fine amount
+     * @param overdueDays days the item is overdue
+     */
+    public record Fine(Media media, User borrower, int amount, long overdueDays) {}
+
+    /**
+     * Outcome of an assessment.
+     *
+     * @param fines        fines issued, catalog by catalog, earliest due date first
+     * @param finesById    total fine in agorot per user ID
+     * @param usersCharged number of users whose balance was charged
+     */
+    public record Result(List<Fine> fines, Map<String, Long> finesById, int usersCharged) {}
+
+    /**
+     * Fines of a part of a catalog, with the charges to apply, their totals per user ID,
+     * and the actions releasing the claims of the fines should they not be charged
+     */
+    private record Partial(List<Fine> fines, List<UserService.Charge> charges, Map<String, Long> finesById,
+                           List<Runnable> releases) {
+
+        Partial() {
+            this(new ArrayList<>(), new ArrayList<>(), new LinkedHashMap<>(), new ArrayList<>());
+        }
+
+        Partial merge(Partial later) {
+            fines.addAll(later.fines);
+            charges.addAll(later.charges);
+            later.finesById.forEach((id, amount) -> finesById.merge(id, amount, Long::sum));
+            releases.addAll(later.releases);
+            return this;
+        }
+
+        /** Releases the claims, keeping failures as suppressed exceptions of the cause */
+        void release(RuntimeException cause) {
+            for (Runnable release : releases) {
+                try {
+                    release.run();
+                } catch (RuntimeException e) {
+                    cause.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    private volatile boolean receipts = true;
+
+    /**
+     * Creates an assessment running on the common fork/join pool.
+     */
+    public FineAssessment() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an assessment running on the given pool.
+     *
+     * @param pool the pool running the stages
+     */
+    public FineAssessment(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets whether a PDF receipt is generated for every fine issued.
+     *
+     * @param receipts true to generate receipts, the default
+     */
+    public void setReceipts(boolean receipts) {
+        this.receipts = receipts;
+    }
+
+    /**
+     * Issues the fines for all overdue media of the given catalogs that have not
+     * been fined yet, and charges them to the borrowers.
+     *
+     * @param userService the service charging the users
+     * @param catalogs    the media services to assess
+     * @return the fines issued
+     */
+    @SafeVarargs
+    public final Result assess(UserService userService, MultiMediaService<? extends Media>... catalogs) {
+        LocalDate today = LocalDate.now();
+        List<ForkJoinTask<Partial>> tasks = new ArrayList<>();
+        for (MultiMediaService<? extends Media> catalog : catalogs) tasks.add(catalogTask(catalog, today));
+
+        Partial all = pool.invoke(new RecursiveTask<Partial>() {
+            @Override
+            protected Partial compute() {
+                for (ForkJoinTask<Partial> task : tasks) task.fork();
+                Partial merged = new Partial();
+                RuntimeException failure = null;
+                for (ForkJoinTask<Partial> task : tasks) {
+                    try {
+                        merged.merge(task.join());
+                    } catch (RuntimeException e) {
+                        if (failure == null) failure = e;
+                        else failure.addSuppressed(e);
+                    }
+                }
+                if (failure != null) {
+                    // another catalog failed: none of the fines is charged
+                    RuntimeException cause = failure;
+                    blocking(() -> {
+                        merged.release(cause);
+                        return null;
+                    });
+                    throw failure;
+                }
+                return merged;
+            }
+        });
+
+        int charged;
+        try {
+            charged = all.charges().isEmpty() ? 0 : userService.applyFines(all.charges());
+        } catch (RuntimeException e) {
+            all.release(e);
+            throw e;
+        }
+        if (receipts) {
+            // blocking file I/O, kept off the pool
+            for (Fine f : all.fines()) ReportFine.generateFineReceipt(f.borrower(), f.amount(), false, f.media());
+        }
+        return new Result(all.fines(), all.finesById(), charged);
+    }
+
+    private static <T extends Media> CatalogTask<T> catalogTask(MultiMediaService<T> catalog, LocalDate today) {
+        return new CatalogTask<>(catalog, today);
+    }
+
+    /**
+     * Runs blocking work on the pool as a {@link ForkJoinPool.ManagedBlocker}, so the
+     * pool can compensate with a spare thread while it waits.
+     *
+     * @param work the blocking work
+     * @return the result of the work
+     */
+    private static <R> R blocking(Supplier<R> work) {
+        class Call implements ForkJoinPool.ManagedBlocker {
+            R result;
+            boolean done;
+
+            @Override
+            public boolean block() {
+                result = work.get();
+                done = true;
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return done;
+            }
+        }
+        Call call = new Call();
+        try {
+            ForkJoinPool.managedBlock(call);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while assessing fines", e);
+        }
+        return call.result;
+    }
+
+    /** Detects and claims the overdue items of a catalog, then computes their fines in chunks */
+    @SuppressWarnings("serial") // tasks are never serialized
+    private static final class CatalogTask<T extends Media> extends RecursiveTask<Partial> {
+        private final MultiMediaService<T> catalog;
+        private final LocalDate today;
+
+        CatalogTask(MultiMediaService<T> catalog, LocalDate today) {
+            this.catalog = catalog;
+            this.today = today;
+        }
+
+        @Override
+        protected Partial compute() {
+            List<T> due = new ArrayList<>();
+            for (T media : blocking(catalog::getOverdueMedia)) {
+                if (media.getBorrowedBy() == null || media.getDueDate() == null || media.getFineApplied() > 0) continue;
+                if (ChronoUnit.DAYS.between(media.getDueDate(), today) > 0) due.add(media);
+            }
+            if (due.isEmpty()) return new Partial();
+            // claim first, so no concurrent check, here or at another desk, issues them twice
+            List<T> claimed = blocking(() -> catalog.tryMarkFinesApplied(due));
+            Runnable release = () -> catalog.releaseFineClaims(claimed);
+            Partial partial;
+            try {
+                partial = new ChunkTask<>(catalog, claimed, 0, claimed.size(), today).compute();
+            } catch (RuntimeException e) {
+                blocking(() -> {
+                    new Partial(List.of(), List.of(), Map.of(), List.of(release)).release(e);
+                    return null;
+                });
+                throw e;
+            }
+            partial.releases().add(release);
+            return partial;
+        }
+    }
+
+    /** Computes the fines of a range of claimed items, splitting it until it is small */
+    @SuppressWarnings("serial") // tasks are never serialized
+    private static final class ChunkTask<T extends Media> extends RecursiveTask<Partial> {
+        private final MultiMediaService<T> catalog;
+        private final List<T> claimed;
+        private final int from;
+        private final int to;
+        private final LocalDate today;
+
+        ChunkTask(MultiMediaService<T> catalog, List<T> claimed, int from, int to, LocalDate today) {
+            this.catalog = catalog;
+            this.claimed = claimed;
+            this.from = from;
+            this.to = to;
+            this.today = today;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from > CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                ChunkTask<T> later = new ChunkTask<>(catalog, claimed, mid, to, today);
+                later.fork();
+                Partial earlier = new ChunkTask<>(catalog, claimed, from, mid, today).compute();
+                return earlier.merge(later.join());
+            }
+            Partial partial = new Partial();
+            for (T media : claimed.subList(from, to)) {
+                User borrower = media.getBorrowedBy();
+                if (borrower == null) continue;
+                int amount = catalog.calculateFine(media, today);
+                partial.fines().add(new Fine(media, borrower, amount,
+                        ChronoUnit.DAYS.between(media.getDueDate(), today)));
+                long amountMinor = amount * Money.MINOR_PER_MAJOR;
+                partial.charges().add(new UserService.Charge(borrower.getId(), amountMinor, catalog.identifierOf(media)));
+                partial.finesById().merge(borrower.getId(), amountMinor, Long::sum);
+            }
+            return partial;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package service;
+
+import domain.Money;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only history of every fine event: fines issued, paid and waived.
+ * <p>
+ * Each event is appended to a {@link MutationLog} and never changed. In memory, events
+ * are kept per user in time order, along with the user's running balance after the
+ * latest event, which is computed from the events as they are recorded: fines issued
+ * add to it, payments and waivers subtract from it. Reading a balance is
+ * therefore a single lookup, and a statement for a period is a binary search for its
+ * start followed by a scan of the events in it. No receipts need to be parsed.
+ * </p>
+ *
+ * <p>Events carry the balance they result in, as known to the caller. The first event
+ * of a user establishes the balance the user had before it, so the ledger agrees with
+ * the user records even for balances older than the ledger itself; after that, an event
+ * whose stated balance does not follow from the previous balance and its amount, e.g.
+ * because a crash kept a balance change from being saved, is counted as a
+ * {@link #getDiscrepancies() discrepancy} and reported on the console. Times
+ * have millisecond precision and never decrease per user: an event is not dated before
+ * the user's previous one, even if the clock steps back. Events appended by other
+ * processes are detected through a {@link FileChangeDetector} and picked up by
+ * reloading the log; processes coordinate through an {@link InterProcessLock} on the
+ * ledger file.</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * FineLedger ledger = new FineLedger("data/fines.ledger");
+ * ledger.record(FineLedger.Type.ISSUED, "U1", 1500, 1500, "ISBN123");
+ * ledger.record(List.of(new FineLedger.Event(FineLedger.Type.ISSUED, "U1", 300, 1800, "CD7"),
+ *         new FineLedger.Event(FineLedger.Type.ISSUED, "U2", 300, 300, "CD7")));
+ * ledger.sync();
+ * long balance = ledger.balance("U1");
+ * List&lt;FineLedger.Entry&gt; march = ledger.statement("U1", from, to);
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see UserService#setLedger(FineLedger)
+ */
+@SuppressWarnings("try") // lock handles only scope the held lock
+public class FineLedger {
+
+    /**
+     * Kind of fine event.
+     */
+    public enum Type {
+        /** A fine was charged */
+        ISSUED,
+        /** The user paid part or all of their balance */
+        PAID,
+        /** Part or all of the balance was written off */
+        WAIVED
+    }
+
+    /**
+     * A fine event.
+     *
+     * @param type         the kind of event
+     * @param userId       the user's ID
+     * @param at           when the event was recorded
+     * @param amountMinor  the amount of the event in agorot
+     * @param balanceMinor the user's balance after the event in agorot
+     * @param reference    what the event refers to, e.g. a media identifier, or empty
+     */
+    public record Entry(Type type, String userId, Instant at, long amountMinor, long balanceMinor,
+                        String reference) {}
+
+    /**
+     * A fine event to record, before the ledger dates it.
+     *
+     * @param type         the kind of event
+     * @param userId       the user's ID
+     * @param amountMinor  the amount of the event in agorot
+     * @param balanceMinor the user's balance after the event in agorot
+     * @param reference    what the event refers to, or null
+     */
+    public record Event(Type type, String userId, long amountMinor, long balanceMinor, String reference) {}
+
+    /** Events and running balance of one user */
+    private static final class Account {
+        final List<Entry> entries = new ArrayList<>();
+        long balance;
+
+        /**
+         * Adds an event and moves the balance by its amount. The first event of the
+         * account also establishes the balance before it.
+         *
+         * @return whether the balance the event states is the one computed
+         */
+        boolean add(Entry entry) {
+            long change = entry.type() == Type.ISSUED ? entry.amountMinor() : -entry.amountMinor();
+            if (entries.isEmpty()) balance = entry.balanceMinor() - change;
+            entries.add(entry);
+            balance += change;
+            return balance == entry.balanceMinor();
+        }
+
+        /** Index of the first event at or after the given time */
+        int firstAtOrAfter(Instant time) {
+            int lo = 0;
+            int hi = entries.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (entries.get(mid).at().isBefore(time)) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    private final MutationLog log;
+    private final Clock clock;
+
+    /** Cross-process lock of the ledger file: loads hold it shared, appends exclusively */
+    private final InterProcessLock fileLock;
+
+    /** Detects events appended by other processes */
+    private final FileChangeDetector changes = new FileChangeDetector();
+
+    /** Accounts by user ID, null until loaded */
+    private Map<String, Account> accounts;
+
+    /** Events whose stated balance disagrees with the computed one */
+    private long discrepancies;
+
+    /**
+     * Creates a ledger stored in the given file.
+     *
+     * @param filePath the ledger file
+     */
+    public FineLedger(String filePath) {
+        this(new MutationLog(filePath), Clock.systemUTC());
+    }
+
+    /**
+     * Creates a ledger over a log, dating events with the given clock.
+     *
+     * @param log   the log storing the events
+     * @param clock the clock dating new events
+     */
+    public FineLedger(MutationLog log, Clock clock) {
+        this.log = log;
+        this.clock = clock;
+        this.fileLock = InterProcessLock.forFile(log.getFile());
+    }
+
+    /**
+     * Records an event. The event is written to the log, but is only durable once
+     * {@link #sync()} returns, so several events can share one flush.
+     *
+     * @param type         the kind of event
+     * @param userId       the user's ID
+     * @param amountMinor  the amount of the event in agorot
+     * @param balanceMinor the user's balance after the event in agorot
+     * @param reference    what the event refers to, or null
+     * @return the recorded event
+     * @throws IllegalArgumentException if the user ID is missing or the amount negative
+     */
+    public Entry record(Type type, String userId, long amountMinor, long balanceMinor, String reference) {
+        return record(List.of(new Event(type, userId, amountMinor, balanceMinor, reference))).get(0);
+    }
+
+    /**
+     * Records several events in order, taking the lock once and writing them to the log
+     * in a single write, e.g. a day's fines. Like {@link #record(Type, String, long, long, String)},
+     * the events are durable once {@link #sync()} returns.
+     *
+     * @param events the events to record, in order
+     * @return the recorded events
+     * @throws IllegalArgumentException if a user ID is missing or an amount negative;
+     *                                  nothing is recorded then
+     */
+    public synchronized List<Entry> record(List<Event> events) {
+        for (Event e : events) {
+            if (e.userId() == null || e.userId().isEmpty()) throw new IllegalArgumentException("User ID must not be empty");
+            if (e.amountMinor() < 0) throw new IllegalArgumentException("Amount must not be negative");
+        }
+        if (events.isEmpty()) return List.of();
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            return append(events);
+        }
+    }
+
+    private List<Entry> append(List<Event> events) {
+        Map<String, Account> byUser = accounts();
+        Instant now = clock.instant().truncatedTo(ChronoUnit.MILLIS);
+        List<Entry> entries = new ArrayList<>(events.size());
+        List<String[]> records = new ArrayList<>(events.size());
+        for (Event e : events) {
+            Instant at = now;
+            Account account = byUser.get(e.userId());
+            if (account != null && !account.entries.isEmpty()) {
+                Instant last = account.entries.get(account.entries.size() - 1).at();
+                if (at.isBefore(last)) at = last;
+            }
+            // the log has no escaping: keep references on one field
+            String ref = e.reference() == null ? "" : e.reference().replaceAll("[;\\r\\n]", " ");
+            Entry entry = new Entry(e.type(), e.userId(), at, e.amountMinor(), e.balanceMinor(), ref);
+            entries.add(entry);
+            records.add(encode(entry));
+        }
+        // atomic with respect to change checks, so our own append never looks external
+        synchronized (changes) {
+            log.write(records);
+            changes.track(log.getFile(), false);
+        }
+        for (Entry entry : entries) {
+            Account account = byUser.computeIfAbsent(entry.userId(), id -> new Account());
+            if (!account.add(entry)) {
+                discrepancies++;
+                System.err.println("Fine ledger: " + entry.type() + " for " + entry.userId() + " states balance "
+                        + Money.format(entry.balanceMinor()) + ", events account for " + Money.format(account.balance));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Waits until every event recorded so far is on disk.
+     */
+    public void sync() {
+        log.sync();
+    }
+
+    /**
+     * Returns a user's balance after their latest event.
+     *
+     * @param userId the user's ID
+     * @return the balance in agorot, 0 if the user has no events
+     */
+    public synchronized long balance(String userId) {
+        Account account = accounts().get(userId);
+        return account != null ? account.balance : 0;
+    }
+
+    /**
+     * Returns how many events state a balance that does not follow from the user's
+     * previous events, e.g. to alert that the ledger and the user records need to be
+     * reconciled.
+     *
+     * @return number of events with a mismatched balance
+     */
+    public synchronized long getDiscrepancies() {
+        accounts();
+        return discrepancies;
+    }
+
+    /**
+     * Returns a user's events in a period, oldest first.
+     *
+     * @param userId the user's ID
+     * @param from   start of the period, inclusive
+     * @param to     end of the period, exclusive
+     * @return the events recorded in the period
+     */
+    public synchronized List<Entry> statement(String userId, Instant from, Instant to) {
+        Account account = accounts().get(userId);
+        if (account == null) return List.of();
+        List<Entry> result = new ArrayList<>();
+        for (int i = account.firstAtOrAfter(from); i < account.entries.size(); i++) {
+            Entry entry = account.entries.get(i);
+            if (!entry.at().isBefore(to)) break;
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Returns all of a user's events, oldest first.
+     *
+     * @param userId the user's ID
+     * @return the user's events
+     */
+    public synchronized List<Entry> statement(String userId) {
+        Account account = accounts().get(userId);
+        return account != null ? List.copyOf(account.entries) : List.of();
+    }
+
+    private Map<String, Account> accounts() {
+        if (accounts == null || changes.hasChanged()) {
+            // no other process appends while the log is read, so a torn last line is a crash
+            try (InterProcessLock.Held held = fileLock.shared()) {
+                synchronized (changes) {
+                    changes.clear();
+                    changes.track(log.getFile(), false);
+                    discrepancies = 0;
+                    accounts = load();
+                }
+            }
+        }
+        return accounts;
+    }
+
+    private Map<String, Account> load() {
+        Map<String, Account> loaded = new HashMap<>();
+        log.replay(r -> {
+            Type type;
+            try {
+                type = Type.valueOf(r[0]);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Warning: unknown ledger record " + r[0]);
+                return;
+            }
+            Entry entry = new Entry(type, r[1], Instant.ofEpochMilli(Long.parseLong(r[2])),
+                    Money.parse(r[3]), Money.parse(r[4]), r[5]);
+            if (!loaded.computeIfAbsent(entry.userId(), id -> new Account()).add(entry)) discrepancies++;
+        });
+        return loaded;
+    }
+
+    private static String[] encode(Entry entry) {
+        return new String[] {entry.type().name(), entry.userId(), Long.toString(entry.at().toEpochMilli()),
+                Money.format(entry.amountMinor()), Money.format(entry.balanceMinor()), entry.reference()};
+    }
+}
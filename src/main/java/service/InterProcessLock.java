@@ -0,0 +1,260 @@
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coordinates access to a data file between processes sharing the {@code data/}
+ * directory, e.g. several desks each running their own {@code LibrarySystem}.
+ * <p>
+ * The lock is a {@link FileChannel#lock} on a sidecar file next to the data file
+ * ({@code books.txt.lock} for {@code books.txt}); the data file itself is replaced by
+ * atomic renames, so a lock held on it would not outlive the next write. Readers take
+ * the lock shared and writers exclusive. Within one process the lock is shared by all
+ * threads and all services using the same data file, whose mutual consistency the
+ * services ensure themselves: a thread asking for shared access while the process holds
+ * the lock in either mode enters at once, and so does a thread asking for exclusive
+ * access while the process already holds it exclusively. Exclusive access only waits
+ * for readers of this process to leave and for other processes to release the file.
+ * </p>
+ *
+ * <p>Every wait is bounded by {@link #setTimeout(Duration) the timeout}; a caller that
+ * cannot get the lock in time gets a {@link LockTimeoutException} rather than blocking
+ * the desk forever. Waiters park on a {@link ReentrantLock} condition rather than an
+ * object monitor, so a virtual thread waiting for the lock releases its carrier.
+ * Wait times are measured and exposed for monitoring.</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * InterProcessLock lock = InterProcessLock.forFile(new File("data/books.txt"));
+ * try (InterProcessLock.Held held = lock.exclusive()) {
+ *     ...
+ * }
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see MultiMediaService
+ * @see UserService
+ */
+public final class InterProcessLock {
+
+    private static final Map<Path, InterProcessLock> LOCKS = new ConcurrentHashMap<>();
+
+    /** Pause between attempts while another process holds the file */
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    /**
+     * Access to the file held by the caller; closing it releases the access.
+     */
+    @FunctionalInterface
+    public interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final Path lockFile;
+
+    private volatile long timeoutNanos = TimeUnit.SECONDS.toNanos(10);
+
+    /** Guards the state below; waiters wait on {@link #changed} */
+    private final ReentrantLock state = new ReentrantLock();
+    private final Condition changed = state.newCondition();
+
+    private FileChannel channel;
+    private FileLock osLock;
+    private int sharedHolders;
+    private int exclusiveHolders;
+    private int waitingExclusive;
+
+    /** Whether a thread is waiting for the lock file, holding no lock yet */
+    private boolean locking;
+
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private InterProcessLock(Path lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    /**
+     * Returns the lock guarding a data file. Every caller in this process gets the
+     * same instance for the same file.
+     *
+     * @param dataFile the data file to guard
+     * @return the lock of the file
+     */
+    public static InterProcessLock forFile(File dataFile) {
+        Path lockFile = Path.of(dataFile.getPath() + ".lock").toAbsolutePath().normalize();
+        return LOCKS.computeIfAbsent(lockFile, InterProcessLock::new);
+    }
+
+    /**
+     * Sets how long a caller waits for the lock before giving up.
+     *
+     * @param timeout the maximum wait
+     */
+    public void setTimeout(Duration timeout) {
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Acquires shared access, for reading the data file.
+     *
+     * @return the held access, to be closed when done
+     * @throws LockTimeoutException if the lock cannot be acquired within the timeout
+     */
+    public Held shared() {
+        acquire(false);
+        return () -> release(false);
+    }
+
+    /**
+     * Acquires exclusive access, for a read-modify-write of the data file.
+     *
+     * @return the held access, to be closed when done
+     * @throws LockTimeoutException if the lock cannot be acquired within the timeout
+     */
+    public Held exclusive() {
+        acquire(true);
+        return () -> release(true);
+    }
+
+    private void acquire(boolean exclusive) {
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        state.lock();
+        try {
+            if (exclusive) {
+                // readers of this process hold the file shared; let them finish first
+                waitingExclusive++;
+                try {
+                    while (exclusiveHolders == 0 && (sharedHolders > 0 || locking)) awaitUntil(deadline);
+                } finally {
+                    waitingExclusive--;
+                }
+                if (exclusiveHolders == 0) lockFile(false, deadline);
+                exclusiveHolders++;
+            } else {
+                // new readers give way to a waiting writer
+                while (exclusiveHolders == 0 && (locking || waitingExclusive > 0)) awaitUntil(deadline);
+                if (exclusiveHolders == 0 && sharedHolders == 0) lockFile(true, deadline);
+                sharedHolders++;
+            }
+        } finally {
+            state.unlock();
+            long waited = System.nanoTime() - start;
+            waitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+        acquisitions.incrementAndGet();
+    }
+
+    private void release(boolean exclusive) {
+        state.lock();
+        try {
+            if (exclusive) exclusiveHolders--;
+            else sharedHolders--;
+            if (exclusiveHolders == 0 && sharedHolders == 0) {
+                try {
+                    osLock.release();
+                } catch (IOException e) {
+                    throw new RuntimeException("Error releasing " + lockFile.getFileName(), e);
+                } finally {
+                    osLock = null;
+                }
+            }
+            changed.signalAll();
+        } finally {
+            state.unlock();
+        }
+    }
+
+    private void awaitUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) throw timedOut();
+        try {
+            changed.awaitNanos(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + lockFile.getFileName(), e);
+        }
+    }
+
+    /** Takes the lock file, polling while another process holds it. */
+    private void lockFile(boolean shared, long deadline) {
+        locking = true;
+        try {
+            if (channel == null || !channel.isOpen()) {
+                channel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            while ((osLock = channel.tryLock(0, Long.MAX_VALUE, shared)) == null) {
+                if (System.nanoTime() - deadline >= 0) throw timedOut();
+                // waiting threads of this process keep waiting on the condition
+                changed.awaitNanos(POLL_NANOS);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error locking " + lockFile.getFileName(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + lockFile.getFileName(), e);
+        } finally {
+            locking = false;
+            changed.signalAll();
+        }
+    }
+
+    private LockTimeoutException timedOut() {
+        timeouts.incrementAndGet();
+        return new LockTimeoutException("Timed out waiting for lock on " + lockFile.getFileName());
+    }
+
+    /**
+     * Returns how many times the lock was acquired.
+     *
+     * @return number of acquisitions
+     */
+    public long getAcquisitions() {
+        return acquisitions.get();
+    }
+
+    /**
+     * Returns the total time callers spent waiting for the lock, timeouts included.
+     *
+     * @return total wait time
+     */
+    public Duration getTotalWait() {
+        return Duration.ofNanos(waitNanos.get());
+    }
+
+    /**
+     * Returns the longest time a single caller waited for the lock.
+     *
+     * @return longest wait
+     */
+    public Duration getMaxWait() {
+        return Duration.ofNanos(maxWaitNanos.get());
+    }
+
+    /**
+     * Returns how many callers gave up waiting for the lock.
+     *
+     * @return number of timeouts
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+}
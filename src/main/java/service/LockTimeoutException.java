@@ -0,0 +1,23 @@
+package service;
+
+/**
+ * Thrown when an {@link InterProcessLock} cannot be acquired within its timeout,
+ * typically because another desk holds the data file. The operation did not take
+ * place and can be retried.
+ *
+ * @since 1.0
+ * @see InterProcessLock#setTimeout(java.time.Duration)
+ */
+public class LockTimeoutException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates an exception with the given message.
+     *
+     * @param message the detail message
+     */
+    public LockTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,119 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only, memory-mapped view of a semicolon-delimited data file.
+ * <p>
+ * The file is mapped with {@link FileChannel#map} and its records are decoded straight
+ * from the mapping, so nothing is copied through a {@code FileReader} and the pages are
+ * shared with the OS page cache instead of being duplicated on the heap: only the pages
+ * a scan or lookup actually touches are read in. An index of record offsets is built on
+ * first random access, so a single record can be decoded without scanning the ones
+ * before it.
+ * </p>
+ *
+ * <p>Files must be smaller than 2 GB, the limit of a single mapping.</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * MappedRecordFile file = MappedRecordFile.open(Path.of("data/books.txt"));
+ * try (RecordReader r = file.reader()) {
+ *     while (r.next()) { ... }
+ * }
+ * RecordReader tenth = file.record(9);
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see RecordReader
+ * @see MultiMediaService#setMappedReads(boolean)
+ */
+public final class MappedRecordFile {
+
+    private final MappedByteBuffer mapping;
+
+    /** Start offset of every record, null until first random access */
+    private int[] offsets;
+    private int count;
+
+    private MappedRecordFile(MappedByteBuffer mapping) {
+        this.mapping = mapping;
+    }
+
+    /**
+     * Maps the given file read-only. The mapping stays valid after the file is
+     * replaced, since the old file is only unlinked.
+     *
+     * @param file the file to map
+     * @return the mapped file
+     * @throws IOException if the file cannot be mapped or is 2 GB or larger
+     */
+    public static MappedRecordFile open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size >= Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + file + " (" + size + " bytes)");
+            }
+            return new MappedRecordFile(ch.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Returns a reader positioned at the first record.
+     *
+     * @return a reader over all records
+     */
+    public RecordReader reader() {
+        return new RecordReader(mapping.duplicate());
+    }
+
+    /**
+     * Returns the number of records (lines) in the file.
+     *
+     * @return record count
+     */
+    public synchronized int recordCount() {
+        buildIndex();
+        return count;
+    }
+
+    /**
+     * Returns a reader over a single record; call {@link RecordReader#next()} once to decode it.
+     *
+     * @param index zero-based record index
+     * @return a reader over that record only
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public synchronized RecordReader record(int index) {
+        buildIndex();
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + count);
+        }
+        int end = index + 1 < count ? offsets[index + 1] : mapping.limit();
+        ByteBuffer slice = mapping.duplicate();
+        slice.limit(end).position(offsets[index]);
+        return new RecordReader(slice);
+    }
+
+    private void buildIndex() {
+        if (offsets != null) return;
+        int[] starts = new int[1024];
+        int n = 0;
+        int size = mapping.limit();
+        int i = 0;
+        while (i < size) {
+            if (n == starts.length) starts = Arrays.copyOf(starts, n * 2);
+            starts[n++] = i;
+            while (i < size && mapping.get(i) != '\n' && mapping.get(i) != '\r') i++;
+            if (i < size && mapping.get(i++) == '\r' && i < size && mapping.get(i) == '\n') i++;
+        }
+        offsets = starts;
+        count = n;
+    }
+}
@@ -4,48 +4,818 @@ import domain.Book;
 import domain.Media;
 import domain.User;
 
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Abstract base class for managing multiple types of media in the library.
  * Implements {@link MediaService} and provides common functionality such as:
  * <ul>
  *     <li>Fine calculation</li>
- *     <li>Observer notifications</li>
+ *     <li>Asynchronous observer notifications through an {@link EventBus}</li>
  *     <li>User borrowing checks</li>
  *     <li>Returning all media for a user</li>
  *     <li>Retrieving overdue media</li>
  * </ul>
  *
- * <p>Subclasses must implement methods for reading and writing media to persistent storage.</p>
+ * <p>Subclasses must implement methods for reading and writing media to persistent storage.
+ * The catalog is loaded once, on first use, and kept resident; all reads are served from
+ * memory and every mutation is written through to storage. By default a mutation rewrites
+ * the whole data file via {@link #writeToFile(List)}; when a {@link MutationLog} is set with
+ * {@link #setJournal(MutationLog)}, borrows, returns and applied fines are appended to the
+ * journal instead and replayed over the data file on load.
+ * The data file can be replaced by a compact {@link BinarySnapshot} with
+ * {@link #setBinarySnapshot(File)}.
+ * A primary-key index maps each identifier (see {@link #identifierOf(Media)}) to its
+ * record, so duplicate checks and lookups run in constant time, and an
+ * {@link AvailabilityBitmap} tracks which items are on loan, so availability queries
+ * and loan counts scan bits rather than every item. A {@link DueDateIndex} orders the
+ * loaned items by due date, so finding the overdue ones is a range query.</p>
+ *
+ * <p>Other processes may change the storage files, e.g. a second console instance.
+ * Before serving from the resident catalog the service checks the modification time
+ * and size of the data file and journal (see {@link FileChangeDetector}) and reloads
+ * only when one of them was changed by someone else. Processes sharing the files
+ * coordinate through an {@link InterProcessLock} on the data file: loads hold it shared,
+ * and every write holds it exclusively from the freshness check through the write, so
+ * a transition always validates the latest state and no desk overwrites another's
+ * update.</p>
+ *
+ * <p>The service is thread-safe. Availability transitions (borrow, return, applied fine)
+ * are optimistic: a writer reads the item's {@link Media#getVersion() version stamp},
+ * validates the item, and commits by compare-and-set against that version; if another
+ * writer got there first it counts a conflict and retries on the fresh state. Transitions
+ * are linearizable per item, transitions on different items never wait for each other,
+ * and readers never block. A transition persists its journal record before publishing the
+ * new version, so the journal order matches the order of the transitions. Structural
+ * changes (loading, adding items, full writes) are synchronized on the service; a writer
+ * holding an item's change may take the service lock, never the other way round. The
+ * catalog is a copy-on-write list, so it can be iterated without locking. Journal records
+ * are flushed to disk once the change is published (see {@link #awaitDurable()}), so
+ * concurrent mutations are made durable by a shared flush. {@link #compact()} only holds the service lock while it copies the catalog, so a
+ * background {@link CompactionService} can fold the journal into a new snapshot while
+ * the service keeps serving requests.</p>
  *
  * @param <T> type of media managed by this service (e.g., {@link Book})
  * @since 1.0
  * @see MediaService
  */
+@SuppressWarnings("try") // lock handles only scope the held lock
 public abstract class MultiMediaService<T extends Media>
-        implements MediaService<T> {
+        implements MediaService<T>, Compactable {
 
     /** Strategy for calculating fines */
     protected FineStrategy fineStrategy;
 
-    /** Observers to notify about overdue items */
-    protected List<Observer> observers = new ArrayList<>();
+    /** Delivers notifications to the observers off the caller's thread */
+    private volatile EventBus events = new EventBus();
 
     /** Service for managing users */
     protected UserService userService;
 
+    /** Resident copy of the catalog, null until first loaded; copy-on-write so it can be iterated without locking */
+    private volatile List<T> catalog;
+
+    /** Primary-key index over the resident catalog, replaced on every load */
+    private volatile Map<String, T> index = new ConcurrentHashMap<>();
+
+    /** Loan bits of the resident catalog, indexed by catalog position; replaced with the catalog */
+    private AvailabilityBitmap loans = new AvailabilityBitmap();
+
+    /** Items of the resident catalog ordered by due date; replaced with the catalog */
+    private DueDateIndex dueDates = new DueDateIndex();
+
+    /** Cross-process lock of the storage files, created on first use */
+    private volatile InterProcessLock fileLock;
+
+    /** Compare-and-set attempts that lost to a concurrent transition and were retried */
+    private final AtomicLong writeConflicts = new AtomicLong();
+
+    /** Journal for single-record mutations, null to rewrite the data file instead */
+    private volatile MutationLog journal;
+
+    /** Whether the data file is read through a memory mapping */
+    private boolean mappedReads;
+
+    /** Binary snapshot replacing the text data file as storage, null to use the text file */
+    private File binarySnapshot;
+
+    /** Detects changes to the storage files made by other processes */
+    private final FileChangeDetector changes = new FileChangeDetector();
+
+    /** Serializes replacements of the data file */
+    private final Object snapshotLock = new Object();
+
+    /** Incremented by every full write, so a compaction can tell its snapshot is stale */
+    private long snapshotGeneration;
+
     /**
      * Sets the {@link UserService} instance for this media service.
+     * If a different service is set after the catalog was loaded, the catalog is
+     * loaded again on next use so borrowers are resolved against the new service.
      *
      * @param userService the user service
      */
     public void setUserService(UserService userService) {
+        if (this.userService != userService) catalog = null;
         this.userService = userService;
     }
 
+    /**
+     * Enables journaled persistence. Borrows, returns and applied fines are then
+     * appended to the journal rather than rewriting the data file, and the journal
+     * is replayed over the data file whenever the catalog is loaded.
+     *
+     * @param journal the journal, or null to rewrite the data file on every change
+     */
+    public synchronized void setJournal(MutationLog journal) {
+        if (this.journal != journal) catalog = null;
+        this.journal = journal;
+    }
+
+    /**
+     * Selects how the data file is read when the catalog is loaded. With mapped reads
+     * the file is decoded straight from a read-only memory mapping (see
+     * {@link MappedRecordFile}) instead of being copied through a {@code FileReader},
+     * which suits very large catalog files.
+     *
+     * @param mappedReads true to read the data file through a memory mapping
+     */
+    public synchronized void setMappedReads(boolean mappedReads) {
+        this.mappedReads = mappedReads;
+    }
+
+    /**
+     * Stores the catalog as a compact {@link BinarySnapshot} instead of the text data
+     * file. Loads read the binary snapshot if it exists and otherwise import the text
+     * file; every full write then produces the binary snapshot. The text file is left
+     * as an import/export format, see {@link #exportText()}.
+     *
+     * @param snapshot the binary snapshot file, or null to store the catalog as text
+     */
+    public synchronized void setBinarySnapshot(File snapshot) {
+        if (!java.util.Objects.equals(binarySnapshot, snapshot)) catalog = null;
+        this.binarySnapshot = snapshot;
+    }
+
+    /**
+     * Writes the resident catalog to the text data file, e.g. to export a catalog
+     * stored as a binary snapshot.
+     *
+     * @throws RuntimeException if the file cannot be written
+     */
+    public void exportText() {
+        try (InterProcessLock.Held held = lockStorage()) {
+            synchronized (this) {
+                writeSnapshot(dataFile(), encodeText(catalog()));
+                if (binarySnapshot == null) trackFiles();
+            }
+        }
+    }
+
+    /**
+     * Returns the lock other processes sharing the storage files coordinate through,
+     * e.g. to monitor lock waits or to adjust the timeout.
+     *
+     * @return the cross-process lock of the data file
+     */
+    public InterProcessLock getFileLock() {
+        InterProcessLock lock = fileLock;
+        if (lock == null) fileLock = lock = InterProcessLock.forFile(dataFile());
+        return lock;
+    }
+
+    /**
+     * Takes the storage files exclusively, for a read-modify-write. The resident catalog
+     * is checked for changes by other processes once the lock is held, so state read
+     * under it is current. It may be taken with or without the service lock held: within
+     * the process it only waits for running loads, which take no service lock of their own.
+     *
+     * @return the held lock, to be closed when done
+     * @throws IllegalStateException if the lock cannot be acquired within its timeout
+     */
+    protected InterProcessLock.Held lockStorage() {
+        return getFileLock().exclusive();
+    }
+
+    /**
+     * Opens the data file for reading in the configured read mode.
+     *
+     * @return a reader over the records of the data file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    protected RecordReader openRecords() throws IOException {
+        File file = dataFile();
+        if (mappedReads) return MappedRecordFile.open(file.toPath()).reader();
+        return new RecordReader(new FileReader(file));
+    }
+
+    /**
+     * Returns the resident catalog, loading it from storage on first use and
+     * again whenever another process has changed the storage files.
+     * The returned list is the live catalog; callers that mutate it must
+     * persist the change with {@link #writeToFile(List)}.
+     *
+     * @return the resident catalog
+     */
+    protected synchronized List<T> catalog() {
+        if (catalog == null || changes.hasChanged()) reload();
+        return catalog;
+    }
+
+    /**
+     * Returns the detector used to notice changes made to the storage files by
+     * other processes, e.g. to monitor how often the catalog is reloaded.
+     *
+     * @return the change detector
+     */
+    public FileChangeDetector getChangeDetector() {
+        return changes;
+    }
+
+    /**
+     * Records the current state of the snapshot and journal, so that only
+     * changes made after this point by other processes trigger a reload.
+     */
+    private void trackFiles() {
+        changes.clear();
+        changes.track(snapshotFile(), true);
+        MutationLog log = journal;
+        if (log != null) changes.track(log.getFile(), false);
+    }
+
+    private File snapshotFile() {
+        return binarySnapshot != null ? binarySnapshot : dataFile();
+    }
+
+    /**
+     * Writes a list of media to the data file as a full snapshot and makes it the
+     * resident catalog. The snapshot supersedes every journaled change.
+     *
+     * @param list list of media to write
+     * @throws RuntimeException if the file cannot be written
+     */
+    public synchronized void writeToFile(List<T> list) {
+        try (InterProcessLock.Held held = lockStorage()) {
+            // measured under the lock, so no other process appends before the snapshot is written;
+            // records this process appends after this point stay in the journal
+            long folded = journal != null ? journal.length() : 0;
+            byte[] snapshot = encodeAll(list);
+            synchronized (snapshotLock) {
+                writeDataFile(snapshot);
+                snapshotGeneration++;
+                if (journal != null) journal.discardPrefix(folded);
+                trackFiles();
+            }
+        }
+        if (list == catalog) return;
+        List<T> replaced = new CopyOnWriteArrayList<>(list);
+        index = indexOf(replaced);
+        attachAll(replaced);
+        catalog = replaced;
+    }
+
+    /**
+     * Returns the size of the journal in bytes.
+     *
+     * @return journal size, 0 if the service is not journaled
+     */
+    @Override
+    public long journalLength() {
+        MutationLog log = journal;
+        return log != null ? log.length() : 0;
+    }
+
+    /**
+     * Folds the journal into a fresh snapshot of the data file.
+     * The catalog is copied under the service lock; the file is then written and
+     * atomically swapped in without holding it, so borrows and returns continue
+     * meanwhile. Records appended after the copy stay in the journal.
+     *
+     * @return the number of journal bytes reclaimed
+     * @throws RuntimeException if the snapshot cannot be written
+     */
+    @Override
+    public long compact() {
+        byte[] snapshot;
+        long folded;
+        long generation;
+        MutationLog log;
+        // held throughout: the copy must include records other processes appended
+        try (InterProcessLock.Held held = lockStorage()) {
+            synchronized (this) {
+                log = journal;
+                if (log == null) return 0;
+                List<T> current = catalog();
+                folded = log.length();
+                if (folded == 0) return 0;
+                snapshot = encodeAll(current);
+                generation = snapshotGeneration;
+            }
+            synchronized (snapshotLock) {
+                // a full write since the copy already folded the journal
+                if (generation != snapshotGeneration) return 0;
+                writeDataFile(snapshot);
+                log.discardPrefix(folded);
+                trackFiles();
+            }
+        }
+        return folded;
+    }
+
+    private byte[] encodeAll(List<T> list) {
+        return binarySnapshot != null ? BinarySnapshot.encode(list, this::encodeMedia) : encodeText(list);
+    }
+
+    private byte[] encodeText(List<T> list) {
+        StringBuilder sb = new StringBuilder();
+        for (T m : list) sb.append(formatRecord(m)).append(System.lineSeparator());
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writeDataFile(byte[] snapshot) {
+        writeSnapshot(snapshotFile(), snapshot);
+    }
+
+    private static void writeSnapshot(File file, byte[] data) {
+        try {
+            AtomicFiles.write(file.toPath(), data);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing " + file.getName(), e);
+        }
+    }
+
+    /** Loan state flags of a binary snapshot record */
+    private static final int AVAILABLE = 1;
+    private static final int HAS_DUE_DATE = 1 << 1;
+    private static final int HAS_BORROWER = 1 << 2;
+    private static final int FINE_APPLIED = 1 << 3;
+    private static final int FINE_VALUE = 1 << 4;
+
+    private void encodeMedia(T m, BinarySnapshot.Writer out) {
+        writeIdentity(m, out);
+        int fine = m.getFineApplied();
+        int flags = (m.isAvailable() ? AVAILABLE : 0)
+                | (m.getDueDate() != null ? HAS_DUE_DATE : 0)
+                | (m.getBorrowedBy() != null ? HAS_BORROWER : 0)
+                | (fine == 1 ? FINE_APPLIED : 0)
+                | (fine != 0 && fine != 1 ? FINE_VALUE : 0);
+        out.writeByte(flags);
+        if (m.getDueDate() != null) out.writeInt((int) m.getDueDate().toEpochDay());
+        if (m.getBorrowedBy() != null) out.writeString(m.getBorrowedBy().getId());
+        if ((flags & FINE_VALUE) != 0) out.writeInt(fine);
+    }
+
+    private T decodeMedia(BinarySnapshot.Reader in, Map<String, User> users) {
+        T m = readIdentity(in);
+        int flags = in.readByte();
+        m.setAvailable((flags & AVAILABLE) != 0);
+        if ((flags & HAS_DUE_DATE) != 0) m.setDueDate(LocalDate.ofEpochDay(in.readInt()));
+        if ((flags & HAS_BORROWER) != 0) {
+            String id = in.readString();
+            m.setBorrowedBy(users != null ? users.get(id) : null);
+        }
+        if ((flags & FINE_VALUE) != 0) m.setFineApplied(in.readInt());
+        else m.setFineApplied((flags & FINE_APPLIED) != 0 ? 1 : 0);
+        return m;
+    }
+
+    private List<T> loadSnapshot() {
+        if (binarySnapshot == null || !binarySnapshot.exists()) return readFromFile();
+        Map<String, User> users = loadUserDirectory();
+        try {
+            return new ArrayList<>(BinarySnapshot.decode(binarySnapshot.toPath(), in -> decodeMedia(in, users)));
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + binarySnapshot.getName(), e);
+        }
+    }
+
+    /**
+     * Discards the resident catalog and reads it again from storage,
+     * replaying the journal over the data file if one is set.
+     */
+    public synchronized void reload() {
+        List<T> loaded;
+        Map<String, T> byId;
+        // no other process writes while the snapshot and journal are read
+        try (InterProcessLock.Held held = getFileLock().shared()) {
+            trackFiles();
+            loaded = loadSnapshot();
+            byId = indexOf(loaded);
+            if (journal != null) replay(byId, journal);
+        }
+        index = byId;
+        attachAll(loaded);
+        catalog = new CopyOnWriteArrayList<>(loaded);
+    }
+
+    private void attachAll(List<T> list) {
+        AvailabilityBitmap bitmap = new AvailabilityBitmap();
+        DueDateIndex index = new DueDateIndex();
+        bitmap.ensureCapacity(list.size());
+        for (int i = 0; i < list.size(); i++) list.get(i).attach(bitmap, i, index);
+        loans = bitmap;
+        dueDates = index;
+    }
+
+    /**
+     * Persists changes to individual media items. With a journal the records are
+     * written to it; otherwise the whole catalog is rewritten. Must be called while
+     * the changes of the items are in progress (see {@link Media#tryBeginChange(long)}).
+     * Journal records are not yet durable when this returns: callers must call
+     * {@link #awaitDurable()} once they have published the changes.
+     *
+     * @param records journal records describing the changes
+     */
+    protected void persistChanges(List<String[]> records) {
+        MutationLog log = journal;
+        if (log != null) {
+            // atomic with respect to change checks, so our own append never looks external
+            synchronized (changes) {
+                log.write(records);
+                changes.track(log.getFile(), false);
+            }
+        } else {
+            writeToFile(catalog());
+        }
+    }
+
+    /**
+     * Applies an availability transition to one item with compare-and-set semantics.
+     * The item is looked up and validated at a stable version; the change is then applied
+     * and persisted only if the item is still at that version. If a concurrent transition
+     * intervened, the attempt is counted as a conflict and retried on the fresh state, so
+     * the precondition always judges the state the change is applied to. Other processes
+     * are kept out by the storage lock (see {@link #lockStorage()}).
+     *
+     * @param identifier   the item identifier
+     * @param precondition validates the item (null if not found): throws to refuse the
+     *                     transition, or returns false to skip it
+     * @param change       applies the change and returns its journal record
+     * @return the changed item, or null if the transition was skipped
+     */
+    protected T transition(String identifier, Predicate<T> precondition, Function<T, String[]> change) {
+        T changed;
+        try (InterProcessLock.Held held = lockStorage()) {
+            changed = applyTransition(identifier, precondition, change);
+        }
+        if (changed != null) awaitDurable();
+        return changed;
+    }
+
+    private T applyTransition(String identifier, Predicate<T> precondition, Function<T, String[]> change) {
+        for (int attempt = 0; ; attempt++) {
+            T m = findByIdentifier(identifier);
+            long v = m != null ? m.getVersion() : 0;
+            if ((v & 1) != 0) {
+                conflict(attempt);
+                continue;
+            }
+            boolean valid;
+            try {
+                valid = precondition.test(m);
+            } catch (RuntimeException e) {
+                // refuse only on a consistent view: the state may have been torn by a writer
+                if (m == null || m.getVersion() == v) throw e;
+                conflict(attempt);
+                continue;
+            }
+            if (!valid && (m == null || m.getVersion() == v)) return null;
+            if (!valid || !m.tryBeginChange(v)) {
+                conflict(attempt);
+                continue;
+            }
+            try {
+                persistChanges(List.<String[]>of(change.apply(m)));
+                checkResident(List.of(m));
+            } finally {
+                m.endChange();
+            }
+            return m;
+        }
+    }
+
+    /**
+     * Starts a change of an item at whatever version it has, waiting for a concurrent
+     * change to finish. Used by transitions spanning several items, which begin their
+     * changes in identifier order so that two of them never wait for each other.
+     *
+     * @param media the item
+     */
+    private void beginChange(T media) {
+        for (int attempt = 0; ; attempt++) {
+            long v = media.getVersion();
+            if (media.tryBeginChange(v)) return;
+            conflict(attempt);
+        }
+    }
+
+    private void beginChanges(List<T> items) {
+        List<T> ordered = new ArrayList<>(items);
+        ordered.sort((a, b) -> identifierOf(a).compareTo(identifierOf(b)));
+        for (T m : ordered) beginChange(m);
+    }
+
+    /**
+     * Counts a lost compare-and-set and backs off before the next attempt: a few spins
+     * first, as changes are short, then yielding, so a writer that was descheduled in
+     * the middle of a change gets the processor back.
+     */
+    private void conflict(int attempt) {
+        writeConflicts.incrementAndGet();
+        if (attempt < 16) Thread.onSpinWait();
+        else Thread.yield();
+    }
+
+    /**
+     * Sets and persists the fine-applied flag of an overdue item unless it is already
+     * set, with compare-and-set semantics: when several librarians check fines
+     * concurrently, in this process or at other desks, exactly one of them claims the fine.
+     *
+     * @param media the overdue item
+     * @return true if the caller set the flag and should issue the fine
+     */
+    public boolean tryMarkFineApplied(T media) {
+        T marked = transition(identifierOf(media),
+                m -> m != null && m.getFineApplied() == 0,
+                m -> {
+                    m.setFineApplied(1);
+                    return fineAppliedRecord(m);
+                });
+        if (marked == null) return false;
+        // the caller may hold an instance replaced by a reload
+        if (marked != media) media.setFineApplied(1);
+        return true;
+    }
+
+    /**
+     * Sets and persists the fine-applied flag of many overdue items at once, with the
+     * same exactly-once semantics as {@link #tryMarkFineApplied(Media)}, but with one
+     * storage lock and one write for the whole batch.
+     *
+     * @param overdue the overdue items
+     * @return the resident instances of the items whose flag the caller set, and whose
+     *         fines the caller should issue
+     */
+    public List<T> tryMarkFinesApplied(List<T> overdue) {
+        List<T> marked = new ArrayList<>();
+        try (InterProcessLock.Held held = lockStorage()) {
+            Map<String, T> unmarked = new LinkedHashMap<>();
+            for (T m : overdue) {
+                T current = findByIdentifier(identifierOf(m));
+                if (current != null && current.getFineApplied() == 0) unmarked.put(identifierOf(current), current);
+            }
+            if (unmarked.isEmpty()) return marked;
+            List<T> candidates = new ArrayList<>(unmarked.values());
+
+            beginChanges(candidates);
+            try {
+                List<String[]> records = new ArrayList<>();
+                for (T m : candidates) {
+                    // re-check while the change is ours: a concurrent claim may have won
+                    if (m.getFineApplied() == 0) {
+                        m.setFineApplied(1);
+                        records.add(fineAppliedRecord(m));
+                        marked.add(m);
+                    }
+                }
+                if (!records.isEmpty()) {
+                    persistChanges(records);
+                    checkResident(marked);
+                }
+            } finally {
+                for (T m : candidates) m.endChange();
+            }
+        }
+        awaitDurable();
+        return marked;
+    }
+
+    /**
+     * Clears and persists the fine-applied flags of items claimed by
+     * {@link #tryMarkFinesApplied(List)} whose fines could not be charged, so that the
+     * next check issues them again. Items whose flag was cleared meanwhile, e.g. because
+     * they were returned, are left alone.
+     *
+     * @param claimed the items the caller claimed
+     */
+    public void releaseFineClaims(List<T> claimed) {
+        if (claimed.isEmpty()) return;
+        try (InterProcessLock.Held held = lockStorage()) {
+            // the claimed instances may have been replaced by a reload
+            Map<String, T> flagged = new LinkedHashMap<>();
+            for (T m : claimed) {
+                T current = findByIdentifier(identifierOf(m));
+                if (current != null && current.getFineApplied() == 1) flagged.put(identifierOf(current), current);
+            }
+            if (flagged.isEmpty()) return;
+            List<T> candidates = new ArrayList<>(flagged.values());
+
+            beginChanges(candidates);
+            try {
+                List<String[]> records = new ArrayList<>();
+                List<T> released = new ArrayList<>();
+                for (T m : candidates) {
+                    if (m.getFineApplied() == 1) {
+                        m.setFineApplied(0);
+                        records.add(fineAppliedRecord(m));
+                        released.add(m);
+                    }
+                }
+                if (!records.isEmpty()) {
+                    persistChanges(records);
+                    checkResident(released);
+                }
+            } finally {
+                for (T m : candidates) m.endChange();
+            }
+        }
+        awaitDurable();
+    }
+
+    private String[] fineAppliedRecord(T media) {
+        return new String[] {"FINE_APPLIED", identifierOf(media), Integer.toString(media.getFineApplied())};
+    }
+
+    /**
+     * Returns how many transitions lost a compare-and-set to a concurrent transition
+     * and had to retry, e.g. to monitor contention.
+     *
+     * @return number of write conflicts
+     */
+    public long getWriteConflicts() {
+        return writeConflicts.get();
+    }
+
+    /**
+     * Makes sure transitions applied to items of a catalog that was reloaded meanwhile
+     * are not lost: if an item is no longer the resident instance, the catalog is loaded
+     * again, which replays the journal records the transitions have written.
+     *
+     * @param changed items whose changes the caller has in progress
+     */
+    protected void checkResident(List<T> changed) {
+        Map<String, T> current = index;
+        for (T m : changed) {
+            if (current.get(identifierOf(m)) != m) {
+                synchronized (this) {
+                    if (catalog != null && index == current) catalog = null;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Waits until every journal record written so far is on disk. Called once the
+     * changes are published, so that concurrent borrows and returns share one flush.
+     */
+    protected void awaitDurable() {
+        MutationLog log = journal;
+        if (log != null) log.sync();
+    }
+
+    /**
+     * Builds the journal record for a borrow of the given media item.
+     *
+     * @param media the borrowed media item
+     * @return the journal record
+     */
+    protected String[] borrowRecord(T media) {
+        return new String[] {"BORROW", identifierOf(media),
+                media.getBorrowedBy().getId(), String.valueOf(media.getDueDate())};
+    }
+
+    private void replay(Map<String, T> byId, MutationLog journal) {
+        Map<String, User> users = loadUserDirectory();
+        journal.replay(r -> {
+            T m = byId.get(r[1]);
+            switch (r[0]) {
+                case "BORROW" -> {
+                    // parsed before the item is changed, so a torn record changes nothing
+                    String borrower = r[2];
+                    LocalDate due = "null".equals(r[3]) ? null : LocalDate.parse(r[3]);
+                    if (m == null) return;
+                    m.setAvailable(false);
+                    m.setBorrowedBy(users != null ? users.get(borrower) : null);
+                    m.setDueDate(due);
+                }
+                case "RETURN" -> {
+                    if (m != null) markReturned(m);
+                }
+                case "FINE_APPLIED" -> {
+                    int fineApplied = Integer.parseInt(r[2]);
+                    if (m != null) m.setFineApplied(fineApplied);
+                }
+                default -> System.out.println("Warning: unknown journal record " + r[0]);
+            }
+        });
+    }
+
+    private static void markReturned(Media m) {
+        m.setAvailable(true);
+        m.setBorrowedBy(null);
+        m.setDueDate(null);
+        m.setFineApplied(0);
+    }
+
+    /**
+     * Appends a media item to the resident catalog and indexes it.
+     * The caller is responsible for persisting the catalog afterwards.
+     *
+     * @param media the media item to add
+     */
+    protected synchronized void addToCatalog(T media) {
+        List<T> list = catalog();
+        loans.ensureCapacity(list.size() + 1);
+        media.attach(loans, list.size(), dueDates);
+        list.add(media);
+        index.put(identifierOf(media), media);
+    }
+
+    /**
+     * Returns the items currently on loan, found through the availability bitmap
+     * without visiting available items.
+     *
+     * @return items on loan, in catalog order
+     */
+    protected List<T> onLoan() {
+        List<T> list;
+        AvailabilityBitmap bitmap;
+        synchronized (this) {
+            list = catalog();
+            bitmap = loans;
+        }
+        List<T> result = new ArrayList<>();
+        for (int s = bitmap.nextOnLoan(0); s >= 0 && s < list.size(); s = bitmap.nextOnLoan(s + 1)) {
+            T m = list.get(s);
+            // the bit is flipped just after the flag: trust the item
+            if (!m.isAvailable()) result.add(m);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the items currently on loan with a popcount over the availability bitmap.
+     *
+     * @return number of items on loan
+     */
+    public synchronized int countOnLoan() {
+        catalog();
+        return loans.countOnLoan();
+    }
+
+    /**
+     * Looks up a media item by its identifier in constant time.
+     *
+     * @param identifier the identifier (e.g., ISBN for books, ID for CDs)
+     * @return the media item, or null if none has that identifier
+     */
+    protected T findByIdentifier(String identifier) {
+        if (identifier == null) return null;
+        catalog();
+        return index.get(identifier);
+    }
+
+    private Map<String, T> indexOf(List<T> list) {
+        Map<String, T> byId = new ConcurrentHashMap<>(Math.max(16, list.size() * 2));
+        for (T m : list) byId.put(identifierOf(m), m);
+        return byId;
+    }
+
+    /**
+     * Builds the user lookup used to resolve borrower IDs while loading the catalog.
+     * The user file is read once per load rather than once per loaned item.
+     *
+     * @return a map from user ID to user, or null if no {@link UserService} is set
+     */
+    protected Map<String, User> loadUserDirectory() {
+        return userService != null ? userService.getUsersById() : null;
+    }
+
+    /**
+     * Returns an unmodifiable snapshot of all media in the catalog.
+     * No storage access is performed.
+     *
+     * @return list of all media
+     */
+    public List<T> getAllMedia() {
+        return List.copyOf(catalog());
+    }
+
     /**
      * Sets the fine calculation strategy.
      *
@@ -61,7 +831,7 @@ public abstract class MultiMediaService<T extends Media>
      * @param observer the observer to add
      */
     public void addObserver(Observer observer) {
-        observers.add(observer);
+        events.subscribe(observer);
     }
 
     /**
@@ -70,17 +840,37 @@ public abstract class MultiMediaService<T extends Media>
      * @param observer the observer to remove
      */
     public void removeObserver(Observer observer) {
-        observers.remove(observer);
+        events.unsubscribe(observer);
+    }
+
+    /**
+     * Replaces the event bus delivering notifications, e.g. to share one bus between
+     * services. Observers added to the previous bus are not carried over.
+     *
+     * @param events the event bus
+     */
+    public void setEventBus(EventBus events) {
+        this.events = events;
+    }
+
+    /**
+     * Returns the event bus delivering notifications, for monitoring and shutdown.
+     *
+     * @return the event bus
+     */
+    public EventBus getEventBus() {
+        return events;
     }
 
     /**
-     * Notifies all observers for a given user with a message.
+     * Notifies all observers for a given user with a message. The notifications are
+     * queued on the {@link EventBus} and delivered asynchronously.
      *
      * @param user    the user to notify
      * @param message the message to send
      */
     protected void notifyObservers(User user, String message) {
-        for (Observer o : observers) o.notify(user, message);
+        events.publish(user, message);
     }
 
     /**
@@ -91,9 +881,21 @@ public abstract class MultiMediaService<T extends Media>
      */
     @Override
     public int calculateFine(T media) {
+        return calculateFine(media, LocalDate.now());
+    }
+
+    /**
+     * Calculates the fine for a media item as of a given day, e.g. the day a fine run
+     * started, so that all fines of the run are computed for the same day.
+     *
+     * @param media the media item
+     * @param today the day to count overdue days up to
+     * @return the calculated fine, or 0 if not overdue
+     */
+    public int calculateFine(T media, LocalDate today) {
         if (media.getDueDate() == null || media.isAvailable()) return 0;
         long overdueDays = java.time.temporal.ChronoUnit.DAYS
-                .between(media.getDueDate(), LocalDate.now());
+                .between(media.getDueDate(), today);
         if (overdueDays > 0 && fineStrategy != null) {
             return fineStrategy.calculateFine((int) overdueDays);
         }
@@ -107,9 +909,11 @@ public abstract class MultiMediaService<T extends Media>
      * @param allMedia list of all media
      * @return true if the user can borrow, false otherwise
      */
-    public boolean canUserBorrow(User user, List<Media> allMedia) {
+    public boolean canUserBorrow(User user, List<? extends Media> allMedia) {
         if (!user.canBorrow()) return false;
 
+        // for the resident catalog only the items on loan need checking
+        if (allMedia == catalog) allMedia = onLoan();
         for (Media m : allMedia) {
             if (!m.isAvailable()
                     && user.equals(m.getBorrowedBy())
@@ -128,9 +932,8 @@ public abstract class MultiMediaService<T extends Media>
      */
     public boolean hasActiveLoans(User user) {
         if (user == null) return false;
-        return readFromFile().stream()
-                .anyMatch(m -> !m.isAvailable()
-                        && user.equals(m.getBorrowedBy()));
+        return onLoan().stream()
+                .anyMatch(m -> user.equals(m.getBorrowedBy()));
     }
 
     /**
@@ -140,47 +943,92 @@ public abstract class MultiMediaService<T extends Media>
      */
     @Override
     public void returnAllMediaForUser(User user) {
-        List<T> mediaList = readFromFile();
+        try (InterProcessLock.Held held = lockStorage()) {
+            List<T> borrowed = new ArrayList<>();
+            for (T m : catalog()) {
+                if (user.equals(m.getBorrowedBy())) borrowed.add(m);
+            }
+            if (borrowed.isEmpty()) return;
+
+            beginChanges(borrowed);
+            try {
+                List<String[]> records = new ArrayList<>();
+                List<T> returned = new ArrayList<>();
+                for (T m : borrowed) {
+                    // re-check while the change is ours: the item may have been returned meanwhile
+                    if (user.equals(m.getBorrowedBy())) {
+                        markReturned(m);
+                        records.add(new String[] {"RETURN", identifierOf(m)});
+                        returned.add(m);
+                    }
+                }
+                if (!records.isEmpty()) {
+                    persistChanges(records);
+                    checkResident(returned);
+                }
+            } finally {
+                for (T m : borrowed) m.endChange();
+            }
+        }
+        awaitDurable();
+    }
 
-        for (T m : mediaList) {
-            if (user.equals(m.getBorrowedBy())) {
-                m.setAvailable(true);
-                m.setBorrowedBy(null);
-                m.setDueDate(null);
-                m.setFineApplied(0);
+    /**
+     * Persists the fine-applied flag of media items whose fine has just been issued.
+     *
+     * @param fined media items whose fine-applied flag was set
+     */
+    public void commitFineApplied(List<T> fined) {
+        if (fined.isEmpty()) return;
+        try (InterProcessLock.Held held = lockStorage()) {
+            beginChanges(fined);
+            try {
+                List<String[]> records = new ArrayList<>();
+                for (T m : fined) records.add(fineAppliedRecord(m));
+                persistChanges(records);
+                checkResident(fined);
+            } finally {
+                for (T m : fined) m.endChange();
             }
         }
-        writeToFile(mediaList);
+        awaitDurable();
     }
 
     /**
-     * Returns a list of all media that are currently overdue.
+     * Returns a list of all media that are currently overdue, earliest due date first.
+     * Only the items due before today are visited, through the due-date index.
      *
      * @return list of overdue media
      */
     @Override
     public List<T> getOverdueMedia() {
-        return readFromFile().stream()
-                .filter(m -> !m.isAvailable())
-                .filter(m -> m.getDueDate() != null)
-                .filter(m -> m.getBorrowedBy() != null)
-                .filter(m -> LocalDate.now().isAfter(m.getDueDate()))
-                .toList();
+        DueDateIndex index;
+        synchronized (this) {
+            catalog();
+            index = dueDates;
+        }
+        List<T> overdue = new ArrayList<>();
+        for (Media m : index.dueBefore(LocalDate.now())) {
+            @SuppressWarnings("unchecked") // the index only holds items of this catalog
+            T item = (T) m;
+            if (!item.isAvailable() && item.getBorrowedBy() != null) overdue.add(item);
+        }
+        return overdue;
     }
 
     /**
-     * Sends reminders to users about overdue media.
+     * Sends reminders to users about overdue media. Returns once the reminders are
+     * queued for delivery; see {@link #getEventBus()}.
      *
      * @param users      the users to notify
      * @param mediaLabel the type of media (e.g., "Book", "CD") to include in the message
      */
     public void sendReminders(List<User> users, String mediaLabel) {
-        List<T> overdue = getOverdueMedia();
+        Map<User, Long> overdueCounts = new HashMap<>();
+        for (T m : getOverdueMedia()) overdueCounts.merge(m.getBorrowedBy(), 1L, Long::sum);
 
         for (User user : users) {
-            long count = overdue.stream()
-                    .filter(m -> user.equals(m.getBorrowedBy()))
-                    .count();
+            long count = overdueCounts.getOrDefault(user, 0L);
 
             if (count > 0) {
                 notifyObservers(user,
@@ -190,18 +1038,55 @@ public abstract class MultiMediaService<T extends Media>
     }
 
     /**
-     * Reads all media from persistent storage.
+     * Returns the unique identifier of a media item, used as its primary key.
      * Must be implemented by subclasses.
      *
-     * @return list of media
+     * @param media the media item
+     * @return the identifier (e.g., ISBN for books, ID for CDs)
      */
-    protected abstract List<T> readFromFile();
+    protected abstract String identifierOf(T media);
 
     /**
-     * Writes a list of media to persistent storage.
+     * Formats a media item as one line of the data file.
      * Must be implemented by subclasses.
      *
-     * @param list list of media to write
+     * @param media the media item
+     * @return the data file line, without line separator
+     */
+    protected abstract String formatRecord(T media);
+
+    /**
+     * Returns the data file holding the snapshot of the catalog.
+     * Must be implemented by subclasses.
+     *
+     * @return the data file
      */
-    public abstract void writeToFile(List<T> list);
+    protected abstract File dataFile();
+
+    /**
+     * Writes the identifying fields of a media item (e.g., title, author and ISBN)
+     * to a binary snapshot. The loan state is written by this class.
+     * Must be implemented by subclasses.
+     *
+     * @param media the media item
+     * @param out   the snapshot being written
+     */
+    protected abstract void writeIdentity(T media, BinarySnapshot.Writer out);
+
+    /**
+     * Reads the fields written by {@link #writeIdentity} and creates the media item.
+     * Must be implemented by subclasses.
+     *
+     * @param in the snapshot being read
+     * @return a new media item with its loan state not yet set
+     */
+    protected abstract T readIdentity(BinarySnapshot.Reader in);
+
+    /**
+     * Reads all media from the text data file.
+     * Must be implemented by subclasses.
+     *
+     * @return list of media
+     */
+    protected abstract List<T> readFromFile();
 }
@@ -0,0 +1,428 @@
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of single-record mutations (borrow, return, fine applied, ...).
+ * Each record is one semicolon-delimited line, so a change costs a few bytes
+ * instead of a rewrite of the whole data file.
+ *
+ * <p>The log is replayed over the last full snapshot of the data file when a
+ * service loads its state, and cleared whenever a new snapshot is written.
+ * Records are expected to be idempotent (they carry resulting state, not deltas),
+ * so replaying a record that is already reflected in the snapshot is harmless.</p>
+ *
+ * <p>A crash in the middle of an append can leave the last record torn. On
+ * {@link #replay(Replayer) replay} a torn last record is skipped and cut off the log;
+ * a malformed record before the last one fails the replay instead.</p>
+ *
+ * <p>Appended records are durable once {@link #append(String...)} or
+ * {@link #appendAll(List)} returns: they are forced to disk with
+ * {@link FileChannel#force(boolean)}. Writing and forcing are separate steps
+ * ({@link #write(List)} and {@link #sync()}) so that concurrent writers share a
+ * single flush (group commit): a writer whose record was covered by another
+ * writer's flush returns without flushing itself, and the flushing writer can wait
+ * a short group-commit window for more records to arrive.</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * MutationLog log = new MutationLog("data/books.journal", Duration.ofMillis(2));
+ * log.append("BORROW", "ISBN123", "U1", "2026-01-01");
+ * for (String[] record : log.readAll()) { ... }
+ * log.clear();
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see MultiMediaService
+ * @see UserService
+ */
+public class MutationLog {
+
+    /** Field separator, the same one used by the data files */
+    private static final String SEPARATOR = ";";
+
+    /** Log file */
+    private final File file;
+
+    /** How long a flushing writer waits for other writers to join its flush */
+    private final long groupCommitNanos;
+
+    /** Append channel, opened on first write and after the file is replaced */
+    private FileChannel channel;
+
+    /** Identity of the file the channel was opened on, null if the platform has none */
+    private Object channelKey;
+
+    /** Number of writes issued so far */
+    private long written;
+
+    /** Number of writes known to be on disk */
+    private volatile long durable;
+
+    /** Number of flushes performed */
+    private final AtomicLong syncs = new AtomicLong();
+
+    /** Serializes flushes, separately from writes, without pinning waiting virtual threads */
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    /**
+     * Creates a log backed by the given file without a group-commit window.
+     * Concurrent writers still share flushes that overlap.
+     *
+     * @param filePath path of the log file
+     */
+    public MutationLog(String filePath) {
+        this(filePath, Duration.ZERO);
+    }
+
+    /**
+     * Creates a log backed by the given file, creating parent directories if needed.
+     * The file itself is created on the first append.
+     *
+     * @param filePath          path of the log file
+     * @param groupCommitWindow how long a flush waits for further records to join it
+     */
+    public MutationLog(String filePath, Duration groupCommitWindow) {
+        this.file = new File(filePath);
+        this.groupCommitNanos = groupCommitWindow.toNanos();
+        File parent = file.getParentFile();
+        if (parent != null) parent.mkdirs();
+    }
+
+    /**
+     * Appends one record to the log and waits until it is on disk.
+     *
+     * @param fields the record fields
+     * @throws RuntimeException if the log cannot be written
+     */
+    public void append(String... fields) {
+        appendAll(List.<String[]>of(fields));
+    }
+
+    /**
+     * Appends several records to the log in a single write and waits until they are on disk.
+     *
+     * @param records the records to append
+     * @throws RuntimeException if the log cannot be written
+     */
+    public void appendAll(List<String[]> records) {
+        sync(write(records));
+    }
+
+    /**
+     * Writes records to the log without waiting for them to reach the disk.
+     * Callers holding a lock can write under it and call {@link #sync()} after
+     * releasing it, so that other writers can join the same flush.
+     *
+     * @param records the records to write
+     * @return a ticket to pass to {@link #sync(long)}
+     * @throws RuntimeException if the log cannot be written
+     */
+    public synchronized long write(List<String[]> records) {
+        if (records.isEmpty()) return written;
+        StringBuilder sb = new StringBuilder();
+        for (String[] fields : records) {
+            sb.append(String.join(SEPARATOR, fields)).append(System.lineSeparator());
+        }
+        ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            FileChannel ch = channel();
+            while (buf.hasRemaining()) ch.write(buf);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing journal " + file.getName(), e);
+        }
+        return ++written;
+    }
+
+    /**
+     * Waits until every record written so far is on disk.
+     *
+     * @throws RuntimeException if the log cannot be flushed
+     */
+    public void sync() {
+        long ticket;
+        synchronized (this) {
+            ticket = written;
+        }
+        sync(ticket);
+    }
+
+    /**
+     * Waits until the write identified by the ticket is on disk. If another writer
+     * is flushing, this waits for that flush and returns if it covered the ticket;
+     * otherwise it flushes every write issued so far in one go.
+     *
+     * @param ticket the ticket returned by {@link #write(List)}
+     * @throws RuntimeException if the log cannot be flushed
+     */
+    public void sync(long ticket) {
+        if (durable >= ticket) return;
+        syncLock.lock();
+        try {
+            if (durable >= ticket) return;
+            if (groupCommitNanos > 0) LockSupport.parkNanos(groupCommitNanos);
+            long target;
+            FileChannel ch;
+            synchronized (this) {
+                target = written;
+                ch = channel;
+            }
+            try {
+                if (ch != null) ch.force(false);
+            } catch (ClosedChannelException e) {
+                // the file was replaced meanwhile; the replacement was forced before the swap
+            } catch (IOException e) {
+                throw new RuntimeException("Error flushing journal " + file.getName(), e);
+            }
+            syncs.incrementAndGet();
+            if (target > durable) durable = target;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        // another process may have compacted the journal, renaming a new file into place
+        if (channel != null && channelKey != null && !channelKey.equals(fileKey())) {
+            close();
+        }
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            channelKey = fileKey();
+        }
+        return channel;
+    }
+
+    private Object fileKey() throws IOException {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Applies one record while a log is replayed.
+     */
+    @FunctionalInterface
+    public interface Replayer {
+
+        /**
+         * Applies a record. Implementations parse and validate every field they need
+         * before changing any state, so a malformed record leaves no partial change.
+         *
+         * @param record the record fields
+         * @throws RuntimeException if the record is malformed
+         */
+        void apply(String[] record);
+    }
+
+    /**
+     * Reads all records in the order they were appended. A last line without a line
+     * terminator is a record torn by a crash during its append and is left out.
+     *
+     * @return the records, empty if the log does not exist
+     * @throws RuntimeException if the log cannot be read
+     */
+    public synchronized List<String[]> readAll() {
+        List<String[]> records = new ArrayList<>();
+        for (Line line : lines()) {
+            if (line.terminated) records.add(line.fields);
+        }
+        return records;
+    }
+
+    /**
+     * Applies all records in the order they were appended. The last record is torn if
+     * a crash interrupted its append, which leaves it without a line terminator; a torn
+     * record is skipped and cut off the log, so the next append starts on a clean line.
+     * A complete record that cannot be applied is corruption, not a torn append, and
+     * fails the replay wherever it sits.
+     *
+     * <p>Callers must hold off writers, e.g. by holding the storage lock.</p>
+     *
+     * @param replayer applies each record
+     * @return the number of records applied
+     * @throws IllegalStateException if a complete record cannot be applied
+     * @throws RuntimeException if the log cannot be read or truncated
+     */
+    public synchronized int replay(Replayer replayer) {
+        List<Line> lines = lines();
+        int applied = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            if (!line.terminated) {
+                truncateTorn(line);
+                break;
+            }
+            try {
+                replayer.apply(line.fields);
+                applied++;
+            } catch (RuntimeException e) {
+                throw new IllegalStateException("Corrupt record " + (i + 1) + " in journal "
+                        + file.getName() + ": " + String.join(SEPARATOR, line.fields), e);
+            }
+        }
+        return applied;
+    }
+
+    /** A non-empty line of the log, with its position */
+    private record Line(String[] fields, long offset, boolean terminated) {}
+
+    private List<Line> lines() {
+        List<Line> lines = new ArrayList<>();
+        if (!file.exists()) return lines;
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return lines;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading journal " + file.getName(), e);
+        }
+        int start = 0;
+        while (start < bytes.length) {
+            int end = start;
+            while (end < bytes.length && bytes[end] != '\n') end++;
+            boolean terminated = end < bytes.length;
+            int contentEnd = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+            if (contentEnd > start || !terminated) {
+                String text = new String(bytes, start, contentEnd - start, StandardCharsets.UTF_8);
+                lines.add(new Line(text.split(SEPARATOR, -1), start, terminated));
+            }
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    private void truncateTorn(Line line) {
+        System.out.println("Warning: discarding torn record at the end of journal " + file.getName());
+        try {
+            FileChannel ch = channel();
+            ch.truncate(line.offset);
+            ch.force(true);
+        } catch (IOException e) {
+            throw new RuntimeException("Error truncating journal " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Discards all records, typically after a full snapshot has been written.
+     *
+     * @throws RuntimeException if the log cannot be truncated
+     */
+    public synchronized void clear() {
+        if (!file.exists()) return;
+        try {
+            FileChannel ch = channel();
+            ch.truncate(0);
+            ch.force(true);
+        } catch (IOException e) {
+            throw new RuntimeException("Error clearing journal " + file.getName(), e);
+        }
+        durable = written;
+    }
+
+    /**
+     * Discards the first {@code bytes} bytes of the log, keeping every record
+     * appended after that point. Used once a snapshot covering those records
+     * has been written.
+     *
+     * @param bytes number of leading bytes to discard, as returned by {@link #length()}
+     * @throws RuntimeException if the log cannot be rewritten
+     */
+    public synchronized void discardPrefix(long bytes) {
+        if (bytes >= file.length()) {
+            clear();
+            return;
+        }
+        Path path = file.toPath();
+        try {
+            Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), file.getName(), ".tmp");
+            try {
+                try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    long remaining = in.size() - bytes;
+                    long pos = bytes;
+                    while (remaining > 0) {
+                        long n = in.transferTo(pos, remaining, out);
+                        pos += n;
+                        remaining -= n;
+                    }
+                    out.force(true);
+                }
+                close();
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            AtomicFiles.syncDirectory(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Error compacting journal " + file.getName(), e);
+        }
+        durable = written;
+    }
+
+    /**
+     * Returns the file backing the log.
+     *
+     * @return the log file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the current size of the log in bytes.
+     *
+     * @return log size, 0 if the log does not exist
+     */
+    public synchronized long length() {
+        return file.length();
+    }
+
+    /**
+     * Returns how many times the log has been flushed to disk. With concurrent
+     * writers this is lower than the number of appends.
+     *
+     * @return number of flushes
+     */
+    public long getSyncCount() {
+        return syncs.get();
+    }
+
+    /**
+     * Flushes pending records and releases the file handle held by the log. The log
+     * can still be used afterwards; the file is opened again on the next write.
+     *
+     * @throws RuntimeException if pending records cannot be flushed
+     */
+    public synchronized void close() {
+        if (channel == null) return;
+        try (FileChannel ch = channel) {
+            channel = null;
+            ch.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Error closing journal " + file.getName(), e);
+        }
+        durable = written;
+    }
+}
@@ -0,0 +1,22 @@
+package service;
+
+/**
+ * Thrown when an operation names an item that does not exist, e.g. borrowing
+ * a book by an unknown ISBN.
+ *
+ * @since 1.0
+ * @see BookService#borrowMedia(domain.User, String)
+ */
+public class NotFoundException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates an exception with the given message.
+     *
+     * @param message the detail message
+     */
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
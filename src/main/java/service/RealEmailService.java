@@ -1,23 +1,33 @@
 package service;
 
-import jakarta.mail.*;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
-import java.util.Properties;
 
 import io.github.cdimascio.dotenv.Dotenv;
 
 /**
  * Real implementation of {@link EmailService} that sends emails using SMTP.
  * <p>
- * Uses Gmail's SMTP server to send messages. Sender credentials are loaded from
- * environment variables via {@link Dotenv}:
+ * Uses Gmail's SMTP server to send messages unless another server is configured.
+ * Sender credentials and server settings are loaded from environment variables via
+ * {@link Dotenv}:
  * <ul>
  *     <li>SENDER_EMAIL</li>
  *     <li>SENDER_PASSWORD</li>
+ *     <li>SMTP_HOST, default {@code smtp.gmail.com}</li>
+ *     <li>SMTP_PORT, default {@code 587}</li>
+ *     <li>SMTP_TLS, one of {@link SmtpTransportPool.Tls}, default {@code STARTTLS}</li>
  * </ul>
  * </p>
  *
+ * <p>Messages go out through a {@link SmtpTransportPool} that keeps authenticated
+ * connections open between messages. Instances created with the default constructor
+ * share one pool, created along with the first of them, so creating several services
+ * costs nothing and a reminder run pays one handshake per connection rather than per
+ * email.</p>
+ *
  * <p>This service is typically used in combination with {@link EmailNotifier}
  * to notify library users about overdue media or other important messages.</p>
  *
@@ -26,17 +36,64 @@ import io.github.cdimascio.dotenv.Dotenv;
  */
 public class RealEmailService implements EmailService {
 
-    /** Loads environment variables */
-    Dotenv dotenv = Dotenv.load();
+    /** Connections kept open to the configured server, shared by all default instances */
+    private static final int DEFAULT_CONNECTIONS = 4;
+
+    /** Pool shared by default instances, created by the first one */
+    private static SmtpTransportPool sharedPool;
+
+    /** Connections used to send messages */
+    private final SmtpTransportPool pool;
 
     /** Email address used to send messages */
-    String senderEmail = dotenv.get("SENDER_EMAIL");
+    private final String senderEmail;
+
+    /**
+     * Creates a service sending through the server and with the credentials configured in
+     * the environment. The configuration is loaded and checked here, so a missing or
+     * invalid setting fails at startup rather than on the first email.
+     *
+     * @throws io.github.cdimascio.dotenv.DotenvException if the {@code .env} file is missing
+     * @throws IllegalStateException if SMTP_PORT or SMTP_TLS is invalid
+     */
+    public RealEmailService() {
+        Dotenv dotenv = Dotenv.load();
+        this.senderEmail = dotenv.get("SENDER_EMAIL");
+        this.pool = sharedPool(dotenv);
+    }
 
-    /** Password for the sender email account */
-    String senderPassword = dotenv.get("SENDER_PASSWORD");
+    /**
+     * Creates a service sending through the given pool.
+     *
+     * @param pool        connections to the mail server
+     * @param senderEmail address the messages are sent from
+     */
+    public RealEmailService(SmtpTransportPool pool, String senderEmail) {
+        this.pool = pool;
+        this.senderEmail = senderEmail;
+    }
+
+    private static synchronized SmtpTransportPool sharedPool(Dotenv dotenv) {
+        if (sharedPool != null) return sharedPool;
+        int port;
+        try {
+            port = Integer.parseInt(dotenv.get("SMTP_PORT", "587"));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid SMTP_PORT: " + dotenv.get("SMTP_PORT"));
+        }
+        SmtpTransportPool.Tls tls;
+        try {
+            tls = SmtpTransportPool.Tls.valueOf(dotenv.get("SMTP_TLS", "STARTTLS"));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid SMTP_TLS: " + dotenv.get("SMTP_TLS"));
+        }
+        sharedPool = new SmtpTransportPool(dotenv.get("SMTP_HOST", "smtp.gmail.com"), port, tls,
+                dotenv.get("SENDER_EMAIL"), dotenv.get("SENDER_PASSWORD"), DEFAULT_CONNECTIONS);
+        return sharedPool;
+    }
 
     /**
-     * Sends an email to the specified recipient.
+     * Sends an email to the specified recipient. Failures are reported on the console.
      *
      * @param to      the recipient's email address
      * @param message the email body content
@@ -49,31 +106,40 @@ public class RealEmailService implements EmailService {
         }
 
         try {
-            Properties props = new Properties();
-            props.put("mail.smtp.auth", "true");
-            props.put("mail.smtp.starttls.enable", "true");
-            props.put("mail.smtp.host", "smtp.gmail.com");
-            props.put("mail.smtp.port", "587");
+            sendEmail(to, message, null);
+            System.out.println("Email sent successfully to " + to);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+        }
+    }
 
-            Session session = Session.getInstance(props, new Authenticator() {
+    /**
+     * Sends an email to the specified recipient, using the idempotency key as the
+     * message id so that the server can recognise a message sent twice.
+     *
+     * @param to             the recipient's email address
+     * @param message        the email body content
+     * @param idempotencyKey key identifying the message, or null for a generated message id
+     * @throws IllegalStateException if the email could not be sent
+     */
+    @Override
+    public void sendEmail(String to, String message, String idempotencyKey) {
+        try {
+            Message msg = new MimeMessage(pool.getSession()) {
                 @Override
-                protected PasswordAuthentication getPasswordAuthentication() {
-                    return new PasswordAuthentication(senderEmail, senderPassword);
+                protected void updateMessageID() throws MessagingException {
+                    if (idempotencyKey == null) super.updateMessageID();
+                    else setHeader("Message-ID", "<" + idempotencyKey + "@youbak.library>");
                 }
-            });
-
-            Message msg = new MimeMessage(session);
+            };
             msg.setFrom(new InternetAddress(senderEmail));
             msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
             msg.setSubject("Library Overdue Reminder");
             msg.setText(message);
 
-            Transport.send(msg);
-
-            System.out.println("Email sent successfully to " + to);
-
-        } catch (Exception e) {
-            System.err.println("Failed to send email to " + to + ": " + e.getMessage());
+            pool.send(msg);
+        } catch (MessagingException | RuntimeException e) {
+            throw new IllegalStateException("Failed to send email to " + to + ": " + e.getMessage(), e);
         }
     }
 
@@ -0,0 +1,395 @@
+package service;
+
+import domain.Money;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Reader for the semicolon-delimited records of the data files.
+ * <p>
+ * Characters are scanned in place in a reusable buffer: each call to {@link #next()}
+ * locates the next line and the boundaries of its fields without creating any
+ * strings. Typed accessors parse booleans, integers, ISO dates and decimal amounts
+ * directly from the buffer, and {@link #string(int)} materializes only the fields
+ * that are actually needed. Fields are trimmed, and trailing empty fields are
+ * dropped, the same way {@code line.split(";")} followed by {@code trim()} would.
+ * </p>
+ *
+ * <p>Records are read either from a character stream or directly from a byte buffer
+ * holding UTF-8 text, such as a memory-mapped data file (see {@link MappedRecordFile}).</p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * try (RecordReader r = new RecordReader(new FileReader("data/books.txt"))) {
+ *     while (r.next()) {
+ *         if (r.fieldCount() &lt; 5) continue;
+ *         Book b = new Book(r.string(0), r.string(1), r.string(2));
+ *         b.setAvailable(r.bool(3));
+ *     }
+ * }
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see BookService
+ * @see CDService
+ * @see UserService
+ */
+public class RecordReader implements Closeable {
+
+    /** Field separator of the data files */
+    private static final char SEPARATOR = ';';
+
+    /** Character source, null when reading from {@link #bytes} */
+    private final Reader in;
+
+    /** UTF-8 byte source, null when reading from {@link #in} */
+    private final ByteBuffer bytes;
+
+    /** Characters read but not yet consumed, from {@code pos} to {@code limit} */
+    private char[] buf = new char[8192];
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    /** Whether the previous line ended with '\r', so a following '\n' belongs to it */
+    private boolean skipLineFeed;
+
+    /** Trimmed field boundaries of the current line */
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int fields;
+
+    /**
+     * Creates a record reader over the given character stream.
+     *
+     * @param in the stream to read; closed by {@link #close()}
+     */
+    public RecordReader(Reader in) {
+        this.in = in;
+        this.bytes = null;
+    }
+
+    /**
+     * Creates a record reader over UTF-8 text held in a byte buffer, from its position
+     * to its limit. Lines are decoded straight from the buffer, one at a time.
+     *
+     * @param bytes the text to read; its position is advanced as lines are read
+     */
+    public RecordReader(ByteBuffer bytes) {
+        this.in = null;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Advances to the next line. Lines end with {@code \n}, {@code \r} or {@code \r\n},
+     * as for {@link java.io.BufferedReader#readLine()}.
+     *
+     * @return true if a line was read, false at the end of the stream
+     * @throws IOException if the stream cannot be read
+     */
+    public boolean next() throws IOException {
+        if (bytes != null) return nextFromBytes();
+        if (skipLineFeed) {
+            skipLineFeed = false;
+            if (pos == limit && !eof) fill();
+            if (pos < limit && buf[pos] == '\n') pos++;
+        }
+        int i = pos;
+        while (true) {
+            if (i == limit) {
+                if (eof) break;
+                int consumed = pos;
+                fill();
+                i -= consumed;
+                continue;
+            }
+            char c = buf[i];
+            if (c == '\n' || c == '\r') break;
+            i++;
+        }
+        if (i == pos && i == limit) return false;
+
+        split(pos, i);
+        if (i < limit) {
+            skipLineFeed = buf[i] == '\r';
+            i++;
+        }
+        pos = i;
+        return true;
+    }
+
+    private boolean nextFromBytes() {
+        if (!bytes.hasRemaining()) return false;
+        int from = bytes.position();
+        int end = bytes.limit();
+        int i = from;
+        boolean ascii = true;
+        while (i < end) {
+            byte b = bytes.get(i);
+            if (b == '\n' || b == '\r') break;
+            if (b < 0) ascii = false;
+            i++;
+        }
+        int length = i - from;
+        if (ascii) {
+            if (buf.length < length) buf = new char[Math.max(length, buf.length * 2)];
+            for (int k = 0; k < length; k++) buf[k] = (char) bytes.get(from + k);
+        } else {
+            CharBuffer chars = StandardCharsets.UTF_8.decode(bytes.slice(from, length));
+            length = chars.remaining();
+            if (buf.length < length) buf = new char[Math.max(length, buf.length * 2)];
+            chars.get(buf, 0, length);
+        }
+        split(0, length);
+        if (i < end && bytes.get(i++) == '\r' && i < end && bytes.get(i) == '\n') i++;
+        bytes.position(i);
+        return true;
+    }
+
+    /**
+     * Moves the unconsumed characters to the start of the buffer and reads more,
+     * growing the buffer if a single line fills it.
+     */
+    private void fill() throws IOException {
+        int remaining = limit - pos;
+        if (pos > 0) System.arraycopy(buf, pos, buf, 0, remaining);
+        else if (remaining == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+        limit = remaining;
+        pos = 0;
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) eof = true;
+        else limit += n;
+    }
+
+    private void split(int from, int to) {
+        fields = 0;
+        int kept = 0;
+        boolean separated = false;
+        int start = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || buf[i] == SEPARATOR) {
+                addField(start, i);
+                if (i > start) kept = fields;
+                if (i < to) separated = true;
+                start = i + 1;
+            }
+        }
+        // like String.split, drop trailing empty fields unless the line has no separator
+        if (separated) fields = kept;
+    }
+
+    private void addField(int start, int end) {
+        if (fields == starts.length) {
+            starts = Arrays.copyOf(starts, fields * 2);
+            ends = Arrays.copyOf(ends, fields * 2);
+        }
+        while (start < end && buf[start] <= ' ') start++;
+        while (end > start && buf[end - 1] <= ' ') end--;
+        starts[fields] = start;
+        ends[fields] = end;
+        fields++;
+    }
+
+    /**
+     * Returns the number of fields on the current line.
+     *
+     * @return field count
+     */
+    public int fieldCount() {
+        return fields;
+    }
+
+    /**
+     * Materializes a field as a string.
+     *
+     * @param field zero-based field index
+     * @return the trimmed field
+     */
+    public String string(int field) {
+        check(field);
+        return new String(buf, starts[field], ends[field] - starts[field]);
+    }
+
+    /**
+     * Tells whether a field holds the literal {@code null} written for absent values.
+     *
+     * @param field zero-based field index
+     * @return true if the field is {@code null}
+     */
+    public boolean isNull(int field) {
+        return matches(field, "null");
+    }
+
+    /**
+     * Parses a field as a boolean, like {@link Boolean#parseBoolean(String)}.
+     *
+     * @param field zero-based field index
+     * @return true if the field is {@code true}, ignoring case
+     */
+    public boolean bool(int field) {
+        check(field);
+        int s = starts[field];
+        if (ends[field] - s != 4) return false;
+        return (buf[s] | 0x20) == 't' && (buf[s + 1] | 0x20) == 'r'
+                && (buf[s + 2] | 0x20) == 'u' && (buf[s + 3] | 0x20) == 'e';
+    }
+
+    /**
+     * Parses a field as a decimal integer, like {@link Integer#parseInt(String)}.
+     *
+     * @param field zero-based field index
+     * @return the parsed value
+     * @throws NumberFormatException if the field is not an integer
+     */
+    public int integer(int field) {
+        check(field);
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = i < end && buf[i] == '-';
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) i++;
+        if (i == end) throw invalid(field, "integer");
+        long value = 0;
+        for (; i < end; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) throw invalid(field, "integer");
+            value = value * 10 + d;
+            if (value > (long) Integer.MAX_VALUE + 1) throw invalid(field, "integer");
+        }
+        if (negative) value = -value;
+        if (value > Integer.MAX_VALUE) throw invalid(field, "integer");
+        return (int) value;
+    }
+
+    /**
+     * Parses a field as an ISO date ({@code yyyy-MM-dd}), like {@link LocalDate#parse(CharSequence)}.
+     *
+     * @param field zero-based field index
+     * @return the parsed date
+     * @throws DateTimeException if the field is not a valid ISO date
+     */
+    public LocalDate date(int field) {
+        check(field);
+        int s = starts[field];
+        if (ends[field] - s != 10 || buf[s + 4] != '-' || buf[s + 7] != '-') {
+            throw new DateTimeException("Invalid date: " + string(field));
+        }
+        int year = digits(s, 4);
+        int month = digits(s + 5, 2);
+        int day = digits(s + 8, 2);
+        if (year < 0 || month < 0 || day < 0) throw new DateTimeException("Invalid date: " + string(field));
+        return LocalDate.of(year, month, day);
+    }
+
+    /**
+     * Parses a field as a decimal amount, like {@link Double#parseDouble(String)}.
+     * Plain decimals such as {@code 12.5} are parsed in place as fixed-point values;
+     * other notations (exponents, {@code NaN}, ...) fall back to {@link Double#parseDouble(String)}.
+     *
+     * @param field zero-based field index
+     * @return the parsed amount
+     * @throws NumberFormatException if the field is not a number
+     */
+    public double amount(int field) {
+        check(field);
+        int i = starts[field];
+        int end = ends[field];
+        boolean negative = i < end && buf[i] == '-';
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) i++;
+        long unscaled = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean any = false;
+        for (; i < end; i++) {
+            char c = buf[i];
+            if (c == '.' && !point) {
+                point = true;
+                continue;
+            }
+            int d = c - '0';
+            // anything unusual, or more digits than a long holds exactly, takes the slow path
+            if (d < 0 || d > 9 || unscaled > 99_999_999_999_999L || scale > 15) {
+                return Double.parseDouble(string(field));
+            }
+            unscaled = unscaled * 10 + d;
+            if (point) scale++;
+            any = true;
+        }
+        if (!any) throw invalid(field, "amount");
+        double value = scale == 0 ? unscaled : unscaled / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a field as an amount in NIS and returns it in agorot, like
+     * {@link Money#parseLenient(String)}. Plain decimals such as {@code 12.5} are
+     * converted in place by {@link Money#parse(char[], int, int, boolean)} without going
+     * through a {@code double}; digits beyond the agorot round half up. Other notations
+     * fall back to {@link Money#parseLenient(String)}.
+     *
+     * @param field zero-based field index
+     * @return the parsed amount in agorot
+     * @throws NumberFormatException if the field is not a number
+     */
+    public long minorUnits(int field) {
+        check(field);
+        if (starts[field] == ends[field]) throw invalid(field, "amount");
+        try {
+            return Money.parse(buf, starts[field], ends[field], true);
+        } catch (NumberFormatException e) {
+            return Money.parseLenient(string(field));
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16
+    };
+
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private boolean matches(int field, String literal) {
+        check(field);
+        int s = starts[field];
+        int len = ends[field] - s;
+        if (len != literal.length()) return false;
+        for (int i = 0; i < len; i++) {
+            if (buf[s + i] != literal.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private void check(int field) {
+        if (field < 0 || field >= fields) {
+            throw new IndexOutOfBoundsException("Field " + field + " of " + fields);
+        }
+    }
+
+    private NumberFormatException invalid(int field, String type) {
+        return new NumberFormatException("Invalid " + type + ": \"" + string(field) + "\"");
+    }
+
+    /**
+     * Closes the underlying stream, if any.
+     *
+     * @throws IOException if the stream cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (in != null) in.close();
+    }
+}
@@ -0,0 +1,103 @@
+package service;
+
+import domain.Book;
+import domain.CD;
+import domain.Media;
+import domain.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends each patron a single reminder covering all their overdue media, books and CDs
+ * alike.
+ * <p>
+ * A run takes the overdue items of every media service once, groups them by borrower
+ * in one pass and builds one digest message per borrower listing every overdue item,
+ * oldest due date first. The whole batch is then handed to an {@link EventBus} for
+ * delivery, so a run reads each catalog once however many patrons are reminded, and
+ * returns without waiting for the emails to go out.
+ * </p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * ReminderService reminders = new ReminderService(bookService.getEventBus(), bookService, cdService);
+ * Map&lt;User, String&gt; sent = reminders.sendReminders();
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see MultiMediaService#getOverdueMedia()
+ * @see EventBus
+ */
+public class ReminderService {
+
+    /** Delivers the digests to the observers */
+    private final EventBus events;
+
+    /** Services whose overdue media are reminded of */
+    private final List<MultiMediaService<? extends Media>> sources;
+
+    /**
+     * Creates a reminder service over the given media services.
+     *
+     * @param events  the event bus delivering the digests
+     * @param sources the media services to collect overdue items from
+     */
+    @SafeVarargs
+    public ReminderService(EventBus events, MultiMediaService<? extends Media>... sources) {
+        this.events = events;
+        List<MultiMediaService<? extends Media>> list = new ArrayList<>();
+        for (MultiMediaService<? extends Media> source : sources) list.add(source);
+        this.sources = List.copyOf(list);
+    }
+
+    /**
+     * Collects the overdue items of all services, grouped by borrower.
+     *
+     * @return overdue items per borrower, oldest due date first
+     */
+    public Map<User, List<Media>> overdueByUser() {
+        Map<User, List<Media>> byUser = new LinkedHashMap<>();
+        for (MultiMediaService<? extends Media> source : sources) {
+            for (Media m : source.getOverdueMedia()) {
+                byUser.computeIfAbsent(m.getBorrowedBy(), u -> new ArrayList<>()).add(m);
+            }
+        }
+        for (List<Media> items : byUser.values()) items.sort(Comparator.comparing(Media::getDueDate));
+        return byUser;
+    }
+
+    /**
+     * Builds the reminder for one patron.
+     *
+     * @param items the patron's overdue items
+     * @return the digest message listing every item
+     */
+    public static String digest(List<Media> items) {
+        StringBuilder sb = new StringBuilder("You have ").append(items.size()).append(" overdue item(s):");
+        for (Media m : items) {
+            sb.append("\n- ");
+            if (m instanceof Book b) sb.append("Book \"").append(b.getTitle()).append("\" by ").append(b.getAuthor());
+            else if (m instanceof CD c) sb.append("CD \"").append(c.getTitle()).append("\" by ").append(c.getArtist());
+            else sb.append('"').append(m.getTitle()).append('"');
+            sb.append(", due ").append(m.getDueDate());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reminds every patron with overdue media, one digest each. Returns once the
+     * digests are queued for delivery.
+     *
+     * @return the digest sent to each patron
+     */
+    public Map<User, String> sendReminders() {
+        Map<User, String> digests = new LinkedHashMap<>();
+        overdueByUser().forEach((user, items) -> digests.put(user, digest(items)));
+        events.publishAll(digests);
+        return digests;
+    }
+}
@@ -12,6 +12,10 @@ import domain.User;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -20,7 +24,9 @@ import java.time.format.DateTimeFormatter;
  * <p>
  * The receipts are generated as PDF files using iText library and saved
  * in the "receipts" folder. Each receipt includes user details, media
- * details, fine amount, and timestamp.
+ * details, fine amount, and timestamp. File names include the media identifier
+ * and, if needed, a counter, so receipts written in the same second never
+ * overwrite each other.
  * </p>
  */
 public class ReportFine {
@@ -35,18 +41,65 @@ public class ReportFine {
      */
 	public static void generateFineReceipt(User user, double amount, boolean paid, Media media) {
 	    try {
-	        String folder = "receipts";
-	        File dir = new File(folder);
-	        if (!dir.exists()) dir.mkdirs();
-
-	        String timeStamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-	        String type = paid ? "Paid" : "Issued";
-	        String safeName = user.getName().replaceAll("\\s+", "_");
+	        writeReceipt(reserveReceipt(user, paid, media), user, amount, paid, media);
+	    }
+	    catch (Exception e) {
+	        System.out.println("Error generating PDF: " + e.getMessage());
+	    }
+	}
 
-	        String fileName = folder + File.separator + type + "_Fine_" + safeName + "_" + timeStamp + ".pdf";
+    /**
+     * Claims a unique, still empty receipt file, so that a receipt can be referred to,
+     * e.g. in the fine ledger, before it is written.
+     *
+     * @param user  the user who the fine is for
+     * @param paid  true if the fine has been paid, false if issued
+     * @param media the media item associated with the fine (optional, can be null)
+     * @return the claimed file
+     * @throws IOException if the file cannot be created
+     */
+	public static File reserveReceipt(User user, boolean paid, Media media) throws IOException {
+	    String folder = "receipts";
+	    File dir = new File(folder);
+	    if (!dir.exists()) dir.mkdirs();
+
+	    String timeStamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+	    String type = paid ? "Paid" : "Issued";
+	    String safeName = user.getName().replaceAll("\\s+", "_");
+
+	    String base = folder + File.separator + type + "_Fine_" + safeName;
+	    String mediaId = (media instanceof Book b) ? b.getIsbn()
+	            : (media instanceof CD c) ? c.getId()
+	            : null;
+	    if (mediaId != null) base += "_" + mediaId.replaceAll("[^A-Za-z0-9_-]", "_");
+	    base += "_" + timeStamp;
+
+	    // claim the name atomically, so concurrent receipts never share a file
+	    String fileName = base + ".pdf";
+	    for (int n = 2; ; n++) {
+	        try {
+	            Files.createFile(Path.of(fileName));
+	            return new File(fileName);
+	        } catch (FileAlreadyExistsException e) {
+	            fileName = base + "_" + n + ".pdf";
+	        }
+	    }
+	}
 
+    /**
+     * Writes a receipt into a file claimed with {@link #reserveReceipt(User, boolean, Media)}.
+     * Failures are reported on the console.
+     *
+     * @param file   the claimed receipt file
+     * @param user   the user who the fine is for
+     * @param amount the fine amount
+     * @param paid   true if the fine has been paid, false if issued
+     * @param media  the media item associated with the fine (optional, can be null)
+     */
+	public static void writeReceipt(File file, User user, double amount, boolean paid, Media media) {
+	    try {
 	        Document document = new Document();
-	        PdfWriter.getInstance(document, new FileOutputStream(fileName));
+	        PdfWriter.getInstance(document, new FileOutputStream(file));
 
 	        document.open();
 
@@ -69,7 +122,7 @@ public class ReportFine {
 	                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))));
 
 	        document.close();
-	        System.out.println("PDF receipt generated: " + fileName);
+	        System.out.println("PDF receipt generated: " + file.getPath());
 	    }
 	    catch (Exception e) {
 	        System.out.println("Error generating PDF: " + e.getMessage());
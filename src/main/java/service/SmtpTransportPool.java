@@ -0,0 +1,246 @@
+package service;
+
+import jakarta.mail.Authenticator;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.PasswordAuthentication;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of authenticated SMTP connections to one mail server, so that sending many
+ * messages does not pay a TCP and TLS handshake and a login per message.
+ * <p>
+ * The pool owns a single {@link Session}. A sender borrows an idle connected
+ * {@link Transport}, or opens a new one if none is idle, sends over it and gives it
+ * back. At most {@code maxConnections} connections are in use at once; further senders
+ * wait. A connection is closed after {@link #setMaxMessagesPerConnection(int) a number
+ * of messages}, since servers limit how much they accept per connection. A connection
+ * that fails, e.g. because the server dropped it while idle, is closed and the message
+ * is sent once more over a fresh connection; a message whose recipients the server
+ * refused is not retried.
+ * </p>
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * SmtpTransportPool pool = new SmtpTransportPool("smtp.gmail.com", 587, user, password, 4);
+ * Message msg = new MimeMessage(pool.getSession());
+ * ...
+ * pool.send(msg);
+ * pool.close();
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see RealEmailService
+ */
+public class SmtpTransportPool implements AutoCloseable {
+
+    /** A connection of the pool and the number of messages sent over it */
+    private static final class Connection {
+        final Transport transport;
+        int sent;
+
+        Connection(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    private final Session session;
+    private final Semaphore permits;
+    private final Deque<Connection> idle = new ConcurrentLinkedDeque<>();
+
+    private volatile int maxMessagesPerConnection = 100;
+    private volatile boolean closed;
+
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    /**
+     * How connections to the server are secured.
+     */
+    public enum Tls {
+        /** Plain connections, e.g. to a local relay */
+        NONE,
+        /** Upgrade with STARTTLS if the server offers it */
+        STARTTLS,
+        /** Upgrade with STARTTLS, failing if the server does not offer it */
+        STARTTLS_REQUIRED,
+        /** TLS from the start of the connection, usually on port 465 */
+        SSL
+    }
+
+    /**
+     * Creates a pool for a server reached with STARTTLS, if the server offers it.
+     *
+     * @param host           the SMTP host
+     * @param port           the SMTP port
+     * @param username       the login, or null if the server needs no authentication
+     * @param password       the password of the login
+     * @param maxConnections maximum number of connections in use at once
+     * @throws IllegalArgumentException if maxConnections is not positive
+     */
+    public SmtpTransportPool(String host, int port, String username, String password, int maxConnections) {
+        this(host, port, Tls.STARTTLS, username, password, maxConnections);
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param host           the SMTP host
+     * @param port           the SMTP port
+     * @param tls            how connections are secured
+     * @param username       the login, or null if the server needs no authentication
+     * @param password       the password of the login
+     * @param maxConnections maximum number of connections in use at once
+     * @throws IllegalArgumentException if maxConnections is not positive
+     */
+    public SmtpTransportPool(String host, int port, Tls tls, String username, String password, int maxConnections) {
+        if (maxConnections <= 0) throw new IllegalArgumentException("Connections must be positive");
+        Properties props = new Properties();
+        props.put("mail.smtp.auth", String.valueOf(username != null));
+        props.put("mail.smtp.starttls.enable", String.valueOf(tls == Tls.STARTTLS || tls == Tls.STARTTLS_REQUIRED));
+        props.put("mail.smtp.starttls.required", String.valueOf(tls == Tls.STARTTLS_REQUIRED));
+        props.put("mail.smtp.ssl.enable", String.valueOf(tls == Tls.SSL));
+        if (tls != Tls.NONE) props.put("mail.smtp.ssl.checkserveridentity", "true");
+        props.put("mail.smtp.host", host);
+        props.put("mail.smtp.port", String.valueOf(port));
+        props.put("mail.smtp.connectiontimeout", "10000");
+        props.put("mail.smtp.timeout", "10000");
+        this.session = username == null ? Session.getInstance(props) : Session.getInstance(props, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(username, password);
+            }
+        });
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Returns the session shared by all connections, for building messages.
+     *
+     * @return the mail session
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Sets after how many messages a connection is closed and replaced.
+     *
+     * @param messages messages per connection
+     */
+    public void setMaxMessagesPerConnection(int messages) {
+        this.maxMessagesPerConnection = messages;
+    }
+
+    /**
+     * Sends a message to its recipients over a pooled connection.
+     *
+     * @param message the message to send
+     * @throws MessagingException if the message could not be sent, even over a fresh connection
+     * @throws IllegalStateException if the pool was closed
+     */
+    public void send(Message message) throws MessagingException {
+        if (closed) throw new IllegalStateException("Transport pool is closed");
+        permits.acquireUninterruptibly();
+        try {
+            Connection connection = borrow();
+            try {
+                connection.transport.sendMessage(message, message.getAllRecipients());
+            } catch (SendFailedException e) {
+                // refused by the server; the connection itself is fine
+                release(connection);
+                throw e;
+            } catch (MessagingException e) {
+                discard(connection);
+                reconnects.incrementAndGet();
+                connection = open();
+                try {
+                    connection.transport.sendMessage(message, message.getAllRecipients());
+                } catch (MessagingException retryFailed) {
+                    discard(connection);
+                    throw retryFailed;
+                }
+            }
+            connection.sent++;
+            messagesSent.incrementAndGet();
+            release(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Connection borrow() throws MessagingException {
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (connection.transport.isConnected()) return connection;
+            discard(connection);
+        }
+        return open();
+    }
+
+    private Connection open() throws MessagingException {
+        Transport transport = session.getTransport("smtp");
+        transport.connect();
+        connectionsOpened.incrementAndGet();
+        return new Connection(transport);
+    }
+
+    private void release(Connection connection) {
+        if (closed || connection.sent >= maxMessagesPerConnection) discard(connection);
+        else idle.offerFirst(connection);
+    }
+
+    private static void discard(Connection connection) {
+        try {
+            connection.transport.close();
+        } catch (MessagingException ignored) {
+            // the connection is dropped either way
+        }
+    }
+
+    /**
+     * Returns how many connections the pool has opened.
+     *
+     * @return connections opened
+     */
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    /**
+     * Returns how many messages the pool has sent.
+     *
+     * @return messages sent
+     */
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    /**
+     * Returns how many messages were sent again over a fresh connection after a failure.
+     *
+     * @return reconnections after a failure
+     */
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    /**
+     * Closes the idle connections; connections in use are closed when their send completes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) discard(connection);
+    }
+}
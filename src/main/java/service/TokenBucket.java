@@ -0,0 +1,79 @@
+package service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter. Tokens are added at a steady rate up to a maximum burst,
+ * and every permitted action takes one, so actions are limited to the rate on average
+ * while short bursts up to the bucket size go through at once.
+ *
+ * <p>Example usage:
+ * <pre><code>
+ * TokenBucket limit = new TokenBucket(10, 5); // 10 per second, bursts of 5
+ * limit.acquire();
+ * send(message);
+ * </code></pre>
+ *
+ * @since 1.0
+ * @see EmailOutbox
+ */
+public final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param perSecond tokens added per second
+     * @param burst     maximum number of tokens held
+     * @throws IllegalArgumentException if the rate or the burst is not positive
+     */
+    public TokenBucket(double perSecond, int burst) {
+        if (perSecond <= 0) throw new IllegalArgumentException("Rate must be positive");
+        if (burst <= 0) throw new IllegalArgumentException("Burst must be positive");
+        this.tokensPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = burst;
+        this.tokens = burst;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return true if a token was taken
+     */
+    public synchronized boolean tryAcquire() {
+        return nanosUntilToken() == 0;
+    }
+
+    /**
+     * Takes a token, waiting for one to be added if the bucket is empty.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        long wait;
+        while (true) {
+            synchronized (this) {
+                wait = nanosUntilToken();
+            }
+            if (wait == 0) return;
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /** Refills the bucket, then takes a token and returns 0, or returns how long until one is added. */
+    private long nanosUntilToken() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+}
@@ -1,14 +1,44 @@
 package service;
 
+import domain.Money;
 import domain.User;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Service class for managing users in the library system.
  * Supports operations such as adding, removing, retrieving users,
  * and managing their fines.
+ * Users are read from the storage file once and kept resident. Changes rewrite the
+ * file unless a {@link MutationLog} is set, in which case each change is appended
+ * to the journal and replayed over the file on the next load.
+ * The user file is always replaced atomically, so a crash mid-save never loses balances.
+ * Fine balances are exact amounts in agorot (see {@link domain.Money}), written as
+ * decimal NIS, and mirrored in a {@link BalanceTable} for totals over all users.
+ * Users can be stored as a compact {@link BinarySnapshot} instead of the text file,
+ * see {@link #setBinarySnapshot(File)}.
+ * Changes made to the files by other processes are detected by modification time
+ * and size (see {@link FileChangeDetector}) and trigger a reload. Processes sharing
+ * the files coordinate through an {@link InterProcessLock}: loads hold it shared and
+ * every change holds it exclusively from the reload through the write, so fines and
+ * payments taken at another desk are never overwritten.
+ * Mutating methods are synchronized. A fine change is computed on a copy of the user
+ * and applied to the resident user only once it is committed, touching only that user's
+ * balance table slot; journal records are flushed to disk after the lock is released, so concurrent fine and payment updates share one flush. Media services
+ * read the users while holding their own storage lock, so no media lock is ever taken
+ * while the user lock is held; receipts are also written after the locks are released.
+ * With a {@link FineLedger} set, every fine issued, paid or waived is also recorded
+ * as an event, in the same commit as the balance change, giving each user a statement
+ * of their fines; events refer to the item fined or the payment receipt.
+ * {@link #compact()} folds the journal into a new snapshot of the file while the
+ * service keeps serving requests.
  * 
  * <p>Example usage:
  * <pre><code>
@@ -20,10 +50,53 @@ import java.util.List;
  * </code></pre>
  * </p>
  */
-public class UserService {
+@SuppressWarnings("try") // lock handles only scope the held lock
+public class UserService implements Compactable {
+
+    /**
+     * A fine to charge in a batch, see {@link #applyFines(List)}.
+     *
+     * @param userId      the ID of the user to charge
+     * @param amountMinor the fine amount in agorot
+     * @param reference   what the fine is for, e.g. a media identifier, or null
+     */
+    public record Charge(String userId, long amountMinor, String reference) {}
 
     private final String FILE_PATH = "data/users.txt";
 
+    /** Resident copy of the users, null until first loaded; replaced, never mutated */
+    private volatile List<User> users;
+
+    /** Fine balances of the resident users, by position in the user list */
+    private volatile BalanceTable balances = new BalanceTable(0);
+
+    /** Resident users by ID, rebuilt whenever a new user list is published */
+    private volatile Map<String, User> index = Map.of();
+
+    /** Journal for single-user changes, null to rewrite the user file instead */
+    private volatile MutationLog journal;
+
+    /** Guards the first load, separately from the service lock */
+    private final Object loadLock = new Object();
+
+    /** History of fine events, null to keep only the balances */
+    private volatile FineLedger ledger;
+
+    /** Binary snapshot replacing the text user file as storage, null to use the text file */
+    private File binarySnapshot;
+
+    /** Detects changes to the storage files made by other processes */
+    private final FileChangeDetector changes = new FileChangeDetector();
+
+    /** Serializes replacements of the user file */
+    private final Object snapshotLock = new Object();
+
+    /** Incremented by every full save, so a compaction can tell its snapshot is stale */
+    private long snapshotGeneration;
+
+    /** Cross-process lock of the storage files */
+    private final InterProcessLock fileLock = InterProcessLock.forFile(new File(FILE_PATH));
+
     /**
      * Constructs a UserService and ensures the user data file exists.
      * If the file or directories do not exist, they will be created.
@@ -45,48 +118,439 @@ public class UserService {
 
 
     /**
-     * Retrieves all users from the storage file.
+     * Enables journaled persistence. User additions, removals and fine changes are
+     * then appended to the journal rather than rewriting the user file.
      *
-     * @return a list of all users
+     * @param journal the journal, or null to rewrite the user file on every change
+     */
+    public synchronized void setJournal(MutationLog journal) {
+        if (this.journal != journal) users = null;
+        this.journal = journal;
+    }
+
+    /**
+     * Records every fine issued, paid or waived in a {@link FineLedger}, in addition
+     * to updating the balances.
+     *
+     * @param ledger the ledger, or null to keep no fine history
+     */
+    public void setLedger(FineLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    /**
+     * Returns the ledger fine events are recorded in.
+     *
+     * @return the fine ledger, or null if none is set
+     */
+    public FineLedger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Stores users as a compact {@link BinarySnapshot} instead of the text user file.
+     * Loads read the binary snapshot if it exists and otherwise import the text file;
+     * every save then produces the binary snapshot. The text file is left as an
+     * import/export format, see {@link #exportText()}.
+     *
+     * @param snapshot the binary snapshot file, or null to store users as text
+     */
+    public synchronized void setBinarySnapshot(File snapshot) {
+        if (!java.util.Objects.equals(binarySnapshot, snapshot)) users = null;
+        this.binarySnapshot = snapshot;
+    }
+
+    /**
+     * Writes all users to the text user file, e.g. to export users stored as a
+     * binary snapshot.
+     *
+     * @throws RuntimeException if the file cannot be written
+     */
+    public void exportText() {
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            synchronized (this) {
+                writeSnapshot(new File(FILE_PATH), encodeText(getAllUsers()));
+                if (binarySnapshot == null) trackFiles();
+            }
+        }
+    }
+
+    /**
+     * Returns the lock other processes sharing the storage files coordinate through,
+     * e.g. to monitor lock waits or to adjust the timeout.
+     *
+     * @return the cross-process lock of the user file
+     */
+    public InterProcessLock getFileLock() {
+        return fileLock;
+    }
+
+    /**
+     * Retrieves all users. The storage file is read on first use, and again only
+     * when another process has changed it.
+     *
+     * @return a new list containing all users
      */
     public List<User> getAllUsers() {
+        return new ArrayList<>(residentUsers());
+    }
+
+    /**
+     * Finds a user by ID without copying the user list.
+     *
+     * @param id the user ID
+     * @return the user, or null if no user has that ID
+     */
+    public User findUser(String id) {
+        if (id == null) return null;
+        residentUsers();
+        return index.get(id);
+    }
+
+    private List<User> residentUsers() {
+        List<User> current = users;
+        if (current == null || changes.hasChanged()) {
+            synchronized (loadLock) {
+                // unless another thread reloaded meanwhile
+                if (users == current) {
+                    try (InterProcessLock.Held held = fileLock.shared()) {
+                        trackFiles();
+                        publish(loadSnapshot());
+                    }
+                }
+                current = users;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Makes a user list resident, attaching its users to a fresh balance table.
+     *
+     * @param list the new resident user list
+     */
+    private void publish(List<User> list) {
+        BalanceTable table = new BalanceTable(list.size());
+        Map<String, User> byId = new HashMap<>(list.size() * 2);
+        for (int i = 0; i < list.size(); i++) {
+            User u = list.get(i);
+            u.attach(table, i);
+            byId.putIfAbsent(u.getId(), u);
+        }
+        balances = table;
+        index = byId;
+        users = list;
+    }
+
+    /**
+     * Returns the fine balances of all users, in agorot, e.g. to total the
+     * outstanding fines without visiting every user.
+     *
+     * @return the balance table of the resident users
+     */
+    public BalanceTable getBalances() {
+        residentUsers();
+        return balances;
+    }
+
+    /**
+     * Returns the detector used to notice changes made to the storage files by
+     * other processes.
+     *
+     * @return the change detector
+     */
+    public FileChangeDetector getChangeDetector() {
+        return changes;
+    }
+
+    private void trackFiles() {
+        changes.clear();
+        changes.track(snapshotFile(), true);
+        MutationLog log = journal;
+        if (log != null) changes.track(log.getFile(), false);
+    }
+
+    private List<User> loadSnapshot() {
+        File snapshot = binarySnapshot;
+        if (snapshot == null || !snapshot.exists()) return readFromFile();
+        List<User> users;
+        try {
+            users = new ArrayList<>(BinarySnapshot.decode(snapshot.toPath(), UserService::decodeUser));
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + snapshot.getName(), e);
+        }
+        if (journal != null) replay(users, journal);
+        return users;
+    }
+
+    private List<User> readFromFile() {
         List<User> users = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(FILE_PATH))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(";");
-                if (parts.length != 4) continue;
-
-                String name = parts[0];
-                String id = parts[1];
-                String email = parts[2];
-                double fine = Double.parseDouble(parts[3]);
-
-                User u = new User(name, id, email);
-                u.setFineBalance(fine);
+        try (RecordReader r = new RecordReader(new FileReader(FILE_PATH))) {
+            while (r.next()) {
+                if (r.fieldCount() != 4) continue;
+
+                User u = new User(r.string(0), r.string(1), r.string(2));
+                u.setFineMinor(r.minorUnits(3));
                 users.add(u);
             }
         } catch (IOException e) {
             System.err.println("Error reading users file: " + e.getMessage());
         }
+        if (journal != null) replay(users, journal);
         return users;
     }
 
+    private void replay(List<User> users, MutationLog journal) {
+        Map<String, User> byId = new HashMap<>();
+        for (User u : users) byId.put(u.getId(), u);
+        // fields are parsed before anything is changed, so a torn record changes nothing
+        journal.replay(r -> {
+            switch (r[0]) {
+                case "USER_ADD" -> {
+                    User u = new User(r[1], r[2], r[3]);
+                    u.setFineMinor(Money.parseLenient(r[4]));
+                    if (byId.containsKey(u.getId())) return;
+                    users.add(u);
+                    byId.put(u.getId(), u);
+                }
+                case "FINE", "PAY", "WAIVE" -> {
+                    long balance = Money.parseLenient(r[3]);
+                    User u = byId.get(r[1]);
+                    if (u != null) u.setFineMinor(balance);
+                }
+                case "USER_REMOVE" -> {
+                    User u = byId.remove(r[1]);
+                    if (u != null) users.remove(u);
+                }
+                default -> System.out.println("Warning: unknown journal record " + r[0]);
+            }
+        });
+    }
+
+    /**
+     * Retrieves all users keyed by their ID, reading the storage file once.
+     * Intended for bulk joins such as resolving the borrowers of a whole catalog.
+     *
+     * @return a map from user ID to user
+     */
+    public Map<String, User> getUsersById() {
+        List<User> users = getAllUsers();
+        Map<String, User> byId = new HashMap<>(users.size() * 2);
+        for (User u : users) byId.put(u.getId(), u);
+        return byId;
+    }
+
     /**
-     * Saves a list of users to the storage file.
+     * Saves a list of users to the storage file and makes it the resident user list.
+     * The file is written to a temporary file, forced to disk and renamed into place,
+     * so the previous file stays intact if the save is interrupted.
+     * The written file supersedes every journaled change.
      *
      * @param users the list of users to save
      */
-    public void saveUsers(List<User> users) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(FILE_PATH))) {
-            for (User u : users) {
-                bw.write(u.getName() + ";" + u.getId() + ";" + u.getEmail() + ";" + u.getFineBalance());
-                bw.newLine();
+    public synchronized void saveUsers(List<User> users) {
+        byte[] snapshot = encodeAll(users);
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            synchronized (snapshotLock) {
+                try {
+                    AtomicFiles.write(snapshotFile().toPath(), snapshot);
+                    snapshotGeneration++;
+                    if (journal != null) journal.clear();
+                    trackFiles();
+                } catch (IOException e) {
+                    System.err.println("Error saving users: " + e.getMessage());
+                }
             }
+        }
+        publish(new ArrayList<>(users));
+    }
+
+    private static String formatRecord(User u) {
+        return u.getName() + ";" + u.getId() + ";" + u.getEmail() + ";" + Money.format(u.getFineMinor());
+    }
+
+    private File snapshotFile() {
+        return binarySnapshot != null ? binarySnapshot : new File(FILE_PATH);
+    }
+
+    private byte[] encodeAll(List<User> users) {
+        return binarySnapshot != null ? BinarySnapshot.encode(users, UserService::encodeUser) : encodeText(users);
+    }
+
+    private static byte[] encodeText(List<User> users) {
+        StringBuilder sb = new StringBuilder();
+        for (User u : users) sb.append(formatRecord(u)).append(System.lineSeparator());
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void encodeUser(User u, BinarySnapshot.Writer out) {
+        out.writeString(u.getName());
+        out.writeString(u.getId());
+        out.writeString(u.getEmail());
+        out.writeLong(u.getFineMinor());
+    }
+
+    private static User decodeUser(BinarySnapshot.Reader in) {
+        User u = new User(in.readString(), in.readString(), in.readString());
+        u.setFineMinor(in.readLong());
+        return u;
+    }
+
+    private static void writeSnapshot(File file, byte[] data) {
+        try {
+            AtomicFiles.write(file.toPath(), data);
         } catch (IOException e) {
-            System.err.println("Error saving users: " + e.getMessage());
+            throw new RuntimeException("Error writing " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the size of the journal in bytes.
+     *
+     * @return journal size, 0 if the service is not journaled
+     */
+    @Override
+    public long journalLength() {
+        MutationLog log = journal;
+        return log != null ? log.length() : 0;
+    }
+
+    /**
+     * Folds the journal into a fresh snapshot of the user file.
+     * Users are copied under the service lock; the file is then written and
+     * atomically swapped in without holding it. Records appended after the copy
+     * stay in the journal.
+     *
+     * @return the number of journal bytes reclaimed
+     * @throws RuntimeException if the snapshot cannot be written
+     */
+    @Override
+    public long compact() {
+        byte[] snapshot;
+        long folded;
+        long generation;
+        MutationLog log;
+        // held throughout: the copy must include records other processes appended
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            synchronized (this) {
+                log = journal;
+                if (log == null) return 0;
+                List<User> current = getAllUsers();
+                folded = log.length();
+                if (folded == 0) return 0;
+                snapshot = encodeAll(current);
+                generation = snapshotGeneration;
+            }
+            synchronized (snapshotLock) {
+                if (generation != snapshotGeneration) return 0;
+                writeSnapshot(snapshotFile(), snapshot);
+                log.discardPrefix(folded);
+                trackFiles();
+            }
+        }
+        return folded;
+    }
+
+    /**
+     * Persists a change to the user list, such as an added or removed user: written to
+     * the journal if one is set, otherwise the whole user list is saved. The list is
+     * made resident once the change is written. Journal records become durable in
+     * {@link #awaitDurable()}, called once the service lock is released.
+     *
+     * @param users  the updated user list
+     * @param record journal record describing the change
+     */
+    private void commit(List<User> users, String... record) {
+        if (journal == null) {
+            saveUsers(users);
+            return;
+        }
+        writeJournal(List.<String[]>of(record));
+        publish(users);
+    }
+
+    /**
+     * Persists changes to the fine balances of one or more users, computed on copies
+     * of the stored users, and only then applies the new balances to the stored users,
+     * so a failed write leaves them untouched. With a journal, this is one journal
+     * append and touches nothing but the changed users and their balance table slots;
+     * without one, the whole user list is saved with the copies in place. The fine
+     * events of the changes are appended to the ledger first, in one write, in the same
+     * commit and under the same locks, so a balance change is never committed without
+     * its event.
+     *
+     * @param updates the updated copy of each changed user, keyed by the stored user
+     * @param records journal records describing the changes
+     * @param events  ledger events of the changes, in order
+     */
+    private void commitBalances(Map<User, User> updates, List<String[]> records, List<FineLedger.Event> events) {
+        FineLedger history = ledger;
+        if (history != null) history.record(events);
+        if (journal == null) {
+            List<User> users = getAllUsers();
+            users.replaceAll(u -> updates.getOrDefault(u, u));
+            saveUsers(users);
+        } else {
+            writeJournal(records);
         }
+        updates.forEach((stored, updated) -> stored.setFineMinor(updated.getFineMinor()));
+    }
+
+    private void writeJournal(List<String[]> records) {
+        // atomic with respect to change checks, so our own append never looks external
+        synchronized (changes) {
+            journal.write(records);
+            changes.track(journal.getFile(), false);
+        }
+    }
+
+    /**
+     * Returns the stored users by ID, to look up the users a change applies to. With a
+     * journal this is the resident index; without one every change saves the whole
+     * list from {@link #getAllUsers()}, so the users are looked up there.
+     *
+     * @return the stored users by ID
+     */
+    private Map<String, User> storedUsers() {
+        if (journal == null) return getUsersById();
+        residentUsers();
+        return index;
+    }
 
+    /**
+     * Returns a copy of a user to compute a change on, attached to no balance table.
+     *
+     * @param user the stored user
+     * @return a detached copy with the same balance
+     */
+    private static User copyOf(User user) {
+        User copy = new User(user.getName(), user.getId(), user.getEmail());
+        copy.setFineMinor(user.getFineMinor());
+        return copy;
+    }
+
+    /**
+     * Waits until every journal record and ledger event written so far is on disk.
+     * Events are flushed first, like they are written first.
+     */
+    private void awaitDurable() {
+        FineLedger history = ledger;
+        if (history != null) history.sync();
+        MutationLog log = journal;
+        if (log != null) log.sync();
+    }
+
+    /**
+     * Captures a fine event for a user whose balance was just changed.
+     *
+     * @param type        the kind of event
+     * @param user        the user, with the balance after the event
+     * @param amountMinor the amount of the event in agorot
+     * @param reference   what the event refers to, or null
+     * @return the event
+     */
+    private static FineLedger.Event event(FineLedger.Type type, User user, long amountMinor, String reference) {
+        return new FineLedger.Event(type, user.getId(), amountMinor, user.getFineMinor(), reference);
     }
 
     /**
@@ -95,11 +559,17 @@ public class UserService {
      * @param user the user to add
      */
     public void addUser(User user) {
-        List<User> users = getAllUsers();
-        for (User u : users) {
-            if (u.getId().equals(user.getId())) return;}
-        users.add(user);
-        saveUsers(users);
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            synchronized (this) {
+                List<User> users = getAllUsers();
+                for (User u : users) {
+                    if (u.getId().equals(user.getId())) return;}
+                users.add(user);
+                commit(users, "USER_ADD", user.getName(), user.getId(), user.getEmail(),
+                        Money.format(user.getFineMinor()));
+            }
+        }
+        awaitDurable();
     }
 
     /**
@@ -111,8 +581,25 @@ public class UserService {
      */
     public void addFine(User user, double amount) {
         if (user == null) throw new IllegalArgumentException("User cannot be null");
-        user.addFine(amount);
-        saveUsers(getAllUsers());
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            synchronized (this) {
+                User stored = storedUsers().get(user.getId());
+                if (stored == null) {
+                    user.addFine(amount);
+                } else {
+                    // add to the current balance, which may include fines taken at another desk
+                    User updated = copyOf(stored);
+                    updated.addFine(amount);
+                    long minor = Money.toMinor(amount);
+                    commitBalances(Map.of(stored, updated),
+                            List.<String[]>of(new String[] {"FINE", stored.getId(), Money.format(minor),
+                                    Money.format(updated.getFineMinor())}),
+                            List.of(event(FineLedger.Type.ISSUED, updated, minor, null)));
+                    if (stored != user) user.setFineMinor(stored.getFineMinor());
+                }
+            }
+        }
+        awaitDurable();
     }
 
     /**
@@ -125,24 +612,62 @@ public class UserService {
      * @throws IllegalArgumentException if user is null or amount is invalid
      */
     public void payFine(User user, double amount, BookService bookService, CDService cdService) {
-        if (user == null) throw new IllegalArgumentException("User cannot be null");
         if (amount <= 0) throw new IllegalArgumentException("Invalid amount");
-        if (amount > user.getFineBalance())
-            throw new IllegalArgumentException("Amount cannot exceed current fine balance");
+        payFineMinor(user, Money.toMinor(amount), bookService, cdService);
+    }
 
-        List<User> users = getAllUsers();
-        for (User u : users) {
-            if (u.equals(user)) {
-                u.payFine(amount);
-                ReportFine.generateFineReceipt(u, amount, true, null);
-                if (u.getFineBalance() == 0) {
-                    if (bookService != null) bookService.returnAllMediaForUser(u);
-                    if (cdService != null) cdService.returnAllMediaForUser(u);
+    /**
+     * Pays a fine given in agorot for a user and optionally returns all media if
+     * fines are cleared.
+     *
+     * @param user        the user paying the fine
+     * @param amountMinor the amount to pay in agorot
+     * @param bookService the BookService to return books if fines cleared
+     * @param cdService   the CDService to return CDs if fines cleared
+     * @throws IllegalArgumentException if user is null or amount is invalid
+     */
+    public void payFineMinor(User user, long amountMinor, BookService bookService, CDService cdService) {
+        if (user == null) throw new IllegalArgumentException("User cannot be null");
+        if (amountMinor <= 0) throw new IllegalArgumentException("Invalid amount");
+        // the receipt is named up front, so the ledger event can refer to it
+        File receipt;
+        try {
+            receipt = ReportFine.reserveReceipt(user, true, null);
+        } catch (IOException e) {
+            System.out.println("Error generating PDF: " + e.getMessage());
+            receipt = null;
+        }
+        User paid = null;
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            synchronized (this) {
+                // checked against the current balance, which may differ from the caller's copy
+                User stored = storedUsers().get(user.getId());
+                if (stored != null) {
+                    if (amountMinor > stored.getFineMinor())
+                        throw new IllegalArgumentException("Amount cannot exceed current fine balance");
+                    User updated = copyOf(stored);
+                    updated.payFineMinor(amountMinor);
+                    commitBalances(Map.of(stored, updated),
+                            List.<String[]>of(new String[] {"PAY", stored.getId(), Money.format(amountMinor),
+                                    Money.format(updated.getFineMinor())}),
+                            List.of(event(FineLedger.Type.PAID, updated, amountMinor,
+                                    receipt != null ? receipt.getName() : null)));
+                    if (stored != user) user.setFineMinor(stored.getFineMinor());
+                    paid = stored;
                 }
-                break;
             }
+        } finally {
+            if (paid == null && receipt != null) receipt.delete();
+        }
+        awaitDurable();
+        if (paid == null) return;
+        // media locks are only taken once the user lock is released: media loads read the
+        // users, so holding both here would invert the order and could deadlock two desks
+        if (paid.getFineMinor() == 0) {
+            if (bookService != null) bookService.returnAllMediaForUser(paid);
+            if (cdService != null) cdService.returnAllMediaForUser(paid);
         }
-        saveUsers(users);
+        if (receipt != null) ReportFine.writeReceipt(receipt, paid, Money.toMajor(amountMinor), true, null);
     }
 
     /**
@@ -153,14 +678,118 @@ public class UserService {
      */
     public void applyFine(User borrower, double fine) {
         if (borrower == null || fine <= 0) return;
-        List<User> users = getAllUsers();
-        for (User u : users) {
-            if (u.equals(borrower)) {
-                u.addFine(fine);
-                break;
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            synchronized (this) {
+                User stored = storedUsers().get(borrower.getId());
+                if (stored != null) {
+                    User updated = copyOf(stored);
+                    updated.addFine(fine);
+                    long minor = Money.toMinor(fine);
+                    commitBalances(Map.of(stored, updated),
+                            List.<String[]>of(new String[] {"FINE", stored.getId(), Money.format(minor),
+                                    Money.format(updated.getFineMinor())}),
+                            List.of(event(FineLedger.Type.ISSUED, updated, minor, null)));
+                }
+            }
+        }
+        awaitDurable();
+    }
+
+    /**
+     * Applies many fines in one pass, e.g. a day's fines for overdue media: the users
+     * are read once and every balance change is persisted in a single commit, instead
+     * of a full read and write per fine. Fines for unknown users and amounts that are
+     * not positive are skipped, as in {@link #applyFine(User, double)}.
+     *
+     * @param finesById fine amount in agorot per user ID
+     * @return the number of users charged
+     */
+    public int applyFines(Map<String, Long> finesById) {
+        List<Charge> charges = new ArrayList<>(finesById.size());
+        finesById.forEach((id, amount) -> charges.add(new Charge(id, amount, null)));
+        return applyFines(charges);
+    }
+
+    /**
+     * Applies many fines in one pass, like {@link #applyFines(Map)}, keeping each fine
+     * apart: every charge gets its own journal record and ledger event, carrying its
+     * reference.
+     *
+     * @param charges the fines to charge, in order
+     * @return the number of users charged
+     */
+    public int applyFines(List<Charge> charges) {
+        if (charges.isEmpty()) return 0;
+        Set<String> charged = new HashSet<>();
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            synchronized (this) {
+                Map<String, User> byId = storedUsers();
+                Map<User, User> updates = new LinkedHashMap<>();
+                List<String[]> records = new ArrayList<>();
+                List<FineLedger.Event> events = new ArrayList<>();
+                for (Charge charge : charges) {
+                    User stored = byId.get(charge.userId());
+                    long amount = charge.amountMinor();
+                    if (stored == null || amount <= 0) continue;
+                    User u = updates.computeIfAbsent(stored, UserService::copyOf);
+                    u.addFineMinor(amount);
+                    records.add(new String[] {"FINE", u.getId(), Money.format(amount), Money.format(u.getFineMinor())});
+                    events.add(event(FineLedger.Type.ISSUED, u, amount, charge.reference()));
+                    charged.add(u.getId());
+                }
+                if (!records.isEmpty()) commitBalances(updates, records, events);
+            }
+        }
+        awaitDurable();
+        return charged.size();
+    }
+
+    /**
+     * Writes off part or all of a user's fine balance, e.g. for a damaged item
+     * returned in good faith. Waiving more than the balance clears it.
+     *
+     * @param user   the user whose fine is waived
+     * @param amount the amount to waive
+     * @return true if the user was found and the fine waived
+     * @throws IllegalArgumentException if user is null or amount is not positive
+     */
+    public boolean waiveFine(User user, double amount) {
+        return waiveFine(user, amount, null);
+    }
+
+    /**
+     * Writes off part or all of a user's fine balance, recording what it refers to,
+     * e.g. the identifier of the damaged item, in the ledger.
+     *
+     * @param user      the user whose fine is waived
+     * @param amount    the amount to waive
+     * @param reference what the waiver refers to, or null
+     * @return true if the user was found and the fine waived
+     * @throws IllegalArgumentException if user is null or amount is not positive
+     */
+    public boolean waiveFine(User user, double amount, String reference) {
+        if (user == null) throw new IllegalArgumentException("User cannot be null");
+        long minor = Money.toMinor(amount);
+        if (minor <= 0) throw new IllegalArgumentException("Invalid amount");
+        boolean waived = false;
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            synchronized (this) {
+                User stored = storedUsers().get(user.getId());
+                long waivedMinor = stored != null ? Math.min(minor, stored.getFineMinor()) : 0;
+                if (waivedMinor > 0) {
+                    User updated = copyOf(stored);
+                    updated.payFineMinor(waivedMinor);
+                    commitBalances(Map.of(stored, updated),
+                            List.<String[]>of(new String[] {"WAIVE", stored.getId(), Money.format(waivedMinor),
+                                    Money.format(updated.getFineMinor())}),
+                            List.of(event(FineLedger.Type.WAIVED, updated, waivedMinor, reference)));
+                    if (stored != user) user.setFineMinor(stored.getFineMinor());
+                    waived = true;
+                }
             }
         }
-        saveUsers(users);
+        awaitDurable();
+        return waived;
     }
 
     /**
@@ -171,9 +800,15 @@ public class UserService {
      */
     public boolean unregisterUser(User user) {
         if (user == null) return false;
-        List<User> users = getAllUsers();
-        boolean removed = users.removeIf(u -> u.equals(user));
-        if (removed) saveUsers(users);
+        boolean removed;
+        try (InterProcessLock.Held held = fileLock.exclusive()) {
+            synchronized (this) {
+                List<User> users = getAllUsers();
+                removed = users.removeIf(u -> u.equals(user));
+                if (removed) commit(users, "USER_REMOVE", user.getId());
+            }
+        }
+        awaitDurable();
         return removed;
     }
 }
@@ -0,0 +1,121 @@
+package benchmarks;
+
+import domain.Book;
+import domain.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the versioned compare-and-set transitions of {@link domain.Media} against a
+ * single coarse lock, under a read-heavy mix: three threads read the loan state of random
+ * items while one thread borrows and returns random items.
+ * <p>
+ * Only the concurrency control is measured; persistence is left out, since journal
+ * writes cost the same with either scheme and would dominate the result.
+ * </p>
+ *
+ * <p>Run with:
+ * <pre><code>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) benchmarks.BorrowContentionBenchmark
+ * </code></pre>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BorrowContentionBenchmark {
+
+    @Param({"16", "1024"})
+    int items;
+
+    private Book[] books;
+    private final User user = new User("Alice", "U1", "alice@mail.com");
+    private final Object lock = new Object();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        books = new Book[items];
+        for (int i = 0; i < items; i++) books[i] = new Book("Title " + i, "Author", "ISBN" + i);
+    }
+
+    private Book random() {
+        return books[ThreadLocalRandom.current().nextInt(items)];
+    }
+
+    private static void toggle(Book b, User user) {
+        if (b.isAvailable()) {
+            b.borrow(user);
+        } else {
+            b.setAvailable(true);
+            b.setBorrowedBy(null);
+            b.setDueDate(null);
+        }
+    }
+
+    /** Same backoff as the service: spin briefly, then yield */
+    private static void backoff(int attempt) {
+        if (attempt < 16) Thread.onSpinWait();
+        else Thread.yield();
+    }
+
+    @Benchmark
+    @Group("optimistic")
+    @GroupThreads(3)
+    public boolean optimisticRead() {
+        Book b = random();
+        for (int attempt = 0; ; attempt++) {
+            long v = b.getVersion();
+            boolean onLoan = b.getBorrowedBy() != null && !b.isAvailable();
+            if ((v & 1) == 0 && b.getVersion() == v) return onLoan;
+            backoff(attempt);
+        }
+    }
+
+    @Benchmark
+    @Group("optimistic")
+    @GroupThreads(1)
+    public void optimisticWrite() {
+        Book b = random();
+        for (int attempt = 0; ; attempt++) {
+            long v = b.getVersion();
+            if (b.tryBeginChange(v)) break;
+            backoff(attempt);
+        }
+        toggle(b, user);
+        b.endChange();
+    }
+
+    @Benchmark
+    @Group("coarse")
+    @GroupThreads(3)
+    public boolean coarseRead() {
+        Book b = random();
+        synchronized (lock) {
+            return b.getBorrowedBy() != null && !b.isAvailable();
+        }
+    }
+
+    @Benchmark
+    @Group("coarse")
+    @GroupThreads(1)
+    public void coarseWrite() {
+        Book b = random();
+        synchronized (lock) {
+            toggle(b, user);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BorrowContentionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
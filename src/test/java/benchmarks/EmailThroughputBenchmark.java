@@ -0,0 +1,133 @@
+package benchmarks;
+
+import domain.Book;
+import domain.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import service.BookService;
+import service.EmailNotifier;
+import service.EventBus;
+import service.RealEmailService;
+import service.SmtpTransportPool;
+import tests.FakeSmtpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reminder emails per second to a local {@link FakeSmtpServer} for a run over
+ * 10,000 patrons with one overdue book each: sent one by one through an
+ * {@link EmailNotifier}, and through {@code MultiMediaService.sendReminders}, which
+ * queues the reminders on the service's {@link EventBus} and lets its workers deliver
+ * them over a pool of SMTP connections. The server's message delay stands in for the
+ * round trip to a remote server.
+ *
+ * <p>Run with:
+ * <pre><code>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) benchmarks.EmailThroughputBenchmark
+ * </code></pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class EmailThroughputBenchmark {
+
+    private static final int PATRONS = 10_000;
+
+    @Param({"0", "2"})
+    int messageDelayMillis;
+
+    /** Whether the event bus delivers on platform threads, the default, or on virtual threads */
+    @Param({"platform", "virtual"})
+    String workers;
+
+    private FakeSmtpServer server;
+    private SmtpTransportPool pool;
+    private EmailNotifier notifier;
+    private BookService books;
+    private List<User> users;
+    private File dataFile;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // RealEmailService reports every email on the console
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        server = new FakeSmtpServer();
+        server.setRecording(false);
+        server.setMessageDelay(Duration.ofMillis(messageDelayMillis));
+        pool = new SmtpTransportPool("localhost", server.getPort(), SmtpTransportPool.Tls.NONE,
+                "library@mail.com", "secret", 8);
+        notifier = new EmailNotifier(new RealEmailService(pool, "library@mail.com"));
+
+        dataFile = Files.createTempFile("books", ".txt").toFile();
+        File data = dataFile;
+        books = new BookService() {
+            @Override
+            protected File dataFile() {
+                return data;
+            }
+        };
+        books.setEventBus(workers.equals("platform")
+                ? new EventBus(1024, 8, EventBus.Backpressure.BLOCK)
+                : new EventBus(1024, 8, EventBus.Backpressure.BLOCK, Thread.ofVirtual().factory()));
+        books.addObserver(notifier);
+
+        users = new ArrayList<>(PATRONS);
+        List<Book> catalog = new ArrayList<>(PATRONS);
+        for (int i = 0; i < PATRONS; i++) {
+            User user = new User("Patron " + i, "U" + i, "patron" + i + "@mail.com");
+            Book book = new Book("Title " + i, "Author", "ISBN" + i);
+            book.setAvailable(false);
+            book.setBorrowedBy(user);
+            book.setDueDate(LocalDate.now().minusDays(1 + i % 30));
+            users.add(user);
+            catalog.add(book);
+        }
+        books.writeToFile(catalog);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        books.getEventBus().shutdown(Duration.ofSeconds(30));
+        pool.close();
+        server.close();
+        Files.deleteIfExists(dataFile.toPath());
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATRONS)
+    public void emailNotifier() {
+        for (User user : users) notifier.notify(user, "You have 1 overdue book(s).");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATRONS)
+    public void sendReminders() throws InterruptedException {
+        books.sendReminders(users, "book");
+        if (!books.getEventBus().awaitIdle(Duration.ofMinutes(5))) throw new IllegalStateException("Reminders not delivered");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmailThroughputBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
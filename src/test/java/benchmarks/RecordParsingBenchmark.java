@@ -0,0 +1,95 @@
+package benchmarks;
+
+import domain.Book;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import service.RecordReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing the book data file with {@code String.split(";")} and {@code trim()}
+ * (the former {@code BookService.readFromFile} path) against {@link RecordReader}.
+ *
+ * <p>Run with:
+ * <pre><code>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) benchmarks.RecordParsingBenchmark
+ * </code></pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseParallelGC")
+public class RecordParsingBenchmark {
+
+    @Param({"1000", "10000"})
+    int records;
+
+    private String file;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < records; i++) {
+            boolean loaned = i % 3 == 0;
+            sb.append("Title ").append(i).append(';')
+                    .append("Author ").append(i % 97).append(';')
+                    .append("ISBN").append(100000 + i).append(';')
+                    .append(!loaned).append(';')
+                    .append(loaned ? LocalDate.of(2026, 1 + i % 12, 1 + i % 28).toString() : "null").append(';')
+                    .append(loaned ? "U" + (i % 500) : "null").append(';')
+                    .append(i % 2).append('\n');
+        }
+        file = sb.toString();
+    }
+
+    @Benchmark
+    public void split(Blackhole bh) throws IOException {
+        try (BufferedReader br = new BufferedReader(new StringReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] parts = line.split(";");
+                if (parts.length < 5) continue;
+
+                Book b = new Book(parts[0].trim(), parts[1].trim(), parts[2].trim());
+                b.setAvailable(Boolean.parseBoolean(parts[3].trim()));
+                if (!"null".equals(parts[4].trim())) b.setDueDate(LocalDate.parse(parts[4].trim()));
+                if (parts.length >= 6) bh.consume(parts[5].trim());
+                if (parts.length >= 7) b.setFineApplied(Integer.parseInt(parts[6].trim()));
+                bh.consume(b);
+            }
+        }
+    }
+
+    @Benchmark
+    public void recordReader(Blackhole bh) throws IOException {
+        try (RecordReader r = new RecordReader(new StringReader(file))) {
+            while (r.next()) {
+                if (r.fieldCount() < 5) continue;
+
+                Book b = new Book(r.string(0), r.string(1), r.string(2));
+                b.setAvailable(r.bool(3));
+                if (!r.isNull(4)) b.setDueDate(r.date(4));
+                if (r.fieldCount() >= 6 && !r.isNull(5)) bh.consume(r.string(5));
+                if (r.fieldCount() >= 7) b.setFineApplied(r.integer(6));
+                bh.consume(b);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RecordParsingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
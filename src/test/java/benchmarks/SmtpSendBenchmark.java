@@ -0,0 +1,88 @@
+package benchmarks;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import service.SmtpTransportPool;
+import tests.FakeSmtpServer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares sending reminder emails with a new session and connection per message, as
+ * {@code RealEmailService} used to, against sending over a {@link SmtpTransportPool},
+ * both to a local {@link FakeSmtpServer}. The server's handshake delay stands in for the
+ * TCP and TLS setup of a remote mail server.
+ *
+ * <p>Run with:
+ * <pre><code>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) benchmarks.SmtpSendBenchmark
+ * </code></pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SmtpSendBenchmark {
+
+    @Param({"0", "20"})
+    int handshakeMillis;
+
+    private FakeSmtpServer server;
+    private SmtpTransportPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new FakeSmtpServer();
+        server.setHandshakeDelay(Duration.ofMillis(handshakeMillis));
+        pool = new SmtpTransportPool("localhost", server.getPort(), "library@mail.com", "secret", 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.close();
+        server.close();
+    }
+
+    private static Message reminder(Session session) throws MessagingException {
+        Message msg = new MimeMessage(session);
+        msg.setFrom(new InternetAddress("library@mail.com"));
+        msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse("alice@mail.com"));
+        msg.setSubject("Library Overdue Reminder");
+        msg.setText("You have 1 overdue book(s).");
+        return msg;
+    }
+
+    @Benchmark
+    public void connectionPerMessage() throws MessagingException {
+        Properties props = new Properties();
+        props.put("mail.smtp.auth", "true");
+        props.put("mail.smtp.starttls.enable", "true");
+        props.put("mail.smtp.host", "localhost");
+        props.put("mail.smtp.port", String.valueOf(server.getPort()));
+        Session session = Session.getInstance(props);
+        Transport.send(reminder(session), "library@mail.com", "secret");
+    }
+
+    @Benchmark
+    public void pooled() throws MessagingException {
+        pool.send(reminder(pool.getSession()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SmtpSendBenchmark.class.getSimpleName()).build()).run();
+    }
+}
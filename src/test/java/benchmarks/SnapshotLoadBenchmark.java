@@ -0,0 +1,107 @@
+package benchmarks;
+
+import domain.Book;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import service.BinarySnapshot;
+import service.RecordReader;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a cold catalog load from the text data file against a load from a
+ * {@link BinarySnapshot}, both decoding the same books from disk.
+ *
+ * <p>Run with:
+ * <pre><code>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) benchmarks.SnapshotLoadBenchmark
+ * </code></pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SnapshotLoadBenchmark {
+
+    @Param({"100000", "1000000"})
+    int records;
+
+    private Path text;
+    private Path binary;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        List<Book> books = new ArrayList<>(records);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < records; i++) {
+            Book b = new Book("Title " + i, "Author " + (i % 97), "ISBN" + (100000 + i));
+            boolean loaned = i % 3 == 0;
+            b.setAvailable(!loaned);
+            if (loaned) b.setDueDate(LocalDate.of(2026, 1 + i % 12, 1 + i % 28));
+            books.add(b);
+            sb.append(b.getTitle()).append(';').append(b.getAuthor()).append(';').append(b.getIsbn()).append(';')
+                    .append(b.isAvailable()).append(';').append(b.getDueDate()).append(";null;0\n");
+        }
+        text = Files.createTempFile("books", ".txt");
+        binary = Files.createTempFile("books", ".bin");
+        Files.writeString(text, sb, StandardCharsets.UTF_8);
+        Files.write(binary, BinarySnapshot.encode(books, (b, out) -> {
+            out.writeString(b.getTitle());
+            out.writeString(b.getAuthor());
+            out.writeString(b.getIsbn());
+            out.writeByte((b.isAvailable() ? 1 : 0) | (b.getDueDate() != null ? 2 : 0));
+            if (b.getDueDate() != null) out.writeInt((int) b.getDueDate().toEpochDay());
+        }));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(text);
+        Files.deleteIfExists(binary);
+    }
+
+    @Benchmark
+    public List<Book> text() throws IOException {
+        List<Book> books = new ArrayList<>();
+        try (RecordReader r = new RecordReader(new FileReader(text.toFile()))) {
+            while (r.next()) {
+                Book b = new Book(r.string(0), r.string(1), r.string(2));
+                b.setAvailable(r.bool(3));
+                if (!r.isNull(4)) b.setDueDate(r.date(4));
+                b.setFineApplied(r.integer(6));
+                books.add(b);
+            }
+        }
+        return books;
+    }
+
+    @Benchmark
+    public List<Book> binary() throws IOException {
+        return BinarySnapshot.decode(binary, in -> {
+            Book b = new Book(in.readString(), in.readString(), in.readString());
+            int flags = in.readByte();
+            b.setAvailable((flags & 1) != 0);
+            if ((flags & 2) != 0) b.setDueDate(LocalDate.ofEpochDay(in.readInt()));
+            return b;
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SnapshotLoadBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,224 @@
+package tests;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process SMTP server for tests and benchmarks of the mail code. It accepts any
+ * login and records the messages it receives. A handshake delay can stand in for the
+ * TCP and TLS setup of a real server, a message delay for a slow server, and upcoming
+ * messages can be refused with a temporary error.
+ */
+public class FakeSmtpServer implements AutoCloseable {
+
+    private final ServerSocket socket;
+    /** Platform threads, so the server keeps running while virtual threads of the client are pinned */
+    private final ExecutorService sessions = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "fake-smtp-session");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+
+    /** A message accepted by the server */
+    public record Received(String from, List<String> recipients, String data) {
+
+        /** Returns the value of a header of the message, or null. */
+        public String header(String name) {
+            for (String line : data.split("\r?\n")) {
+                if (line.isEmpty()) return null;
+                if (line.regionMatches(true, 0, name + ":", 0, name.length() + 1)) {
+                    return line.substring(name.length() + 1).trim();
+                }
+            }
+            return null;
+        }
+    }
+
+    private final List<Received> received = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean recording = true;
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile Duration handshakeDelay = Duration.ZERO;
+    private volatile Duration messageDelay = Duration.ZERO;
+
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+
+    /**
+     * Starts a server on a free loopback port.
+     *
+     * @throws IOException if no port can be bound
+     */
+    public FakeSmtpServer() throws IOException {
+        socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "fake-smtp");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /** Delays the greeting of every new connection, like a TCP and TLS handshake. */
+    public void setHandshakeDelay(Duration delay) {
+        this.handshakeDelay = delay;
+    }
+
+    /** Delays the reply to every message, like a slow server. */
+    public void setMessageDelay(Duration delay) {
+        this.messageDelay = delay;
+    }
+
+    /** Refuses the next {@code count} messages with a temporary error. */
+    public void failNextMessages(int count) {
+        failures.set(count);
+    }
+
+    /** Sets whether accepted messages are kept, e.g. off for long benchmark runs. */
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    public List<Received> getReceived() {
+        synchronized (received) {
+            return List.copyOf(received);
+        }
+    }
+
+    public long getConnections() {
+        return connections.get();
+    }
+
+    public long getMessages() {
+        return messages.get();
+    }
+
+    /** Closes every open connection, as a server dropping idle clients would. */
+    public void dropConnections() throws IOException {
+        for (Socket s : open) s.close();
+    }
+
+    private void accept() {
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                connections.incrementAndGet();
+                open.add(client);
+                sessions.submit(() -> serve(client));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (client) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII);
+            if (!handshakeDelay.isZero()) Thread.sleep(handshakeDelay);
+            reply(out, "220 fake ESMTP");
+            String line;
+            String from = null;
+            List<String> recipients = new ArrayList<>();
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+                switch (command) {
+                    case "EHLO" -> reply(out, "250-fake\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME");
+                    case "HELO", "NOOP" -> reply(out, "250 OK");
+                    case "RSET" -> {
+                        from = null;
+                        recipients.clear();
+                        reply(out, "250 OK");
+                    }
+                    case "MAIL" -> {
+                        from = address(line);
+                        recipients.clear();
+                        reply(out, "250 OK");
+                    }
+                    case "RCPT" -> {
+                        recipients.add(address(line));
+                        reply(out, "250 OK");
+                    }
+                    case "AUTH" -> authenticate(line, in, out);
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        StringBuilder data = new StringBuilder();
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+                        }
+                        if (!messageDelay.isZero()) Thread.sleep(messageDelay);
+                        if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                            reply(out, "451 4.3.0 Temporary failure");
+                        } else {
+                            messages.incrementAndGet();
+                            if (recording) received.add(new Received(from, List.copyOf(recipients), data.toString()));
+                            reply(out, "250 OK");
+                        }
+                        from = null;
+                        recipients.clear();
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // client went away or the connection was dropped
+        } finally {
+            open.remove(client);
+        }
+    }
+
+    private static String address(String line) {
+        int start = line.indexOf('<');
+        int end = line.indexOf('>', start + 1);
+        return start < 0 || end < 0 ? line.substring(line.indexOf(':') + 1).trim() : line.substring(start + 1, end);
+    }
+
+    private static void authenticate(String line, BufferedReader in, Writer out) throws IOException {
+        String[] parts = line.split(" ");
+        if (parts.length > 1 && parts[1].equalsIgnoreCase("LOGIN")) {
+            reply(out, "334 VXNlcm5hbWU6");
+            in.readLine();
+            reply(out, "334 UGFzc3dvcmQ6");
+            in.readLine();
+        } else if (parts.length == 2) {
+            reply(out, "334 ");
+            in.readLine();
+        }
+        reply(out, "235 Authentication successful");
+    }
+
+    private static void reply(Writer out, String reply) throws IOException {
+        out.write(reply + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        dropConnections();
+        sessions.close();
+    }
+}
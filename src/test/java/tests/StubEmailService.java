@@ -0,0 +1,42 @@
+package tests;
+
+import service.EmailService;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for a mail provider: records every email it is asked to send and can
+ * be told to fail a number of upcoming sends.
+ */
+public class StubEmailService implements EmailService {
+
+    /** An email handed to the stub */
+    public record Sent(String to, String message, String idempotencyKey) {}
+
+    private final List<Sent> sent = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /** Makes the next {@code count} sends fail. */
+    public void failNext(int count) {
+        failures.set(count);
+    }
+
+    public List<Sent> getSent() {
+        return sent;
+    }
+
+    @Override
+    public void sendEmail(String to, String message) {
+        sendEmail(to, message, null);
+    }
+
+    @Override
+    public void sendEmail(String to, String message, String idempotencyKey) {
+        if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            throw new IllegalStateException("Failed to send email to " + to);
+        }
+        sent.add(new Sent(to, message, idempotencyKey));
+    }
+}
@@ -0,0 +1,42 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.AtomicFiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class atomicFilesTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeLinesReplacesContentAndLeavesNoTempFile() throws IOException {
+        Path target = dir.resolve("users.txt");
+        Files.writeString(target, "old;content\n");
+
+        AtomicFiles.writeLines(target, List.of("Sam;U1;sam@mail.com;12.0", "Ann;U2;ann@mail.com;0.0"));
+
+        assertEquals(List.of("Sam;U1;sam@mail.com;12.0", "Ann;U2;ann@mail.com;0.0"), Files.readAllLines(target));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(target), files.toList());
+        }
+    }
+
+    @Test
+    void writeLinesCreatesMissingDirectories() throws IOException {
+        Path target = dir.resolve("nested/data/books.txt");
+
+        AtomicFiles.writeLines(target, List.of());
+
+        assertTrue(Files.exists(target));
+        assertEquals(0, Files.size(target));
+    }
+}
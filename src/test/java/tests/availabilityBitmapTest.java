@@ -0,0 +1,62 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import service.AvailabilityBitmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class availabilityBitmapTest {
+
+    @Test
+    void setCountAndScanAcrossSegments() {
+        AvailabilityBitmap bitmap = new AvailabilityBitmap();
+        bitmap.ensureCapacity(40_000);
+        assertTrue(bitmap.capacity() >= 40_000);
+
+        int[] slots = {0, 63, 64, 16_383, 16_384, 39_999};
+        for (int s : slots) assertTrue(bitmap.set(s, true));
+        assertFalse(bitmap.set(63, true));
+        assertEquals(slots.length, bitmap.countOnLoan());
+
+        List<Integer> found = new ArrayList<>();
+        for (int s = bitmap.nextOnLoan(0); s >= 0; s = bitmap.nextOnLoan(s + 1)) found.add(s);
+        assertEquals(List.of(0, 63, 64, 16_383, 16_384, 39_999), found);
+
+        assertTrue(bitmap.set(64, false));
+        assertFalse(bitmap.isOnLoan(64));
+        assertEquals(16_383, bitmap.nextOnLoan(65));
+        assertEquals(-1, bitmap.nextOnLoan(40_000));
+    }
+
+    @Test
+    void growingKeepsBits() {
+        AvailabilityBitmap bitmap = new AvailabilityBitmap();
+        assertEquals(0, bitmap.capacity());
+        assertFalse(bitmap.isOnLoan(5));
+        bitmap.ensureCapacity(1);
+        bitmap.set(5, true);
+        bitmap.ensureCapacity(100_000);
+        assertTrue(bitmap.isOnLoan(5));
+        assertEquals(1, bitmap.countOnLoan());
+    }
+
+    @Test
+    void concurrentFlipsAreNotLost() throws InterruptedException {
+        AvailabilityBitmap bitmap = new AvailabilityBitmap();
+        bitmap.ensureCapacity(64 * 8);
+        // every thread flips its own bits of the same words
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int s = offset; s < 64 * 8; s += threads.length) bitmap.set(s, true);
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(64 * 8, bitmap.countOnLoan());
+    }
+}
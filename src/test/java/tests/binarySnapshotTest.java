@@ -0,0 +1,68 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.BinarySnapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class binarySnapshotTest {
+
+    private record Row(String name, int count, long amount, double balance, int flags) {
+    }
+
+    private static void encode(Row r, BinarySnapshot.Writer out) {
+        out.writeString(r.name());
+        out.writeVarInt(r.count());
+        out.writeLong(r.amount());
+        out.writeDouble(r.balance());
+        out.writeByte(r.flags());
+    }
+
+    private static Row decode(BinarySnapshot.Reader in) {
+        return new Row(in.readString(), in.readVarInt(), in.readLong(), in.readDouble(), in.readByte());
+    }
+
+    @Test
+    void recordsRoundTrip(@TempDir Path dir) throws IOException {
+        List<Row> rows = List.of(
+                new Row("Café ☕", 0, -5L, 12.5, 0xFF),
+                new Row("", Integer.MAX_VALUE, Long.MAX_VALUE, 0.1, 0),
+                new Row("x".repeat(500), 300, 0L, -3.75, 5));
+        Path file = dir.resolve("rows.bin");
+        Files.write(file, BinarySnapshot.encode(rows, binarySnapshotTest::encode));
+
+        assertEquals(rows, BinarySnapshot.decode(file, binarySnapshotTest::decode));
+    }
+
+    @Test
+    void emptySnapshotDecodesToEmptyList() throws IOException {
+        byte[] data = BinarySnapshot.encode(List.<Row>of(), binarySnapshotTest::encode);
+        assertTrue(BinarySnapshot.decode(data, binarySnapshotTest::decode).isEmpty());
+    }
+
+    @Test
+    void corruptedSnapshotIsRejected() {
+        byte[] data = BinarySnapshot.encode(List.of(new Row("a", 1, 2, 3, 4)), binarySnapshotTest::encode);
+        data[data.length - 1] ^= 1;
+        IOException e = assertThrows(IOException.class, () -> BinarySnapshot.decode(data, binarySnapshotTest::decode));
+        assertTrue(e.getMessage().contains("Checksum"));
+    }
+
+    @Test
+    void textFileIsNotMistakenForSnapshot() {
+        byte[] text = "Java 101;John Doe;ISBN123;true;null;null;0\n".getBytes();
+        assertThrows(IOException.class, () -> BinarySnapshot.decode(text, binarySnapshotTest::decode));
+    }
+
+    @Test
+    void negativeVarIntIsRefused() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BinarySnapshot.encode(List.of(new Row("a", -1, 0, 0, 0)), binarySnapshotTest::encode));
+    }
+}
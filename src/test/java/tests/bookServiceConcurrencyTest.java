@@ -0,0 +1,185 @@
+package tests;
+
+import domain.Book;
+import domain.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.BookService;
+import service.MutationLog;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class bookServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @TempDir
+    Path dir;
+
+    private BookService bookService;
+    private MutationLog journal;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setup() {
+        bookService = new BookService();
+        bookService.writeToFile(List.of());
+        journal = new MutationLog(dir.resolve("books.journal").toString());
+        bookService.setJournal(journal);
+        pool = Executors.newFixedThreadPool(THREADS);
+    }
+
+    private void runAll(List<Callable<Void>> tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        for (Future<Void> f : futures) f.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+    }
+
+    @Test
+    void sameItemIsBorrowedExactlyOnce() throws Exception {
+        bookService.addMedia(new Book("Java 101", "John Doe", "ISBN123"));
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            User user = new User("User" + t, "U" + t, "u" + t + "@mail.com");
+            tasks.add(() -> {
+                try {
+                    bookService.borrowMedia(user, "ISBN123");
+                    succeeded.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    assertEquals("Book already borrowed", e.getMessage());
+                    refused.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        assertEquals(1, succeeded.get());
+        assertEquals(THREADS - 1, refused.get());
+        assertEquals(1, journal.readAll().size());
+    }
+
+    @Test
+    void borrowsAndReturnsOfDifferentItemsRunInParallel() throws Exception {
+        int perThread = 40;
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < perThread; i++) {
+                bookService.addMedia(new Book("Title " + t + "-" + i, "Author", "ISBN-" + t + "-" + i));
+            }
+        }
+        List<User> users = new ArrayList<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            User user = new User("User" + t, "U" + t, "u" + t + "@mail.com");
+            users.add(user);
+            int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < perThread; i++) bookService.borrowMedia(user, "ISBN-" + thread + "-" + i);
+                // odd threads give everything back again
+                if (thread % 2 == 1) bookService.returnAllMediaForUser(user);
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(t % 2 == 0, bookService.hasActiveLoans(users.get(t)), "user " + t);
+        }
+        long borrowed = bookService.getAllMedia().stream().filter(b -> !b.isAvailable()).count();
+        assertEquals((long) THREADS / 2 * perThread, borrowed);
+
+        // the journal order matches the transitions: a fresh load reaches the same state
+        BookService reloaded = new BookService();
+        reloaded.setJournal(journal);
+        assertEquals(borrowed, reloaded.getAllMedia().stream().filter(b -> !b.isAvailable()).count());
+    }
+
+    @Test
+    void fineIsClaimedExactlyOnce() throws Exception {
+        Book book = new Book("Java 101", "John Doe", "ISBN123");
+        bookService.addMedia(book);
+        bookService.borrowMedia(new User("Alice", "U1", "alice@mail.com"), "ISBN123");
+        AtomicInteger claimed = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                if (bookService.tryMarkFineApplied(book)) claimed.incrementAndGet();
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        assertEquals(1, claimed.get());
+        assertEquals(1, book.getFineApplied());
+        assertEquals(0, book.getVersion() & 1);
+    }
+
+    @Test
+    void batchedFinesAreClaimedExactlyOnce() throws Exception {
+        User alice = new User("Alice", "U1", "alice@mail.com");
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Book book = new Book("Title " + i, "Author", "ISBN" + i);
+            bookService.addMedia(book);
+            bookService.borrowMedia(alice, "ISBN" + i);
+            books.add(book);
+        }
+        AtomicInteger claimed = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            // overlapping batches, with a duplicate, in different orders
+            List<Book> batch = new ArrayList<>(books.subList(t % 2 == 0 ? 0 : 10, 20));
+            batch.add(batch.get(0));
+            if (t % 3 == 0) java.util.Collections.reverse(batch);
+            tasks.add(() -> {
+                claimed.addAndGet(bookService.tryMarkFinesApplied(batch).size());
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        assertEquals(books.size(), claimed.get());
+        for (Book b : books) {
+            assertEquals(1, b.getFineApplied());
+            assertEquals(0, b.getVersion() & 1);
+        }
+        BookService reloaded = new BookService();
+        reloaded.setJournal(journal);
+        assertTrue(reloaded.getAllMedia().stream().allMatch(b -> b.getFineApplied() == 1));
+    }
+
+    @Test
+    void tornJournalRecordIsSkippedOnReload() throws Exception {
+        bookService.addMedia(new Book("Java 101", "John Doe", "ISBN1"));
+        bookService.addMedia(new Book("Clean Code", "Robert Martin", "ISBN2"));
+        bookService.borrowMedia(new User("Alice", "U1", "alice@mail.com"), "ISBN1");
+        long intact = journal.length();
+        // a crash halfway through the next append
+        java.nio.file.Files.writeString(journal.getFile().toPath(), "BORROW;ISBN2;U1;2030-0",
+                java.nio.file.StandardOpenOption.APPEND);
+
+        BookService reloaded = new BookService();
+        reloaded.setJournal(journal);
+        List<Book> books = reloaded.getAllMedia();
+        assertFalse(books.get(0).isAvailable());
+        assertTrue(books.get(1).isAvailable());
+        assertEquals(intact, journal.length());
+    }
+}
@@ -4,10 +4,14 @@ import domain.Book;
 import domain.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import service.BookService;
+import service.MutationLog;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
 import static org.mockito.Mockito.*;
@@ -111,12 +115,189 @@ class bookServiceTest {
             bw.write("Title;Author;ISBN;true;invalid-date;null;0");
             bw.newLine();
         }
-        // just call readFromFile to trigger warning branch
-        List<Book> books = bookService.getAllMedia();
+        // the catalog is loaded at construction, so read it through a fresh service
+        List<Book> books = new BookService().getAllMedia();
         assertEquals(1, books.size());
         assertNull(books.get(0).getDueDate());
     }
 
+    @Test
+    void getAllMediaServedFromResidentCatalog() throws IOException {
+        bookService.addMedia(new Book("Java 101", "John Doe", "ISBN123"));
+        List<Book> first = bookService.getAllMedia();
+        List<Book> books = bookService.getAllMedia();
+        // unchanged file: the same resident instances are served, no reload
+        assertSame(first.get(0), books.get(0));
+        assertEquals(0, bookService.getChangeDetector().getChangesDetected());
+        assertThrows(UnsupportedOperationException.class,
+                () -> books.add(new Book("Other", "Author", "ISBN999")));
+    }
+
+    @Test
+    void externalEditIsPickedUp() throws IOException {
+        bookService.addMedia(new Book("Java 101", "John Doe", "ISBN123"));
+        BookService other = new BookService();
+        assertEquals(1, other.getAllMedia().size());
+
+        // another instance writes the file behind this service's back
+        other.addMedia(new Book("Python", "Jane Doe", "ISBN456"));
+        assertEquals(2, bookService.getAllMedia().size());
+        assertEquals(1, bookService.getChangeDetector().getChangesDetected());
+
+        // same content rewritten with a new modification time: no reload
+        Path file = Path.of("data/books.txt");
+        Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        Book cached = bookService.getAllMedia().get(0);
+        assertSame(cached, bookService.getAllMedia().get(0));
+        assertEquals(1, bookService.getChangeDetector().getChangesDetected());
+    }
+
+    @Test
+    void borrowLooksUpByIdentifierAfterCatalogReplaced() {
+        bookService.addMedia(new Book("Java 101", "John Doe", "ISBN123"));
+        bookService.writeToFile(List.of());
+        Exception ex = assertThrows(IllegalArgumentException.class,
+                () -> bookService.borrowMedia(user, "ISBN123"));
+        assertEquals("Book not found", ex.getMessage());
+
+        bookService.writeToFile(List.of(new Book("Java 101", "John Doe", "ISBN123")));
+        assertFalse(bookService.borrowMedia(user, "ISBN123").isAvailable());
+    }
+
+    @Test
+    void borrowersResolvedWithSingleUserLookupPerLoad() throws IOException {
+        try (var bw = new java.io.BufferedWriter(new java.io.FileWriter("data/books.txt"))) {
+            bw.write("T1;A1;ISBN1;false;2030-01-01;U1;0");
+            bw.newLine();
+            bw.write("T2;A2;ISBN2;false;2030-01-01;U1;0");
+            bw.newLine();
+            bw.write("T3;A3;ISBN3;false;2030-01-01;U404;0");
+            bw.newLine();
+        }
+        service.UserService users = mock(service.UserService.class);
+        when(users.getUsersById()).thenReturn(java.util.Map.of("U1", user));
+
+        BookService service = new BookService();
+        service.setUserService(users);
+        List<Book> books = service.getAllMedia();
+
+        assertEquals(user, books.get(0).getBorrowedBy());
+        assertEquals(user, books.get(1).getBorrowedBy());
+        assertNull(books.get(2).getBorrowedBy());
+        verify(users, times(1)).getUsersById();
+        verify(users, never()).getAllUsers();
+    }
+
+    @Test
+    void journaledBorrowIsAppendedAndReplayed(@TempDir Path dir) throws IOException {
+        String journalPath = dir.resolve("books.journal").toString();
+        bookService.setJournal(new MutationLog(journalPath));
+        bookService.addMedia(new Book("Java 101", "John Doe", "ISBN123"));
+        List<String> snapshot = Files.readAllLines(Path.of("data/books.txt"));
+
+        bookService.borrowMedia(user, "ISBN123");
+
+        // the data file is untouched, the change lives in the journal
+        assertEquals(snapshot, Files.readAllLines(Path.of("data/books.txt")));
+        assertEquals(1, new MutationLog(journalPath).readAll().size());
+
+        BookService reloaded = new BookService();
+        reloaded.setJournal(new MutationLog(journalPath));
+        Book b = reloaded.getAllMedia().get(0);
+        assertFalse(b.isAvailable());
+        assertEquals(LocalDate.now().plusDays(28), b.getDueDate());
+
+        // a full write folds the journal into the data file
+        reloaded.writeToFile(reloaded.getAllMedia());
+        assertTrue(new MutationLog(journalPath).readAll().isEmpty());
+        assertFalse(new BookService().getAllMedia().get(0).isAvailable());
+    }
+
+    @Test
+    void mappedReadsLoadSameCatalog() {
+        bookService.addMedia(new Book("Java 101", "John Doe", "ISBN123"));
+        bookService.addMedia(new Book("Café Ümlaut", "Jane Doe", "ISBN456"));
+        bookService.borrowMedia(user, "ISBN123");
+
+        BookService mapped = new BookService();
+        mapped.setMappedReads(true);
+        List<Book> books = mapped.getAllMedia();
+        assertEquals(2, books.size());
+        assertFalse(books.get(0).isAvailable());
+        assertEquals(LocalDate.now().plusDays(28), books.get(0).getDueDate());
+        assertEquals("Café Ümlaut", books.get(1).getTitle());
+    }
+
+    @Test
+    void binarySnapshotRoundTripsCatalog(@TempDir Path dir) throws IOException {
+        File snapshot = dir.resolve("books.bin").toFile();
+        bookService.addMedia(new Book("Java 101", "John Doe", "ISBN123"));
+        bookService.setBinarySnapshot(snapshot);
+        assertEquals(1, bookService.getAllMedia().size()); // imported from the text file
+
+        bookService.addMedia(new Book("Python", "Jane Doe", "ISBN456"));
+        bookService.borrowMedia(user, "ISBN456");
+        bookService.getAllMedia().get(1).setFineApplied(1);
+        bookService.writeToFile(bookService.getAllMedia());
+        assertTrue(snapshot.exists());
+        assertEquals(1, Files.readAllLines(Path.of("data/books.txt")).size());
+
+        BookService reloaded = new BookService();
+        reloaded.setBinarySnapshot(snapshot);
+        List<Book> books = reloaded.getAllMedia();
+        assertEquals(2, books.size());
+        assertTrue(books.get(0).isAvailable());
+        assertEquals("Jane Doe", books.get(1).getAuthor());
+        assertFalse(books.get(1).isAvailable());
+        assertEquals(LocalDate.now().plusDays(28), books.get(1).getDueDate());
+        assertEquals(1, books.get(1).getFineApplied());
+
+        reloaded.exportText();
+        assertEquals(2, Files.readAllLines(Path.of("data/books.txt")).size());
+    }
+
+    @Test
+    void compactFoldsJournalIntoDataFile(@TempDir Path dir) throws IOException {
+        MutationLog journal = new MutationLog(dir.resolve("books.journal").toString());
+        bookService.setJournal(journal);
+        bookService.addMedia(new Book("Java 101", "John Doe", "ISBN123"));
+        bookService.addMedia(new Book("Python", "Jane Doe", "ISBN456"));
+        bookService.borrowMedia(user, "ISBN123");
+        long length = journal.length();
+        assertTrue(length > 0);
+
+        assertEquals(length, bookService.compact());
+        assertEquals(0, journal.length());
+        assertTrue(Files.readAllLines(Path.of("data/books.txt")).get(0).contains(";false;"));
+
+        // later mutations keep being journaled on top of the new snapshot
+        bookService.borrowMedia(user, "ISBN456");
+        BookService reloaded = new BookService();
+        reloaded.setJournal(journal);
+        assertFalse(reloaded.getAllMedia().get(0).isAvailable());
+        assertFalse(reloaded.getAllMedia().get(1).isAvailable());
+    }
+
+    @Test
+    void loansAreCountedFromBitmap() {
+        for (int i = 0; i < 5; i++) bookService.addMedia(new Book("Title " + i, "Author", "ISBN" + i));
+        bookService.borrowMedia(user, "ISBN1");
+        bookService.borrowMedia(user, "ISBN3");
+        assertEquals(2, bookService.countOnLoan());
+        assertTrue(bookService.hasActiveLoans(user));
+
+        bookService.returnAllMediaForUser(user);
+        assertEquals(0, bookService.countOnLoan());
+        assertFalse(bookService.hasActiveLoans(user));
+
+        // direct changes to a resident item are mirrored too
+        Book overdue = bookService.getAllMedia().get(4);
+        overdue.borrow(user);
+        overdue.setDueDate(LocalDate.now().minusDays(1));
+        assertEquals(List.of(overdue), bookService.getOverdueMedia());
+        assertEquals(1, bookService.countOnLoan());
+    }
+
     @Test
     void writeToFileHandlesUserNull() {
         Book book = new Book("Title", "Author", "ISBN1");
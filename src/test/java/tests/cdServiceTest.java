@@ -112,11 +112,24 @@ class cdServiceTest {
             bw.newLine();
         }
 
-        List<CD> cds = cdService.getAllMedia();
+        // the catalog is loaded on first use, so read it through a fresh service
+        List<CD> cds = new CDService().getAllMedia();
         assertEquals(1, cds.size());
         assertNull(cds.get(0).getDueDate()); // invalid date should be handled
     }
 
+    @Test
+    void borrowLooksUpByIdentifierAfterCatalogReplaced() {
+        cdService.addMedia(new CD("Album 1", "Artist 1", "CD123"));
+        cdService.writeToFile(List.of());
+        Exception ex = assertThrows(IllegalArgumentException.class,
+                () -> cdService.borrowMedia(user, "CD123"));
+        assertEquals("CD not found", ex.getMessage());
+
+        cdService.writeToFile(List.of(new CD("Album 1", "Artist 1", "CD123")));
+        assertFalse(cdService.borrowMedia(user, "CD123").isAvailable());
+    }
+
     @Test
     void writeToFileHandlesUserNull() {
         CD cd = new CD("Album Y", "Artist Y", "CD999");
@@ -0,0 +1,61 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import service.Compactable;
+import service.CompactionService;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class compactionServiceTest {
+
+    @Test
+    void runOnceCompactsOnlyTargetsOverThreshold() {
+        Compactable big = mock(Compactable.class);
+        Compactable small = mock(Compactable.class);
+        when(big.journalLength()).thenReturn(2048L);
+        when(big.compact()).thenReturn(2048L);
+        when(small.journalLength()).thenReturn(10L);
+
+        CompactionService compaction = new CompactionService(1024, big, small);
+        assertEquals(2048, compaction.runOnce());
+
+        verify(big).compact();
+        verify(small, never()).compact();
+        assertEquals(2048, compaction.getLastBytesReclaimed());
+        assertEquals(2048, compaction.getTotalBytesReclaimed());
+        assertEquals(1, compaction.getRuns());
+        assertTrue(compaction.getLastDurationMillis() >= 0);
+    }
+
+    @Test
+    void emptyJournalIsNeverCompacted() {
+        Compactable target = mock(Compactable.class);
+        when(target.journalLength()).thenReturn(0L);
+
+        new CompactionService(0, target).runOnce();
+        verify(target, never()).compact();
+    }
+
+    @Test
+    void backgroundRunsKeepGoingAfterFailure() {
+        Compactable target = mock(Compactable.class);
+        when(target.journalLength()).thenReturn(100L);
+        when(target.compact()).thenThrow(new RuntimeException("disk full")).thenReturn(100L);
+
+        CompactionService compaction = new CompactionService(0, target);
+        compaction.start(10, TimeUnit.MILLISECONDS);
+        try {
+            verify(target, timeout(2000).atLeast(2)).compact();
+        } finally {
+            compaction.stop();
+        }
+        assertThrows(IllegalStateException.class, () -> {
+            compaction.start(1, TimeUnit.SECONDS);
+            compaction.start(1, TimeUnit.SECONDS);
+        });
+        compaction.stop();
+    }
+}
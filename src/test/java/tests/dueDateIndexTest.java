@@ -0,0 +1,65 @@
+package tests;
+
+import domain.Book;
+import domain.CD;
+import domain.Media;
+import domain.User;
+import org.junit.jupiter.api.Test;
+import service.AvailabilityBitmap;
+import service.DueDateIndex;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class dueDateIndexTest {
+
+    private final LocalDate today = LocalDate.now();
+
+    @Test
+    void rangeQueryFollowsDueDateChanges() {
+        DueDateIndex index = new DueDateIndex();
+        AvailabilityBitmap loans = new AvailabilityBitmap();
+        loans.ensureCapacity(3);
+        Book a = new Book("A", "Author", "1");
+        Book b = new Book("B", "Author", "2");
+        CD c = new CD("C", "Artist", "3");
+        a.attach(loans, 0, index);
+        b.attach(loans, 1, index);
+        c.attach(loans, 2, index);
+        assertEquals(0, index.size());
+
+        User user = new User("Alice", "U1", "alice@example.com");
+        a.borrow(user);
+        b.borrow(user);
+        c.borrow(user);
+        assertEquals(3, index.size());
+        assertEquals(List.of(), index.dueBefore(today));
+
+        b.setDueDate(today.minusDays(3));
+        c.setDueDate(today.minusDays(1));
+        assertEquals(List.<Media>of(b, c), index.dueBefore(today));
+        assertEquals(List.<Media>of(b), index.dueBefore(today.minusDays(1)));
+
+        b.setDueDate(null);
+        assertEquals(List.<Media>of(c), index.dueBefore(today));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void reattachingMovesItemToNewIndex() {
+        DueDateIndex first = new DueDateIndex();
+        DueDateIndex second = new DueDateIndex();
+        AvailabilityBitmap loans = new AvailabilityBitmap();
+        loans.ensureCapacity(1);
+        Book book = new Book("A", "Author", "1");
+        book.setDueDate(today.minusDays(2));
+        book.attach(loans, 0, first);
+        assertEquals(List.<Media>of(book), first.dueBefore(today));
+
+        book.attach(loans, 0, second);
+        assertEquals(0, first.size());
+        assertEquals(List.<Media>of(book), second.dueBefore(today));
+    }
+}
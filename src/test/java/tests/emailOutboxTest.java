@@ -0,0 +1,204 @@
+package tests;
+
+import domain.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.EmailNotifier;
+import service.EmailOutbox;
+import service.EmailService;
+import service.TokenBucket;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class emailOutboxTest {
+
+    @TempDir
+    Path dir;
+
+    private String journal;
+    private StubEmailService provider;
+
+    @BeforeEach
+    void setup() {
+        journal = dir.resolve("outbox.journal").toString();
+        provider = new StubEmailService();
+    }
+
+    private EmailOutbox open() {
+        EmailOutbox outbox = new EmailOutbox(journal, provider);
+        outbox.setRateLimit(1000, 100);
+        return outbox;
+    }
+
+    @Test
+    void notifierEnqueuesAndDrainDelivers() throws Exception {
+        EmailOutbox outbox = open();
+        new EmailNotifier(outbox).notify(new User("Alice", "U1", "alice@mail.com"), "You have 1 overdue item(s).");
+
+        assertTrue(provider.getSent().isEmpty());
+        assertEquals(1, outbox.getPendingCount());
+        assertEquals(1, outbox.drain());
+        assertEquals("alice@mail.com", provider.getSent().get(0).to());
+        assertNotNull(provider.getSent().get(0).idempotencyKey());
+        assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    void duplicateKeysAreSentOnceEvenAfterRestart() throws Exception {
+        EmailOutbox outbox = open();
+        assertTrue(outbox.enqueue("k1", "alice@mail.com", "Reminder; with separators\nand lines"));
+        assertFalse(outbox.enqueue("k1", "alice@mail.com", "Reminder; with separators\nand lines"));
+        outbox.sendEmail("bob@mail.com", "Same text");
+        outbox.sendEmail("bob@mail.com", "Same text");
+        assertEquals(2, outbox.drain());
+
+        EmailOutbox reopened = open();
+        assertFalse(reopened.enqueue("k1", "alice@mail.com", "again"));
+        reopened.sendEmail("bob@mail.com", "Same text");
+        assertEquals(0, reopened.drain());
+        assertEquals(2, provider.getSent().size());
+        assertEquals("Reminder; with separators\nand lines", provider.getSent().get(0).message());
+    }
+
+    @Test
+    void queuedMessagesSurviveRestart() throws Exception {
+        open().enqueue("k1", "alice@mail.com", "Reminder");
+
+        EmailOutbox reopened = open();
+        assertEquals(1, reopened.getPendingCount());
+        assertEquals(1, reopened.drain());
+        assertEquals(1, provider.getSent().size());
+    }
+
+    @Test
+    void failedDeliveryIsRetriedWithBackoff() throws Exception {
+        EmailOutbox outbox = open();
+        outbox.setBackoff(Duration.ofMillis(100), Duration.ofSeconds(1), 5);
+        provider.failNext(2);
+        outbox.enqueue("k1", "alice@mail.com", "Reminder");
+
+        assertEquals(0, outbox.drain());
+        assertEquals(0, outbox.drain()); // not due yet
+        Thread.sleep(150);
+        assertEquals(0, outbox.drain()); // second failure doubles the wait
+        Thread.sleep(100);
+        assertEquals(0, outbox.drain());
+        Thread.sleep(150);
+        assertEquals(1, outbox.drain());
+        assertEquals(2, outbox.getFailedAttempts());
+    }
+
+    @Test
+    void messageBecomesDeadLetterAfterMaxAttempts() throws Exception {
+        EmailOutbox outbox = open();
+        outbox.setBackoff(Duration.ZERO, Duration.ZERO, 3);
+        provider.failNext(10);
+        outbox.enqueue("k1", "alice@mail.com", "Reminder");
+        for (int i = 0; i < 5; i++) outbox.drain();
+
+        assertEquals(3, outbox.getFailedAttempts());
+        assertEquals(1, outbox.getDeadLetterCount());
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(0, open().getPendingCount());
+    }
+
+    @Test
+    void compactionKeepsPendingAndRecentKeys() throws Exception {
+        EmailOutbox outbox = open();
+        for (int i = 0; i < 20; i++) outbox.enqueue("sent" + i, "alice@mail.com", "Reminder " + i);
+        outbox.drain();
+        outbox.enqueue("pending", "bob@mail.com", "Reminder");
+
+        assertTrue(outbox.compact() > 0);
+        EmailOutbox reopened = open();
+        assertEquals(1, reopened.getPendingCount());
+        assertFalse(reopened.enqueue("sent3", "alice@mail.com", "Reminder 3"));
+        assertEquals(1, reopened.drain());
+        assertEquals("bob@mail.com", provider.getSent().get(20).to());
+    }
+
+    @Test
+    void backgroundSenderDeliversAndStops() throws Exception {
+        EmailOutbox outbox = open();
+        outbox.start();
+        try {
+            outbox.enqueue("k1", "alice@mail.com", "Reminder");
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (provider.getSent().isEmpty() && System.nanoTime() < deadline) Thread.sleep(10);
+            assertEquals(1, provider.getSent().size());
+        } finally {
+            outbox.stop();
+        }
+        assertEquals(1, outbox.getSentCount());
+    }
+
+    @Test
+    void backgroundSenderSurvivesErrorsFromTheTransport() throws Exception {
+        // a transport whose configuration cannot be loaded fails with an Error, not an exception
+        EmailService broken = new StubEmailService() {
+            @Override
+            public void sendEmail(String to, String message, String idempotencyKey) {
+                if (to.startsWith("alice")) throw new ExceptionInInitializerError("no .env");
+                super.sendEmail(to, message, idempotencyKey);
+            }
+        };
+        EmailOutbox outbox = new EmailOutbox(journal, broken);
+        outbox.setRateLimit(1000, 100);
+        outbox.setBackoff(Duration.ofMinutes(1), Duration.ofMinutes(1), 5);
+        outbox.start();
+        try {
+            outbox.enqueue("k1", "alice@mail.com", "Reminder");
+            outbox.enqueue("k2", "bob@mail.com", "Reminder");
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (outbox.getSentCount() == 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        } finally {
+            outbox.stop();
+        }
+        assertEquals(1, outbox.getSentCount());
+        assertEquals(1, outbox.getFailedAttempts());
+        assertEquals(1, outbox.getPendingCount());
+    }
+
+    @Test
+    void onlyOneSenderDrainsAnOutboxFile() {
+        EmailOutbox first = open();
+        EmailOutbox second = open();
+        first.start();
+        try {
+            assertThrows(IllegalStateException.class, second::start);
+        } finally {
+            first.stop();
+        }
+        second.start();
+        second.stop();
+    }
+
+    @Test
+    void tokenBucketLimitsRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(20, 2);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) bucket.acquire();
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(150).toNanos());
+    }
+
+    @Test
+    void tornEnqueueIsSkippedAfterCrash() throws Exception {
+        EmailOutbox outbox = open();
+        assertTrue(outbox.enqueue("k1", "alice@mail.com", "First"));
+        java.nio.file.Files.writeString(Path.of(journal), "ENQUEUE;k2;YWxp",
+                java.nio.file.StandardOpenOption.APPEND);
+
+        EmailOutbox reopened = open();
+        assertEquals(1, reopened.getPendingCount());
+        assertTrue(reopened.enqueue("k2", "bob@mail.com", "Second"));
+        assertEquals(2, open().getPendingCount());
+    }
+}
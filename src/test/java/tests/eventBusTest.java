@@ -0,0 +1,145 @@
+package tests;
+
+import domain.User;
+import org.junit.jupiter.api.Test;
+import service.EventBus;
+import service.Observer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class eventBusTest {
+
+    private final User user = new User("Alice", "U1", "alice@mail.com");
+
+    @Test
+    void publishReturnsBeforeSlowObserversAreDone() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> received = new CopyOnWriteArrayList<>();
+        EventBus bus = new EventBus(16, 4, EventBus.Backpressure.BLOCK);
+        bus.subscribe((u, message) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(message);
+        });
+
+        for (int i = 0; i < 8; i++) bus.publish(user, "m" + i);
+        assertTrue(received.isEmpty());
+        assertFalse(bus.awaitIdle(Duration.ofMillis(50)));
+
+        release.countDown();
+        assertTrue(bus.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(8, received.size());
+        assertEquals(8, bus.getDispatched());
+        assertEquals(0, bus.getQueueDepth());
+        assertTrue(bus.getMaxDispatchLatency().toMillis() >= 50);
+        assertTrue(bus.shutdown(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void fullQueueAppliesBackpressurePolicy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch busy = new CountDownLatch(1);
+        Observer blocking = (u, message) -> {
+            busy.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        EventBus dropping = new EventBus(1, 1, EventBus.Backpressure.DROP);
+        dropping.subscribe(blocking);
+        dropping.publish(user, "taken by the worker");
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+        dropping.publish(user, "queued");
+        dropping.publish(user, "dropped");
+        assertEquals(1, dropping.getQueueDepth());
+        assertEquals(1, dropping.getDropped());
+
+        EventBus blockingBus = new EventBus(1, 1, EventBus.Backpressure.BLOCK);
+        blockingBus.setPublishTimeout(Duration.ofMillis(50));
+        blockingBus.subscribe(blocking);
+        blockingBus.publish(user, "taken by the worker");
+        blockingBus.publish(user, "queued");
+        blockingBus.publish(user, "dropped after waiting");
+        assertEquals(1, blockingBus.getDropped());
+
+        List<String> callers = new CopyOnWriteArrayList<>();
+        CountDownLatch running = new CountDownLatch(1);
+        EventBus callerRuns = new EventBus(1, 1, EventBus.Backpressure.CALLER_RUNS);
+        callerRuns.subscribe((u, message) -> {
+            if (message.equals("first")) {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            callers.add(Thread.currentThread().getName());
+        });
+        callerRuns.publish(user, "first");
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        callerRuns.publish(user, "queued");
+        callerRuns.publish(user, "run by caller");
+        assertEquals(List.of(Thread.currentThread().getName()), callers);
+        assertEquals(0, callerRuns.getDropped());
+
+        release.countDown();
+        assertTrue(dropping.shutdown(Duration.ofSeconds(5)));
+        assertTrue(blockingBus.shutdown(Duration.ofSeconds(5)));
+        assertTrue(callerRuns.shutdown(Duration.ofSeconds(5)));
+        assertEquals(3, callerRuns.getDispatched());
+    }
+
+    @Test
+    void failingObserverDoesNotStopDelivery() throws Exception {
+        Observer failing = mock(Observer.class);
+        doThrow(new RuntimeException("SMTP down")).when(failing).notify(any(), any());
+        Observer working = mock(Observer.class);
+        EventBus bus = new EventBus(8, 1, EventBus.Backpressure.BLOCK);
+        bus.subscribe(failing);
+        bus.subscribe(working);
+
+        bus.publish(user, "one");
+        bus.publish(user, "two");
+        assertTrue(bus.awaitIdle(Duration.ofSeconds(5)));
+
+        verify(working).notify(user, "one");
+        verify(working).notify(user, "two");
+        assertEquals(2, bus.getFailed());
+        assertEquals(2, bus.getDispatched());
+        assertEquals(4, bus.getPublished());
+
+        assertTrue(bus.shutdown(Duration.ofSeconds(1)));
+        assertThrows(IllegalStateException.class, () -> bus.publish(user, "late"));
+    }
+
+    @Test
+    void errorFromAnObserverDoesNotStopTheWorker() throws Exception {
+        Observer failing = mock(Observer.class);
+        doThrow(new AssertionError("broken observer")).when(failing).notify(user, "one");
+        EventBus bus = new EventBus(8, 1, EventBus.Backpressure.BLOCK);
+        bus.subscribe(failing);
+
+        bus.publish(user, "one");
+        bus.publish(user, "two");
+        assertTrue(bus.awaitIdle(Duration.ofSeconds(5)));
+
+        verify(failing).notify(user, "two");
+        assertEquals(1, bus.getFailed());
+        assertEquals(1, bus.getDispatched());
+        assertTrue(bus.shutdown(Duration.ofSeconds(1)));
+    }
+}
@@ -0,0 +1,71 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.FileChangeDetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class fileChangeDetectorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unchangedFileIsNotReported() throws IOException {
+        Path file = Files.writeString(dir.resolve("books.txt"), "a;b\n");
+        FileChangeDetector changes = new FileChangeDetector();
+        changes.track(file.toFile(), true);
+
+        assertFalse(changes.hasChanged());
+        assertEquals(1, changes.getChecks());
+        assertEquals(0, changes.getChangesDetected());
+    }
+
+    @Test
+    void appendIsReported() throws IOException {
+        Path file = Files.writeString(dir.resolve("books.journal"), "RETURN;ISBN1\n");
+        FileChangeDetector changes = new FileChangeDetector();
+        changes.track(file.toFile(), false);
+
+        Files.writeString(file, "RETURN;ISBN2\n", StandardOpenOption.APPEND);
+        assertTrue(changes.hasChanged());
+        assertEquals(1, changes.getChangesDetected());
+    }
+
+    @Test
+    void sameSizeEditIsToldApartFromTouchByHash() throws IOException {
+        Path file = Files.writeString(dir.resolve("users.txt"), "Sam;U1;s@m;1.0\n");
+        FileChangeDetector changes = new FileChangeDetector();
+        changes.track(file.toFile(), true);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        assertFalse(changes.hasChanged());
+
+        Files.writeString(file, "Sam;U1;s@m;9.0\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+        assertTrue(changes.hasChanged());
+    }
+
+    @Test
+    void creationAndDeletionAreReported() throws IOException {
+        File missing = dir.resolve("cds.txt").toFile();
+        FileChangeDetector changes = new FileChangeDetector();
+        changes.track(missing, true);
+        assertFalse(changes.hasChanged());
+
+        Files.writeString(missing.toPath(), "x");
+        assertTrue(changes.hasChanged());
+
+        changes.track(missing, true);
+        Files.delete(missing.toPath());
+        assertTrue(changes.hasChanged());
+    }
+}
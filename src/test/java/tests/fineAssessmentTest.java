@@ -0,0 +1,134 @@
+package tests;
+
+import domain.Book;
+import domain.CD;
+import domain.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.BookFineStrategy;
+import service.BookService;
+import service.CDService;
+import service.FineAssessment;
+import service.MutationLog;
+import service.UserService;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class fineAssessmentTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void finesAreAggregatedPerUserAcrossChunksAndCatalogs() {
+        List<User> users = new ArrayList<>();
+        for (int u = 0; u < 10; u++) users.add(new User("User " + u, "U" + u, "u" + u + "@mail.com"));
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Book b = new Book("Book " + i, "Author", "ISBN" + i);
+            b.borrow(users.get(i % 10));
+            b.setDueDate(LocalDate.now().minusDays(3));
+            books.add(b);
+        }
+        Book alreadyFined = new Book("Fined", "Author", "ISBN-F");
+        alreadyFined.borrow(users.get(0));
+        alreadyFined.setDueDate(LocalDate.now().minusDays(3));
+        alreadyFined.setFineApplied(1);
+        books.add(alreadyFined);
+
+        CD cd = new CD("Beats", "Artist", "CD1");
+        cd.borrow(users.get(1));
+        cd.setDueDate(LocalDate.now().minusDays(2));
+
+        BookService bookService = mock(BookService.class);
+        CDService cdService = mock(CDService.class);
+        UserService userService = mock(UserService.class);
+        when(bookService.getOverdueMedia()).thenReturn(books);
+        when(cdService.getOverdueMedia()).thenReturn(List.of(cd));
+        when(bookService.tryMarkFinesApplied(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(cdService.tryMarkFinesApplied(anyList())).thenAnswer(inv -> inv.getArgument(0));
+        when(bookService.calculateFine(any(), any())).thenReturn(5);
+        when(cdService.calculateFine(any(), any())).thenReturn(20);
+        when(userService.applyFines(anyList())).thenAnswer(inv -> (int) ((List<UserService.Charge>) inv.getArgument(0))
+                .stream().map(UserService.Charge::userId).distinct().count());
+
+        FineAssessment assessment = new FineAssessment(pool);
+        assessment.setReceipts(false);
+        FineAssessment.Result result = assessment.assess(userService, bookService, cdService);
+
+        assertEquals(1001, result.fines().size());
+        assertSame(books.get(0), result.fines().get(0).media());
+        assertSame(cd, result.fines().get(1000).media());
+        assertEquals(3, result.fines().get(0).overdueDays());
+        assertEquals(10, result.usersCharged());
+        assertEquals(50000L, result.finesById().get("U0"));
+        assertEquals(52000L, result.finesById().get("U1"));
+        // one charge per fine, so each keeps its own ledger event
+        verify(userService, times(1)).applyFines(argThat((List<UserService.Charge> charges) -> charges.size() == 1001));
+        verify(bookService, times(1)).tryMarkFinesApplied(books.subList(0, 1000));
+    }
+
+    @Test
+    void nothingOverdueChargesNobody() {
+        BookService bookService = mock(BookService.class);
+        UserService userService = mock(UserService.class);
+        when(bookService.getOverdueMedia()).thenReturn(List.of());
+
+        FineAssessment.Result result = new FineAssessment(pool).assess(userService, bookService);
+
+        assertTrue(result.fines().isEmpty());
+        assertEquals(0, result.usersCharged());
+        verifyNoInteractions(userService);
+        verify(bookService, never()).tryMarkFinesApplied(anyList());
+    }
+
+    @Test
+    void finesThatFailToBeChargedAreIssuedByTheNextAssessment() {
+        User borrower = new User("Reader", "U1", "reader@mail.com");
+        Book book = new Book("Late", "Author", "ISBN-L");
+        book.borrow(borrower);
+        book.setDueDate(LocalDate.now().minusDays(3));
+
+        UserService userService = mock(UserService.class);
+        when(userService.getUsersById()).thenReturn(Map.of("U1", borrower));
+        when(userService.applyFines(anyList()))
+                .thenThrow(new IllegalStateException("Users file not writable"))
+                .thenReturn(1);
+        BookService bookService = new BookService();
+        bookService.writeToFile(List.of(book));
+        bookService.setUserService(userService);
+        bookService.setJournal(new MutationLog(dir.resolve("books.journal").toString()));
+        bookService.setFineStrategy(new BookFineStrategy());
+
+        FineAssessment assessment = new FineAssessment(pool);
+        assessment.setReceipts(false);
+        assertThrows(IllegalStateException.class, () -> assessment.assess(userService, bookService));
+        assertEquals(0, bookService.search("ISBN-L").get(0).getFineApplied());
+
+        FineAssessment.Result result = assessment.assess(userService, bookService);
+
+        assertEquals(1, result.fines().size());
+        assertEquals(6000L, result.finesById().get("U1"));
+        assertEquals(1, bookService.search("ISBN-L").get(0).getFineApplied());
+        verify(userService, times(2)).applyFines(List.of(new UserService.Charge("U1", 6000L, "ISBN-L")));
+    }
+}
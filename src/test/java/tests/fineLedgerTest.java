@@ -0,0 +1,140 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.FineLedger;
+import service.MutationLog;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class fineLedgerTest {
+
+    @TempDir
+    Path dir;
+
+    /** Clock moved by hand */
+    private static final class ManualClock extends Clock {
+        Instant now = Instant.parse("2026-03-01T10:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private MutationLog log() {
+        return new MutationLog(dir.resolve("fines.ledger").toString());
+    }
+
+    @Test
+    void balancesAndStatementsFollowEvents() {
+        ManualClock clock = new ManualClock();
+        FineLedger ledger = new FineLedger(log(), clock);
+        ledger.record(FineLedger.Type.ISSUED, "U1", 1500, 1500, "ISBN1");
+        clock.now = Instant.parse("2026-03-05T10:00:00Z");
+        ledger.record(FineLedger.Type.ISSUED, "U2", 700, 700, null);
+        ledger.record(FineLedger.Type.PAID, "U1", 1000, 500, "");
+        clock.now = Instant.parse("2026-03-09T10:00:00Z");
+        ledger.record(FineLedger.Type.WAIVED, "U1", 500, 0, "damaged; returned");
+        ledger.sync();
+
+        assertEquals(0, ledger.balance("U1"));
+        assertEquals(700, ledger.balance("U2"));
+        assertEquals(0, ledger.balance("U9"));
+        assertEquals(3, ledger.statement("U1").size());
+
+        List<FineLedger.Entry> march = ledger.statement("U1",
+                Instant.parse("2026-03-02T00:00:00Z"), Instant.parse("2026-03-09T10:00:00Z"));
+        assertEquals(1, march.size());
+        assertEquals(FineLedger.Type.PAID, march.get(0).type());
+        assertEquals(500, march.get(0).balanceMinor());
+
+        // reloaded from the log: same history and balances
+        FineLedger reloaded = new FineLedger(log(), clock);
+        assertEquals(ledger.statement("U1"), reloaded.statement("U1"));
+        assertEquals(700, reloaded.balance("U2"));
+        assertEquals("damaged  returned", reloaded.statement("U1").get(2).reference());
+    }
+
+    @Test
+    void eventsAreNeverDatedBeforeEarlierOnes() {
+        ManualClock clock = new ManualClock();
+        FineLedger ledger = new FineLedger(log(), clock);
+        ledger.record(FineLedger.Type.ISSUED, "U1", 100, 100, null);
+        Instant first = clock.now;
+        clock.now = first.minusSeconds(3600);
+        FineLedger.Entry late = ledger.record(FineLedger.Type.ISSUED, "U1", 100, 200, null);
+        assertEquals(first, late.at());
+        assertThrows(IllegalArgumentException.class, () -> ledger.record(FineLedger.Type.PAID, "U1", -1, 0, null));
+        assertThrows(IllegalArgumentException.class, () -> ledger.record(FineLedger.Type.PAID, null, 1, 0, null));
+    }
+
+    @Test
+    void eventsOfAnotherInstanceAreSeen() {
+        ManualClock clock = new ManualClock();
+        FineLedger first = new FineLedger(log(), clock);
+        FineLedger second = new FineLedger(log(), clock);
+        assertEquals(0, second.balance("U1"));
+
+        first.record(FineLedger.Type.ISSUED, "U1", 250, 250, null);
+        first.sync();
+        assertEquals(250, second.balance("U1"));
+    }
+
+    @Test
+    void balancesAreComputedFromTheEvents() {
+        FineLedger ledger = new FineLedger(log(), new ManualClock());
+        // the first event carries the balance from before the ledger
+        ledger.record(FineLedger.Type.ISSUED, "U1", 300, 1300, null);
+        ledger.record(FineLedger.Type.PAID, "U1", 500, 800, null);
+        assertEquals(800, ledger.balance("U1"));
+        assertEquals(0, ledger.getDiscrepancies());
+
+        // a balance change that never got its event
+        ledger.record(FineLedger.Type.ISSUED, "U1", 100, 1000, null);
+        assertEquals(900, ledger.balance("U1"));
+        assertEquals(1, ledger.getDiscrepancies());
+
+        FineLedger reloaded = new FineLedger(log(), new ManualClock());
+        assertEquals(900, reloaded.balance("U1"));
+        assertEquals(1, reloaded.getDiscrepancies());
+    }
+
+    @Test
+    void batchesAreRecordedInOneWrite() {
+        MutationLog log = log();
+        FineLedger ledger = new FineLedger(log, new ManualClock());
+        List<FineLedger.Entry> entries = ledger.record(List.of(
+                new FineLedger.Event(FineLedger.Type.ISSUED, "U1", 300, 300, "ISBN1"),
+                new FineLedger.Event(FineLedger.Type.ISSUED, "U1", 200, 500, "CD1"),
+                new FineLedger.Event(FineLedger.Type.ISSUED, "U2", 700, 700, "ISBN2")));
+        assertEquals(3, entries.size());
+        assertEquals(500, ledger.balance("U1"));
+        assertEquals(700, ledger.balance("U2"));
+        assertEquals(0, ledger.getDiscrepancies());
+        assertEquals(3, log.readAll().size());
+
+        assertThrows(IllegalArgumentException.class, () -> ledger.record(List.of(
+                new FineLedger.Event(FineLedger.Type.ISSUED, "U3", 100, 100, null),
+                new FineLedger.Event(FineLedger.Type.ISSUED, "", 100, 100, null))));
+        assertEquals(0, ledger.balance("U3"));
+        assertEquals(3, log.readAll().size());
+    }
+}
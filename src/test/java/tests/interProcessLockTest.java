@@ -0,0 +1,110 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.InterProcessLock;
+import service.LockTimeoutException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("try") // lock handles only scope the held lock
+class interProcessLockTest {
+
+    @TempDir
+    Path dir;
+
+    /** Holds the lock file from a separate JVM until a line arrives on stdin */
+    public static class Holder {
+        public static void main(String[] args) throws Exception {
+            try (FileChannel ch = FileChannel.open(Path.of(args[0]), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 var lock = ch.lock()) {
+                System.out.println("locked");
+                System.out.flush();
+                new BufferedReader(new InputStreamReader(System.in)).readLine();
+            }
+        }
+    }
+
+    @Test
+    void sameFileSharesOneLock() {
+        File data = dir.resolve("books.txt").toFile();
+        assertSame(InterProcessLock.forFile(data), InterProcessLock.forFile(new File(dir.toFile(), "./books.txt")));
+    }
+
+    @Test
+    void nestedAccessWithinProcessDoesNotWait() {
+        InterProcessLock lock = InterProcessLock.forFile(dir.resolve("books.txt").toFile());
+        lock.setTimeout(Duration.ofMillis(200));
+        try (InterProcessLock.Held write = lock.exclusive();
+             InterProcessLock.Held read = lock.shared();
+             InterProcessLock.Held again = lock.exclusive()) {
+            assertEquals(3, lock.getAcquisitions());
+        }
+        try (InterProcessLock.Held a = lock.shared(); InterProcessLock.Held b = lock.shared()) {
+            assertEquals(5, lock.getAcquisitions());
+        }
+        assertEquals(0, lock.getTimeouts());
+    }
+
+    @Test
+    void writerWaitsForReadersOfThisProcess() throws Exception {
+        InterProcessLock lock = InterProcessLock.forFile(dir.resolve("users.txt").toFile());
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread writer;
+        try (InterProcessLock.Held read = lock.shared()) {
+            writer = new Thread(() -> {
+                try (InterProcessLock.Held write = lock.exclusive()) {
+                    acquired.countDown();
+                }
+            });
+            writer.start();
+            assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        writer.join();
+        assertTrue(lock.getMaxWait().toMillis() >= 100);
+    }
+
+    @Test
+    void waitForAnotherProcessIsBounded() throws Exception {
+        File data = dir.resolve("cds.txt").toFile();
+        InterProcessLock lock = InterProcessLock.forFile(data);
+        lock.setTimeout(Duration.ofMillis(150));
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process holder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                Holder.class.getName(), data.getPath() + ".lock").start();
+        try {
+            BufferedReader out = new BufferedReader(new InputStreamReader(holder.getInputStream()));
+            assertEquals("locked", out.readLine());
+
+            LockTimeoutException e = assertThrows(LockTimeoutException.class, lock::exclusive);
+            assertEquals("Timed out waiting for lock on cds.txt.lock", e.getMessage());
+            assertThrows(IllegalStateException.class, lock::shared);
+            assertEquals(2, lock.getTimeouts());
+
+            try (OutputStream in = holder.getOutputStream()) {
+                in.write('\n');
+            }
+            lock.setTimeout(Duration.ofSeconds(10));
+            try (InterProcessLock.Held held = lock.exclusive()) {
+                assertEquals(1, lock.getAcquisitions());
+            }
+        } finally {
+            holder.destroy();
+            holder.waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+}
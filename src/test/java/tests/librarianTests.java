@@ -14,6 +14,7 @@ import java.time.LocalDate;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 class librarianTests {
@@ -44,11 +45,12 @@ class librarianTests {
         when(book.getDueDate()).thenReturn(LocalDate.now().minusDays(3));
         when(book.getFineApplied()).thenReturn(0);
         when(bookService.getOverdueMedia()).thenReturn(List.of(book));
-        when(bookService.calculateFine(book)).thenReturn(15);
+        when(bookService.calculateFine(eq(book), any())).thenReturn(15);
+        when(bookService.tryMarkFinesApplied(List.of(book))).thenReturn(List.of(book));
+        when(borrower.getId()).thenReturn("U1");
         librarian.checkOverdueAndIssueFines(userService);
-        verify(userService).applyFine(borrower, 15);
-        verify(book).setFineApplied(1);
-        verify(bookService).writeToFile(List.of(book));
+        verify(userService).applyFines(List.of(new UserService.Charge("U1", 1500L, null)));
+        verify(bookService).tryMarkFinesApplied(List.of(book));
     }
 
     @Test
@@ -60,11 +62,12 @@ class librarianTests {
         when(cd.getDueDate()).thenReturn(LocalDate.now().minusDays(2));
         when(cd.getFineApplied()).thenReturn(0);
         when(cdService.getOverdueMedia()).thenReturn(List.of(cd));
-        when(cdService.calculateFine(cd)).thenReturn(10);
+        when(cdService.calculateFine(eq(cd), any())).thenReturn(10);
+        when(cdService.tryMarkFinesApplied(List.of(cd))).thenReturn(List.of(cd));
+        when(borrower.getId()).thenReturn("U2");
         librarian.checkOverdueAndIssueFines(userService);
-        verify(userService).applyFine(borrower, 10);
-        verify(cd).setFineApplied(1);
-        verify(cdService).writeToFile(List.of(cd));
+        verify(userService).applyFines(List.of(new UserService.Charge("U2", 1000L, null)));
+        verify(cdService).tryMarkFinesApplied(List.of(cd));
     }
 
     @Test
@@ -75,11 +78,35 @@ class librarianTests {
         when(book.getDueDate()).thenReturn(LocalDate.now().minusDays(3));
         when(book.getFineApplied()).thenReturn(0);
         when(bookService.getOverdueMedia()).thenReturn(List.of(book));
-        when(bookService.calculateFine(book)).thenReturn(15);
+        when(bookService.calculateFine(eq(book), any())).thenReturn(15);
+        when(bookService.tryMarkFinesApplied(List.of(book))).thenReturn(List.of(book));
         librarian.checkOverdueAndIssueFines(userService);
         reset(userService, bookService, book);
         librarian.checkOverdueAndIssueFines(userService);
         verifyNoInteractions(userService);
         verifyNoInteractions(bookService);
     }
+
+    @Test
+    void finesOfBothCatalogsAreChargedInOneBatch() {
+        User borrower = mock(User.class);
+        when(borrower.getId()).thenReturn("U1");
+        Book book = mock(Book.class);
+        when(book.getBorrowedBy()).thenReturn(borrower);
+        when(book.getDueDate()).thenReturn(LocalDate.now().minusDays(3));
+        CD cd = mock(CD.class);
+        when(cd.getBorrowedBy()).thenReturn(borrower);
+        when(cd.getDueDate()).thenReturn(LocalDate.now().minusDays(2));
+        when(bookService.getOverdueMedia()).thenReturn(List.of(book));
+        when(cdService.getOverdueMedia()).thenReturn(List.of(cd));
+        when(bookService.calculateFine(eq(book), any())).thenReturn(15);
+        when(cdService.calculateFine(eq(cd), any())).thenReturn(10);
+        when(bookService.tryMarkFinesApplied(List.of(book))).thenReturn(List.of(book));
+        when(cdService.tryMarkFinesApplied(List.of(cd))).thenReturn(List.of());
+
+        librarian.checkOverdueAndIssueFines(userService);
+        // the CD's fine was claimed elsewhere
+        verify(userService, times(1)).applyFines(List.of(new UserService.Charge("U1", 1500L, null)));
+        verify(userService, never()).applyFine(any(), anyDouble());
+    }
 }
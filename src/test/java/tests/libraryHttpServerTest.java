@@ -0,0 +1,183 @@
+package tests;
+
+import domain.Book;
+import domain.CD;
+import domain.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import presentation.LibraryHttpServer;
+import service.BookFineStrategy;
+import service.BookService;
+import service.CDService;
+import service.FineLedger;
+import service.LockTimeoutException;
+import service.UserService;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class libraryHttpServerTest {
+
+    private BookService bookService;
+    private CDService cdService;
+    private UserService userService;
+    private LibraryHttpServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setup() throws Exception {
+        userService = new UserService();
+        User alice = new User("Alice", "U1", "alice@mail.com");
+        alice.setFineBalance(30);
+        userService.saveUsers(List.of(alice, new User("Bob", "U2", "bob@mail.com")));
+        bookService = new BookService();
+        bookService.setUserService(userService);
+        bookService.setFineStrategy(new BookFineStrategy());
+        bookService.writeToFile(List.of());
+        bookService.addMedia(new Book("Java 101", "John Doe", "ISBN1"));
+        bookService.addMedia(new Book("Clean Code", "Robert Martin", "ISBN2"));
+        cdService = new CDService();
+        cdService.setUserService(userService);
+        cdService.writeToFile(List.of());
+        cdService.addMedia(new CD("Java Beats", "DJ Duke", "CD1"));
+
+        server = new LibraryHttpServer(bookService, cdService, userService);
+        server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getPort() + path);
+    }
+
+    @Test
+    void searchCoversBooksAndCds() throws Exception {
+        HttpResponse<String> response = get("/api/search?q=java");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"id\":\"ISBN1\""));
+        assertTrue(response.body().contains("\"id\":\"CD1\""));
+        assertFalse(response.body().contains("ISBN2"));
+
+        assertEquals("[]", get("/api/search?q=nothing&type=book").body());
+        assertEquals(400, get("/api/search").statusCode());
+        assertEquals(400, get("/api/search?q=java&type=dvd").statusCode());
+    }
+
+    @Test
+    void borrowReportsConflictsAndUnknowns() throws Exception {
+        HttpResponse<String> response = post("/api/borrow?user=U2&id=ISBN1&type=book");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"available\":false"));
+        assertTrue(response.body().contains("\"borrowedBy\":\"U2\""));
+
+        assertEquals(409, post("/api/borrow?user=U2&id=ISBN1&type=book").statusCode());
+        assertEquals(409, post("/api/borrow?user=U1&id=CD1&type=cd").statusCode());
+        assertEquals(404, post("/api/borrow?user=U9&id=ISBN2&type=book").statusCode());
+        assertEquals(404, post("/api/borrow?user=U2&id=ISBN9&type=book").statusCode());
+        assertEquals(405, get("/api/borrow?user=U2&id=ISBN2&type=book").statusCode());
+        assertNull(bookService.getAllMedia().get(1).getBorrowedBy());
+    }
+
+    @Test
+    void formBodyIsAccepted() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/api/borrow"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString("user=U2&id=CD1&type=cd"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertFalse(cdService.getAllMedia().get(0).isAvailable());
+    }
+
+    @Test
+    void overdueAndPayFine() throws Exception {
+        bookService.borrowMedia(userService.findUser("U2"), "ISBN2");
+        bookService.getAllMedia().get(1).setDueDate(LocalDate.now().minusDays(3));
+        HttpResponse<String> overdue = get("/api/overdue");
+        assertEquals(200, overdue.statusCode());
+        assertTrue(overdue.body().contains("\"id\":\"ISBN2\""));
+
+        HttpResponse<String> paid = post("/api/pay?user=U1&amount=10");
+        assertEquals(200, paid.statusCode());
+        assertEquals("{\"id\":\"U1\",\"fineBalance\":20.0}", paid.body());
+        assertEquals(20.0, userService.findUser("U1").getFineBalance());
+        assertEquals(400, post("/api/pay?user=U1&amount=50").statusCode());
+        assertEquals(400, post("/api/pay?user=U1&amount=ten").statusCode());
+    }
+
+    @Test
+    void statementListsFineEvents(@TempDir Path dir) throws Exception {
+        assertEquals(404, get("/api/statement?user=U1").statusCode());
+        userService.setLedger(new FineLedger(dir.resolve("fines.ledger").toString()));
+        post("/api/pay?user=U1&amount=10");
+
+        HttpResponse<String> statement = get("/api/statement?user=U1");
+        assertEquals(200, statement.statusCode());
+        assertTrue(statement.body().startsWith("{\"id\":\"U1\",\"balance\":20.0,\"events\":[{\"type\":\"PAID\""));
+        assertTrue(statement.body().contains("\"amount\":10.0,\"balance\":20.0"));
+        assertEquals("{\"id\":\"U1\",\"balance\":20.0,\"events\":[]}",
+                get("/api/statement?user=U1&to=2000-01-01").body());
+        assertEquals(400, get("/api/statement?user=U1&from=yesterday").statusCode());
+        assertEquals(400, get("/api/statement?user=U1&to=%2B999999999-12-31").statusCode());
+    }
+
+    @Test
+    void concurrentBorrowsOfOneItemHaveOneWinner() throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            responses.add(client.sendAsync(HttpRequest.newBuilder(uri("/api/borrow?user=U2&id=ISBN2&type=book"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        int ok = 0;
+        int conflict = 0;
+        for (CompletableFuture<HttpResponse<String>> f : responses) {
+            int status = f.get().statusCode();
+            if (status == 200) ok++;
+            if (status == 409) conflict++;
+        }
+        assertEquals(1, ok);
+        assertEquals(49, conflict);
+    }
+
+    @Test
+    void lockTimeoutAnswersServiceUnavailable() throws Exception {
+        server.stop();
+        BookService busy = mock(BookService.class);
+        when(busy.search("java")).thenThrow(new LockTimeoutException("Timed out waiting for lock on books.txt.lock"));
+        server = new LibraryHttpServer(busy, cdService, userService);
+        server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        assertEquals(503, get("/api/search?q=java&type=book").statusCode());
+        // only the typed exception is retryable, whatever the message says
+        doThrow(new IllegalStateException("Timed out elsewhere")).when(busy).search("java");
+        assertEquals(409, get("/api/search?q=java&type=book").statusCode());
+    }
+}
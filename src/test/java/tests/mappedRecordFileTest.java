@@ -0,0 +1,69 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.MappedRecordFile;
+import service.RecordReader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class mappedRecordFileTest {
+
+    @TempDir
+    Path dir;
+
+    private MappedRecordFile write(String text) throws IOException {
+        Path file = dir.resolve("books.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return MappedRecordFile.open(file);
+    }
+
+    @Test
+    void readerScansAllRecords() throws IOException {
+        MappedRecordFile file = write("Java;John;ISBN1;true\r\nCafé;Zoë;ISBN2;false\n\nLast;One;ISBN3;true");
+
+        try (RecordReader r = file.reader()) {
+            assertTrue(r.next());
+            assertEquals("ISBN1", r.string(2));
+            assertTrue(r.next());
+            assertEquals("Café", r.string(0));
+            assertEquals("Zoë", r.string(1));
+            assertFalse(r.bool(3));
+            assertTrue(r.next());
+            assertEquals(1, r.fieldCount());
+            assertTrue(r.next());
+            assertEquals("Last", r.string(0));
+            assertFalse(r.next());
+        }
+    }
+
+    @Test
+    void recordsAreReachableByIndex() throws IOException {
+        MappedRecordFile file = write("a;1\r\nb;2\nc;3\n");
+
+        assertEquals(3, file.recordCount());
+        RecordReader r = file.record(2);
+        assertTrue(r.next());
+        assertEquals("c", r.string(0));
+        assertEquals(3, r.integer(1));
+        assertFalse(r.next());
+
+        r = file.record(0);
+        assertTrue(r.next());
+        assertEquals("a", r.string(0));
+        assertFalse(r.next());
+        assertThrows(IndexOutOfBoundsException.class, () -> file.record(3));
+    }
+
+    @Test
+    void emptyFileHasNoRecords() throws IOException {
+        MappedRecordFile file = write("");
+        assertEquals(0, file.recordCount());
+        assertFalse(file.reader().next());
+    }
+}
@@ -81,4 +81,16 @@ class mediaTests {
         media.setDueDate(LocalDate.now().plusDays(2));
         assertEquals(0, media.calculateFine());
     }
+
+    @Test
+    void changeIsCommittedOnlyAtExpectedVersion() {
+        long v = media.getVersion();
+        assertFalse(media.tryBeginChange(v + 1));
+        assertTrue(media.tryBeginChange(v));
+        // a second writer holding the same version loses
+        assertFalse(media.tryBeginChange(v));
+        media.endChange();
+        assertEquals(v + 2, media.getVersion());
+        assertThrows(IllegalStateException.class, media::endChange);
+    }
 }
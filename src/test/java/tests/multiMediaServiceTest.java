@@ -3,9 +3,13 @@ import domain.User;
 import domain.Media;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.BinarySnapshot;
 import service.MultiMediaService;
 import service.FineStrategy;
 
+import java.io.File;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -15,6 +19,9 @@ import static org.mockito.Mockito.*;
 
 class multiMediaServiceTest {
 
+    @TempDir
+    Path dataDir;
+
     private MultiMediaService<Media> service;
     private Media media;
     private User user;
@@ -38,6 +45,32 @@ class multiMediaServiceTest {
         service = new MultiMediaService<>() {
             private final List<Media> storage = new ArrayList<>();
             @Override
+            protected String identifierOf(Media media) {
+            	return media.getTitle();
+            }
+            @Override
+            protected String formatRecord(Media media) {
+            	return media.getTitle();
+            }
+            @Override
+            protected File dataFile() {
+            	return dataDir.resolve("media.txt").toFile();
+            }
+            @Override
+            protected void writeIdentity(Media media, BinarySnapshot.Writer out) {
+            	out.writeString(media.getTitle());
+            }
+            @Override
+            protected Media readIdentity(BinarySnapshot.Reader in) {
+            	return new Media(in.readString()) {
+            		@Override
+            		public void borrow(User user) {
+            			this.setBorrowedBy(user);
+            			this.setAvailable(false);
+            		}
+            	};
+            }
+            @Override
             protected List<Media> readFromFile() {
             	return storage;
             }
@@ -139,7 +172,7 @@ class multiMediaServiceTest {
         media.borrow(user);
         service.addMedia(media);
         service.sendReminders(List.of(user), "Book");
-        verify(observer).notify(user, "You have 1 overdue Book(s).");
+        verify(observer, timeout(1000)).notify(user, "You have 1 overdue Book(s).");
     }
 
 }
@@ -0,0 +1,167 @@
+package tests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.MutationLog;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class mutationLogTest {
+
+    @TempDir
+    Path dir;
+
+    private MutationLog log;
+
+    @BeforeEach
+    void setup() {
+        log = new MutationLog(dir.resolve("test.journal").toString());
+    }
+
+    @Test
+    void readAllOnMissingLogIsEmpty() {
+        assertTrue(log.readAll().isEmpty());
+        assertEquals(0, log.length());
+    }
+
+    @Test
+    void appendedRecordsAreReadBackInOrder() {
+        log.append("BORROW", "ISBN1", "U1", "2030-01-01");
+        log.appendAll(List.of(new String[] {"RETURN", "ISBN1"}, new String[] {"FINE_APPLIED", "ISBN2", "1"}));
+
+        List<String[]> records = log.readAll();
+        assertEquals(3, records.size());
+        assertArrayEquals(new String[] {"BORROW", "ISBN1", "U1", "2030-01-01"}, records.get(0));
+        assertArrayEquals(new String[] {"RETURN", "ISBN1"}, records.get(1));
+        assertArrayEquals(new String[] {"FINE_APPLIED", "ISBN2", "1"}, records.get(2));
+    }
+
+    @Test
+    void emptyFieldsArePreserved() {
+        log.append("USER_ADD", "", "U1", "");
+        assertArrayEquals(new String[] {"USER_ADD", "", "U1", ""}, log.readAll().get(0));
+    }
+
+    @Test
+    void discardPrefixKeepsLaterRecords() {
+        log.append("RETURN", "ISBN1");
+        long folded = log.length();
+        log.append("RETURN", "ISBN2");
+
+        log.discardPrefix(folded);
+        List<String[]> records = log.readAll();
+        assertEquals(1, records.size());
+        assertArrayEquals(new String[] {"RETURN", "ISBN2"}, records.get(0));
+
+        log.discardPrefix(log.length());
+        assertEquals(0, log.length());
+    }
+
+    @Test
+    void clearDiscardsAllRecords() {
+        log.append("RETURN", "ISBN1");
+        assertTrue(log.length() > 0);
+
+        log.clear();
+        assertEquals(0, log.length());
+        assertTrue(log.readAll().isEmpty());
+    }
+
+    @Test
+    void appendsAfterDiscardPrefixGoToReplacedFile() {
+        log.append("RETURN", "ISBN1");
+        long folded = log.length();
+        log.append("RETURN", "ISBN2");
+        log.discardPrefix(folded);
+
+        log.append("RETURN", "ISBN3");
+        List<String[]> records = log.readAll();
+        assertEquals(2, records.size());
+        assertArrayEquals(new String[] {"RETURN", "ISBN3"}, records.get(1));
+    }
+
+    @Test
+    void writeIsDurableAfterSync() {
+        long ticket = log.write(List.<String[]>of(new String[] {"RETURN", "ISBN1"}));
+        long before = log.getSyncCount();
+
+        log.sync(ticket);
+        assertEquals(before + 1, log.getSyncCount());
+        // already covered by the previous flush
+        log.sync(ticket);
+        assertEquals(before + 1, log.getSyncCount());
+        assertEquals(1, log.readAll().size());
+    }
+
+    @Test
+    void concurrentAppendsShareFlushes() throws Exception {
+        MutationLog grouped = new MutationLog(dir.resolve("grouped.journal").toString(), Duration.ofMillis(5));
+        int threads = 8;
+        int perThread = 25;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String user = "U" + t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) grouped.append("FINE", user, "1", Integer.toString(i));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(threads * perThread, grouped.readAll().size());
+        assertTrue(grouped.getSyncCount() < threads * perThread,
+                "expected fewer flushes than appends, got " + grouped.getSyncCount());
+        grouped.close();
+    }
+
+    @Test
+    void tornLastRecordIsSkippedAndTruncated() throws Exception {
+        log.append("FINE_APPLIED", "ISBN1", "1");
+        long intact = log.length();
+        java.nio.file.Files.writeString(log.getFile().toPath(), "FINE_APPL",
+                java.nio.file.StandardOpenOption.APPEND);
+
+        List<String> applied = new ArrayList<>();
+        assertEquals(1, log.replay(r -> applied.add(r[1] + "=" + Integer.parseInt(r[2]))));
+        assertEquals(List.of("ISBN1=1"), applied);
+        assertEquals(intact, log.length());
+
+        // the next append starts on a clean line
+        log.append("FINE_APPLIED", "ISBN2", "1");
+        assertEquals(2, log.replay(r -> Integer.parseInt(r[2])));
+    }
+
+    @Test
+    void malformedCompleteLastRecordFails() {
+        log.append("FINE_APPLIED", "ISBN1", "1");
+        log.append("FINE_APPLIED", "ISBN2");
+        long length = log.length();
+        assertThrows(IllegalStateException.class, () -> log.replay(r -> Integer.parseInt(r[2])));
+        assertEquals(length, log.length());
+    }
+
+    @Test
+    void corruptionBeforeTheLastRecordFails() {
+        log.append("FINE_APPLIED", "ISBN1", "x");
+        log.append("FINE_APPLIED", "ISBN2", "1");
+        long length = log.length();
+        assertThrows(IllegalStateException.class, () -> log.replay(r -> Integer.parseInt(r[2])));
+        assertEquals(length, log.length());
+    }
+}
@@ -0,0 +1,119 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import service.RecordReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class recordReaderTest {
+
+    private static List<String[]> readAll(String text) throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        try (RecordReader r = new RecordReader(new StringReader(text))) {
+            while (r.next()) {
+                String[] fields = new String[r.fieldCount()];
+                for (int i = 0; i < fields.length; i++) fields[i] = r.string(i);
+                lines.add(fields);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void fieldsMatchSplitAndTrim() throws IOException {
+        String[] samples = {
+                " Java 101 ; John Doe ;ISBN123; true ;null;null;0",
+                "a;b;;",
+                ";a",
+                ";;",
+                "single",
+                "a; ;b"
+        };
+        for (String line : samples) {
+            String[] parts = line.split(";");
+            for (int i = 0; i < parts.length; i++) parts[i] = parts[i].trim();
+            assertArrayEquals(parts, readAll(line).get(0), line);
+        }
+    }
+
+    @Test
+    void handlesAllLineTerminatorsLikeReadLine() throws IOException {
+        List<String[]> lines = readAll("a;1\r\nb;2\rc;3\n\nd;4");
+        assertEquals(5, lines.size());
+        assertArrayEquals(new String[] {"a", "1"}, lines.get(0));
+        assertArrayEquals(new String[] {"b", "2"}, lines.get(1));
+        assertArrayEquals(new String[] {"c", "3"}, lines.get(2));
+        assertArrayEquals(new String[] {""}, lines.get(3));
+        assertArrayEquals(new String[] {"d", "4"}, lines.get(4));
+
+        assertEquals(1, readAll("a\n").size());
+        assertTrue(readAll("").isEmpty());
+    }
+
+    @Test
+    void linesLongerThanTheBufferAreRead() throws IOException {
+        String longField = "x".repeat(20_000);
+        List<String[]> lines = readAll("a;" + longField + "\r\nb;c\n");
+        assertEquals(2, lines.size());
+        assertEquals(longField, lines.get(0)[1]);
+        assertArrayEquals(new String[] {"b", "c"}, lines.get(1));
+    }
+
+    @Test
+    void typedFieldsAreParsedInPlace() throws IOException {
+        try (RecordReader r = new RecordReader(new StringReader("TRUE;false;-42;2026-02-28;12.5;null;1.0E7;7"))) {
+            assertTrue(r.next());
+            assertTrue(r.bool(0));
+            assertFalse(r.bool(1));
+            assertEquals(-42, r.integer(2));
+            assertEquals(LocalDate.of(2026, 2, 28), r.date(3));
+            assertEquals(12.5, r.amount(4));
+            assertTrue(r.isNull(5));
+            assertFalse(r.isNull(4));
+            assertEquals(1.0E7, r.amount(6));
+            assertEquals(7.0, r.amount(7));
+            assertFalse(r.next());
+        }
+    }
+
+    @Test
+    void invalidValuesAreRejected() throws IOException {
+        try (RecordReader r = new RecordReader(new StringReader("12a;2026-02-30;2026/01/01;;99999999999"))) {
+            assertTrue(r.next());
+            assertThrows(NumberFormatException.class, () -> r.integer(0));
+            assertThrows(DateTimeException.class, () -> r.date(1));
+            assertThrows(DateTimeException.class, () -> r.date(2));
+            assertThrows(NumberFormatException.class, () -> r.amount(3));
+            assertThrows(NumberFormatException.class, () -> r.integer(4));
+            assertThrows(IndexOutOfBoundsException.class, () -> r.string(5));
+        }
+    }
+
+    @Test
+    void amountsMatchDoubleParsing() throws IOException {
+        String[] amounts = {"0.0", "0.1", "12.345", "1234567.89", "-3.75", "0.30000000000000004", "1.0E-5"};
+        try (RecordReader r = new RecordReader(new StringReader(String.join(";", amounts)))) {
+            assertTrue(r.next());
+            for (int i = 0; i < amounts.length; i++) {
+                assertEquals(Double.parseDouble(amounts[i]), r.amount(i), amounts[i]);
+            }
+        }
+    }
+
+    @Test
+    void minorUnitsAreParsedExactly() throws IOException {
+        String[] amounts = {"0.0", "0.1", "12.05", "12.345", "1234567.89", "-3.75", "7", "0.30000000000000004", "1.0E-5"};
+        long[] expected = {0, 10, 1205, 1235, 123456789, -375, 700, 30, 0};
+        try (RecordReader r = new RecordReader(new StringReader(String.join(";", amounts)))) {
+            assertTrue(r.next());
+            for (int i = 0; i < amounts.length; i++) assertEquals(expected[i], r.minorUnits(i), amounts[i]);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package tests;
+
+import domain.Book;
+import domain.CD;
+import domain.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.BookService;
+import service.CDService;
+import service.EventBus;
+import service.Observer;
+import service.ReminderService;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class reminderServiceTest {
+
+    private BookService bookService;
+    private CDService cdService;
+    private EventBus events;
+    private Observer observer;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setup() {
+        bookService = mock(BookService.class);
+        cdService = mock(CDService.class);
+        events = new EventBus();
+        observer = mock(Observer.class);
+        events.subscribe(observer);
+        alice = new User("Alice", "U1", "alice@mail.com");
+        bob = new User("Bob", "U2", "bob@mail.com");
+    }
+
+    private static <T extends domain.Media> T overdue(T media, User user, int days) {
+        media.setAvailable(false);
+        media.setBorrowedBy(user);
+        media.setDueDate(LocalDate.now().minusDays(days));
+        return media;
+    }
+
+    @Test
+    void oneDigestPerUserAcrossBooksAndCds() throws Exception {
+        Book java = overdue(new Book("Java 101", "John Doe", "ISBN1"), alice, 2);
+        Book clean = overdue(new Book("Clean Code", "Robert Martin", "ISBN2"), bob, 1);
+        CD beats = overdue(new CD("Java Beats", "DJ Duke", "CD1"), alice, 5);
+        when(bookService.getOverdueMedia()).thenReturn(List.of(java, clean));
+        when(cdService.getOverdueMedia()).thenReturn(List.of(beats));
+
+        Map<User, String> sent = new ReminderService(events, bookService, cdService).sendReminders();
+
+        assertEquals(List.of(alice, bob), List.copyOf(sent.keySet()));
+        String expected = "You have 2 overdue item(s):"
+                + "\n- CD \"Java Beats\" by DJ Duke, due " + beats.getDueDate()
+                + "\n- Book \"Java 101\" by John Doe, due " + java.getDueDate();
+        assertEquals(expected, sent.get(alice));
+
+        assertTrue(events.awaitIdle(Duration.ofSeconds(5)));
+        verify(observer).notify(alice, expected);
+        verify(observer).notify(eq(bob), startsWith("You have 1 overdue item(s):"));
+        verifyNoMoreInteractions(observer);
+        verify(bookService, times(1)).getOverdueMedia();
+        verify(cdService, times(1)).getOverdueMedia();
+    }
+
+    @Test
+    void nothingIsSentWithoutOverdueMedia() throws Exception {
+        when(bookService.getOverdueMedia()).thenReturn(List.of());
+        when(cdService.getOverdueMedia()).thenReturn(List.of());
+
+        assertTrue(new ReminderService(events, bookService, cdService).sendReminders().isEmpty());
+        assertTrue(events.awaitIdle(Duration.ofSeconds(1)));
+        verifyNoInteractions(observer);
+    }
+}
@@ -73,4 +73,19 @@ class reportFineTest {
         }
         assertTrue(foundPaid, "PDF filename should include 'Paid'");
     }
+
+    @Test
+    void testReceiptsInTheSameSecondDoNotOverwriteEachOther() {
+        User user = new User("Carol", "789", "carol@example.com");
+        Book book = new Book("Java Programming", "Author", "ISBN123");
+
+        ReportFine.generateFineReceipt(user, 10.0, false, book);
+        ReportFine.generateFineReceipt(user, 10.0, false, book);
+        ReportFine.generateFineReceipt(user, 10.0, false, null);
+
+        File[] files = new File(folder).listFiles((d, name) -> name.startsWith("Issued_Fine_Carol"));
+        assertNotNull(files);
+        assertEquals(3, files.length);
+        for (File f : files) assertTrue(f.length() > 0, "Receipt should not be empty");
+    }
 }
@@ -0,0 +1,122 @@
+package tests;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.RealEmailService;
+import service.SmtpTransportPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class smtpTransportPoolTest {
+
+    private FakeSmtpServer server;
+    private SmtpTransportPool pool;
+
+    @BeforeEach
+    void setup() throws Exception {
+        server = new FakeSmtpServer();
+        pool = new SmtpTransportPool("localhost", server.getPort(), "library@mail.com", "secret", 2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+        server.close();
+    }
+
+    private Message message(String to) throws MessagingException {
+        Message msg = new MimeMessage(pool.getSession());
+        msg.setFrom(new InternetAddress("library@mail.com"));
+        msg.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+        msg.setSubject("Library Overdue Reminder");
+        msg.setText("You have 1 overdue book(s).");
+        return msg;
+    }
+
+    @Test
+    void messagesShareOneConnection() throws Exception {
+        for (int i = 0; i < 20; i++) pool.send(message("user" + i + "@mail.com"));
+        assertEquals(20, server.getMessages());
+        assertEquals(1, server.getConnections());
+        assertEquals(1, pool.getConnectionsOpened());
+    }
+
+    @Test
+    void connectionIsReplacedAfterMessageLimit() throws Exception {
+        pool.setMaxMessagesPerConnection(5);
+        for (int i = 0; i < 12; i++) pool.send(message("user@mail.com"));
+        assertEquals(12, server.getMessages());
+        assertEquals(3, pool.getConnectionsOpened());
+    }
+
+    @Test
+    void droppedConnectionIsReopened() throws Exception {
+        pool.send(message("user@mail.com"));
+        server.dropConnections();
+        pool.send(message("user@mail.com"));
+        assertEquals(2, server.getMessages());
+        assertEquals(2, pool.getConnectionsOpened());
+    }
+
+    @Test
+    void concurrentSendersAreBoundedByPoolSize() throws Exception {
+        RealEmailService email = new RealEmailService(pool, "library@mail.com");
+        List<Future<?>> sends = new ArrayList<>();
+        try (ExecutorService senders = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 40; i++) {
+                String to = "user" + i + "@mail.com";
+                sends.add(senders.submit(() -> email.sendEmail(to, "You have 1 overdue book(s).")));
+            }
+        }
+        for (Future<?> f : sends) f.get();
+        assertEquals(40, pool.getMessagesSent());
+        assertEquals(40, server.getMessages());
+        assertTrue(pool.getConnectionsOpened() <= 2);
+    }
+
+    @Test
+    void refusedMessageKeepsConnection() throws Exception {
+        server.failNextMessages(1);
+        assertThrows(SendFailedException.class, () -> pool.send(message("user@mail.com")));
+        pool.send(message("user@mail.com"));
+        assertEquals(1, server.getMessages());
+        assertEquals(1, pool.getConnectionsOpened());
+        assertEquals(0, pool.getReconnects());
+    }
+
+    @Test
+    void idempotencyKeyBecomesMessageId() throws Exception {
+        RealEmailService email = new RealEmailService(pool, "library@mail.com");
+        email.sendEmail("alice@mail.com", "You have 1 overdue item(s).", "k1");
+
+        FakeSmtpServer.Received received = server.getReceived().get(0);
+        assertEquals("library@mail.com", received.from());
+        assertEquals(List.of("alice@mail.com"), received.recipients());
+        assertEquals("<k1@youbak.library>", received.header("Message-ID"));
+        assertTrue(received.data().contains("You have 1 overdue item(s)."));
+
+        server.failNextMessages(1);
+        assertThrows(IllegalStateException.class, () -> email.sendEmail("bob@mail.com", "Reminder", "k2"));
+    }
+
+    @Test
+    void requiredStartTlsIsEnforced() {
+        SmtpTransportPool strict = new SmtpTransportPool("localhost", server.getPort(),
+                SmtpTransportPool.Tls.STARTTLS_REQUIRED, "library@mail.com", "secret", 1);
+        assertThrows(MessagingException.class, () -> strict.send(message("user@mail.com")));
+        assertEquals(0, server.getMessages());
+        strict.close();
+    }
+}
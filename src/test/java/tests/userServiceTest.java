@@ -3,7 +3,10 @@ package tests;
 import domain.User;
 import org.junit.jupiter.api.*;
 import service.BookService;
+import org.junit.jupiter.api.io.TempDir;
 import service.CDService;
+import service.FineLedger;
+import service.MutationLog;
 import service.UserService;
 
 import java.io.*;
@@ -112,6 +115,25 @@ class userServiceTest {
         verify(cdService).returnAllMediaForUser(user);
     }
 
+    @Test
+    void testPayFineReturnsMediaAfterReleasingTheUserLock() {
+        User user = new User("Dana", "U004", "dana@example.com");
+        User other = new User("Eli", "U005", "eli@example.com");
+        userService.addUser(user);
+        userService.addUser(other);
+        userService.addFine(user, 10);
+        // returning media takes the media locks, so another user change must get through meanwhile
+        doAnswer(inv -> {
+            java.util.concurrent.CompletableFuture.runAsync(() -> userService.addFine(other, 5))
+                    .get(5, java.util.concurrent.TimeUnit.SECONDS);
+            return null;
+        }).when(bookService).returnAllMediaForUser(any());
+
+        userService.payFine(user, 10, bookService, cdService);
+        verify(bookService).returnAllMediaForUser(user);
+        assertEquals(5, userService.getAllUsers().get(1).getFineBalance());
+    }
+
     @Test
     void testPayFineNullInvalidAmounts() {
         User user = new User("Ivy", "U009", "ivy@example.com");
@@ -131,6 +153,20 @@ class userServiceTest {
                 () -> userService.payFine(user, -5, bookService, cdService));
     }
 
+    @Test
+    void testGetUsersByIdIndexesAllUsers() {
+        User a = new User("Alice", "U001", "alice@example.com");
+        User b = new User("Bob", "U002", "bob@example.com");
+        userService.addUser(a);
+        userService.addUser(b);
+
+        var byId = userService.getUsersById();
+        assertEquals(2, byId.size());
+        assertEquals(a, byId.get("U001"));
+        assertEquals(b, byId.get("U002"));
+        assertNull(byId.get("U999"));
+    }
+
     @Test
     void testUnregisterUserAndNull() {
         User user = new User("Eve", "U005", "eve@example.com");
@@ -182,6 +218,110 @@ class userServiceTest {
         assertEquals(45.5, users.get(0).getFineBalance());
     }
 
+    @Test
+    void testApplyFinesChargesBatchInOneCommit(@TempDir java.nio.file.Path dir) {
+        String journalPath = dir.resolve("users.journal").toString();
+        UserService realService = new UserService();
+        realService.saveUsers(new ArrayList<>(List.of(
+                new User("Sam", "UF1", "sam@mail.com"), new User("Ann", "UF2", "ann@mail.com"))));
+        realService.setJournal(new MutationLog(journalPath));
+
+        java.util.Map<String, Long> fines = new java.util.LinkedHashMap<>();
+        fines.put("UF1", 1500L);
+        fines.put("UF2", 1000L);
+        fines.put("UF9", 500L);
+        fines.put("UF2x", 0L);
+        assertEquals(2, realService.applyFines(fines));
+        assertEquals(2, new MutationLog(journalPath).readAll().size());
+        assertEquals(0, realService.applyFines(java.util.Map.of()));
+
+        UserService reloaded = new UserService();
+        reloaded.setJournal(new MutationLog(journalPath));
+        assertEquals(15, reloaded.findUser("UF1").getFineBalance());
+        assertEquals(10, reloaded.findUser("UF2").getFineBalance());
+    }
+
+    @Test
+    void testJournaledChangesAreReplayed(@TempDir java.nio.file.Path dir) throws Exception {
+        String journalPath = dir.resolve("users.journal").toString();
+        UserService realService = new UserService();
+        realService.saveUsers(new ArrayList<>());
+        realService.setJournal(new MutationLog(journalPath));
+
+        User u = new User("Sam", "UA1", "sam@mail.com");
+        realService.addUser(u);
+        realService.applyFine(u, 30);
+        realService.payFine(u, 10, null, null);
+        realService.addUser(new User("Tom", "UA2", "tom@mail.com"));
+        realService.unregisterUser(new User("Tom", "UA2", "tom@mail.com"));
+
+        assertEquals(0, java.nio.file.Files.readAllLines(new File("data/users.txt").toPath()).size());
+        assertEquals(5, new MutationLog(journalPath).readAll().size());
+
+        UserService reloaded = new UserService();
+        reloaded.setJournal(new MutationLog(journalPath));
+        List<User> users = reloaded.getAllUsers();
+        assertEquals(1, users.size());
+        assertEquals("UA1", users.get(0).getId());
+        assertEquals(20, users.get(0).getFineBalance());
+    }
+
+    @Test
+    void testBinarySnapshotRoundTripsUsers(@TempDir java.nio.file.Path dir) throws Exception {
+        File snapshot = dir.resolve("users.bin").toFile();
+        UserService realService = new UserService();
+        realService.saveUsers(new ArrayList<>(List.of(new User("Sam", "UB1", "sam@mail.com"))));
+        realService.setBinarySnapshot(snapshot);
+        User ann = new User("Ann", "UB2", "ann@mail.com");
+        ann.setFineBalance(2.5);
+        List<User> users = realService.getAllUsers();
+        users.add(ann);
+        realService.saveUsers(users);
+
+        UserService reloaded = new UserService();
+        reloaded.setBinarySnapshot(snapshot);
+        List<User> loaded = reloaded.getAllUsers();
+        assertEquals(2, loaded.size());
+        assertEquals("Ann", loaded.get(1).getName());
+        assertEquals(2.5, loaded.get(1).getFineBalance());
+        assertEquals(1, java.nio.file.Files.readAllLines(new File("data/users.txt").toPath()).size());
+
+        reloaded.exportText();
+        assertEquals("Ann;UB2;ann@mail.com;2.5",
+                java.nio.file.Files.readAllLines(new File("data/users.txt").toPath()).get(1));
+    }
+
+    @Test
+    void testChangesByAnotherInstanceAreReloaded() {
+        UserService first = new UserService();
+        first.saveUsers(new ArrayList<>());
+        UserService second = new UserService();
+        assertTrue(second.getAllUsers().isEmpty());
+
+        first.addUser(new User("Sam", "UC1", "sam@mail.com"));
+        assertEquals(1, second.getAllUsers().size());
+        assertEquals(1, second.getChangeDetector().getChangesDetected());
+        second.getAllUsers();
+        assertEquals(1, second.getChangeDetector().getChangesDetected());
+    }
+
+    @Test
+    void testCompactWritesSnapshotAndEmptiesJournal(@TempDir java.nio.file.Path dir) throws Exception {
+        MutationLog journal = new MutationLog(dir.resolve("users.journal").toString());
+        UserService realService = new UserService();
+        realService.saveUsers(new ArrayList<>());
+        realService.setJournal(journal);
+        User u = new User("Sam", "UA1", "sam@mail.com");
+        realService.addUser(u);
+        realService.applyFine(u, 12);
+
+        assertTrue(realService.compact() > 0);
+        assertEquals(0, realService.journalLength());
+        assertEquals(List.of("Sam;UA1;sam@mail.com;12.0"),
+                java.nio.file.Files.readAllLines(new File("data/users.txt").toPath()));
+        assertEquals(0, realService.compact());
+    }
+
     @Test
     void testSaveUsersWritesToFile() throws Exception {
         UserService realService = new UserService();
@@ -200,4 +340,119 @@ class userServiceTest {
         assertEquals(1, lines.size());
         assertEquals("Sam;UA1;sam@mail.com;12.0", lines.get(0));
     }
+
+    @Test
+    void testBalanceTableFollowsResidentUsers(@TempDir java.nio.file.Path dir) {
+        UserService realService = new UserService();
+        realService.saveUsers(new ArrayList<>(List.of(
+                new User("Sam", "UT1", "sam@mail.com"), new User("Ann", "UT2", "ann@mail.com"))));
+        realService.setJournal(new MutationLog(dir.resolve("users.journal").toString()));
+
+        realService.applyFine(realService.findUser("UT1"), 0.1);
+        realService.applyFine(realService.findUser("UT1"), 0.2);
+        realService.applyFine(realService.findUser("UT2"), 5);
+        assertEquals(30, realService.findUser("UT1").getFineMinor());
+        assertEquals(530, realService.getBalances().total());
+        assertEquals(2, realService.getBalances().countOwing());
+
+        realService.payFine(realService.findUser("UT2"), 5, null, null);
+        assertEquals(1, realService.getBalances().countOwing());
+
+        UserService reloaded = new UserService();
+        reloaded.setJournal(new MutationLog(dir.resolve("users.journal").toString()));
+        assertEquals(30, reloaded.findUser("UT1").getFineMinor());
+        assertEquals(30, reloaded.getBalances().total());
+    }
+
+    @Test
+    void testFineEventsAreRecordedInLedger(@TempDir java.nio.file.Path dir) {
+        UserService realService = new UserService();
+        realService.saveUsers(new ArrayList<>(List.of(
+                new User("Sam", "UL1", "sam@mail.com"), new User("Ann", "UL2", "ann@mail.com"))));
+        FineLedger ledger = new FineLedger(dir.resolve("fines.ledger").toString());
+        realService.setLedger(ledger);
+
+        realService.applyFine(realService.findUser("UL1"), 20);
+        assertEquals(2, realService.applyFines(List.of(new UserService.Charge("UL1", 300, "ISBN1"),
+                new UserService.Charge("UL1", 200, "CD1"), new UserService.Charge("UL2", 750, "ISBN2"))));
+        realService.payFine(realService.findUser("UL1"), 10, null, null);
+        assertTrue(realService.waiveFine(realService.findUser("UL1"), 100, "ISBN9"));
+        assertFalse(realService.waiveFine(realService.findUser("UL1"), 1));
+
+        List<FineLedger.Entry> sam = ledger.statement("UL1");
+        assertEquals(List.of(FineLedger.Type.ISSUED, FineLedger.Type.ISSUED, FineLedger.Type.ISSUED,
+                FineLedger.Type.PAID, FineLedger.Type.WAIVED), sam.stream().map(FineLedger.Entry::type).toList());
+        // one event per fine, each with its running balance and what it refers to
+        assertEquals("ISBN1", sam.get(1).reference());
+        assertEquals(2300, sam.get(1).balanceMinor());
+        assertEquals("CD1", sam.get(2).reference());
+        assertEquals(2500, sam.get(2).balanceMinor());
+        assertTrue(sam.get(3).reference().startsWith("Paid_Fine_Sam"));
+        assertEquals("ISBN9", sam.get(4).reference());
+        assertEquals(1500, sam.get(4).amountMinor());
+        assertEquals(0, ledger.balance("UL1"));
+        assertEquals(750, ledger.balance("UL2"));
+        assertEquals(realService.findUser("UL2").getFineMinor(), ledger.balance("UL2"));
+        assertEquals(0, realService.findUser("UL1").getFineMinor());
+    }
+
+    @Test
+    void testTornJournalRecordIsSkippedOnReload(@TempDir java.nio.file.Path dir) throws Exception {
+        String journalPath = dir.resolve("users.journal").toString();
+        UserService realService = new UserService();
+        realService.saveUsers(new ArrayList<>(List.of(new User("Sam", "UJ1", "sam@mail.com"))));
+        realService.setJournal(new MutationLog(journalPath));
+        realService.applyFine(realService.findUser("UJ1"), 12);
+        java.nio.file.Files.writeString(java.nio.file.Path.of(journalPath), "FINE;UJ1;3.0;1",
+                java.nio.file.StandardOpenOption.APPEND);
+
+        UserService reloaded = new UserService();
+        reloaded.setJournal(new MutationLog(journalPath));
+        assertEquals(1200, reloaded.findUser("UJ1").getFineMinor());
+        reloaded.applyFine(reloaded.findUser("UJ1"), 1);
+
+        UserService again = new UserService();
+        again.setJournal(new MutationLog(journalPath));
+        assertEquals(1300, again.findUser("UJ1").getFineMinor());
+    }
+
+    @Test
+    void testFailedJournalWriteLeavesBalancesUntouched(@TempDir java.nio.file.Path dir) {
+        UserService realService = new UserService();
+        realService.saveUsers(new ArrayList<>(List.of(new User("Sam", "UW1", "sam@mail.com"))));
+        realService.setJournal(new MutationLog(dir.resolve("users.journal").toString()) {
+            @Override
+            public synchronized long write(List<String[]> records) {
+                throw new RuntimeException("disk full");
+            }
+        });
+
+        User sam = realService.findUser("UW1");
+        assertThrows(RuntimeException.class, () -> realService.applyFine(sam, 12));
+        assertEquals(0, sam.getFineMinor());
+        assertEquals(0, realService.getBalances().total());
+    }
+
+    @Test
+    void testPayFineChecksTheStoredBalance(@TempDir java.nio.file.Path dir) {
+        UserService realService = new UserService();
+        realService.saveUsers(new ArrayList<>(List.of(new User("Sam", "UP1", "sam@mail.com"))));
+        realService.setJournal(new MutationLog(dir.resolve("users.journal").toString()));
+        FineLedger ledger = new FineLedger(dir.resolve("fines.ledger").toString());
+        realService.setLedger(ledger);
+        realService.applyFine(realService.findUser("UP1"), 30);
+
+        // a copy loaded before the fine was taken
+        User stale = new User("Sam", "UP1", "sam@mail.com");
+        stale.setFineBalance(100);
+        assertThrows(IllegalArgumentException.class, () -> realService.payFine(stale, 50, null, null));
+        assertEquals(3000, realService.findUser("UP1").getFineMinor());
+
+        stale.setFineBalance(0);
+        realService.payFine(stale, 20, null, null);
+        assertEquals(1000, realService.findUser("UP1").getFineMinor());
+        assertEquals(1000, stale.getFineMinor());
+        assertEquals(2000, ledger.statement("UP1").get(1).amountMinor());
+        assertEquals(1000, ledger.balance("UP1"));
+    }
 }
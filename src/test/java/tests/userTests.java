@@ -1,6 +1,8 @@
 package tests;
 
+import domain.Money;
 import domain.User;
+import service.BalanceTable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -81,4 +83,62 @@ class userTests {
         assertNotEquals(user, differentUser);
         assertNotEquals(user.hashCode(), differentUser.hashCode());
     }
+
+    @Test
+    void balancesAreExactInAgorot() {
+        for (int i = 0; i < 10; i++) user.addFine(0.1);
+        assertEquals(100, user.getFineMinor());
+        assertEquals(1.0, user.getFineBalance());
+
+        user.payFine(0.3);
+        user.payFine(0.7);
+        assertEquals(0, user.getFineMinor());
+        assertTrue(user.canBorrow());
+
+        user.addFineMinor(1205);
+        user.payFineMinor(5000);
+        assertEquals(0, user.getFineMinor());
+        assertThrows(IllegalArgumentException.class, () -> user.addFineMinor(0));
+    }
+
+    @Test
+    void moneyFormatsLikeDoubles() {
+        for (long minor : new long[] {0, 5, 50, 1200, 1205, 1250, 123456789, -375}) {
+            assertEquals(Double.toString(Money.toMajor(minor)), Money.format(minor));
+            assertEquals(minor, Money.parse(Money.format(minor)));
+        }
+        assertEquals(1235, Money.toMinor(12.345));
+        assertThrows(NumberFormatException.class, () -> Money.parse("NaN"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e300"));
+    }
+
+    @Test
+    void moneyParsesEnteredAmountsExactly() {
+        assertEquals(1205, Money.parse("12.05"));
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(-375, Money.parse("-3.75"));
+        assertEquals(29, Money.parse("0.29"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("12.345"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.0E7"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("."));
+        assertThrows(NumberFormatException.class, () -> Money.parse("99999999999999999999"));
+        assertEquals(1235, Money.parseLenient("12.345"));
+        assertEquals(1_000_000_000, Money.parseLenient("1.0E7"));
+    }
+
+    @Test
+    void balanceChangesAreMirroredInTable() {
+        BalanceTable table = new BalanceTable(2);
+        User other = new User("Bob", "U456", "bob@example.com");
+        user.setFineBalance(12.5);
+        user.attach(table, 0);
+        other.attach(table, 1);
+        assertEquals(1250, table.get(0));
+
+        other.addFine(3);
+        user.payFine(12.5);
+        assertEquals(300, table.total());
+        assertEquals(1, table.countOwing());
+    }
 }